@@ -0,0 +1,68 @@
+package io.czj.mvc.util;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 比较 ConcurrentTaskQueue 两种执行模式的吞吐量和延迟。
+ * <p>
+ * 'submit' 测量单个提交线程的吞吐量：每次调用提交 {@link #TASKS} 个任务，然后等待最后一个任务完成。
+ * 'submitToOnDone' 测量从提交到 onDone 被调用的延迟百分位。
+ */
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ConcurrentTaskQueueBenchmark {
+
+    private static final int TASKS = 1_000;
+
+    @Param({"HANDOFF", "DRAIN"})
+    public ConcurrentTaskQueue.Mode mode;
+
+    private ConcurrentTaskQueue<Integer> taskQueue;
+
+    // 由 onDone 在工作线程中递增，基准线程自旋等待它
+    private volatile long completed;
+    private long expected;
+
+    @Setup
+    public void setup() {
+        taskQueue = new ConcurrentTaskQueue<>(mode);
+    }
+
+    @TearDown
+    public void tearDown() {
+        taskQueue.shutdown();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(TASKS)
+    public void submit() throws InterruptedException {
+        for (int i = 0; i < TASKS - 1; i++) {
+            int finalI = i;
+            taskQueue.submit(() -> finalI);
+        }
+        CountDownLatch latch = new CountDownLatch(1);
+        taskQueue.submit(() -> {
+            latch.countDown();
+            return null;
+        });
+        latch.await();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void submitToOnDone() {
+        taskQueue.submit(() -> 1, r -> completed++);
+        expected++;
+        while (completed != expected) {
+            Thread.onSpinWait();
+        }
+    }
+
+}
@@ -0,0 +1,113 @@
+package io.czj.mvc.util;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ControllerBase 的往返延迟以及 updateModel 的开销。
+ * <p>
+ * 延迟基准使用 {@link Mode#SampleTime}，JMH 会输出 p50、p90、p99 等百分位。
+ */
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ControllerBaseBenchmark {
+
+    private BenchmarkController controller;
+    private BenchmarkModel model;
+
+    // 由 onDone 在工作线程中递增，基准线程自旋等待它
+    private volatile long completed;
+    private long expected;
+
+    @Setup
+    public void setup() {
+        model = new BenchmarkModel(1);
+        controller = new BenchmarkController(model);
+    }
+
+    @TearDown
+    public void tearDown() {
+        controller.shutdown();
+    }
+
+    /**
+     * 从 async 提交到 onDone 被调用的时间。
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void asyncRoundTrip() {
+        controller.async(() -> model, m -> completed++);
+        awaitCompleted();
+    }
+
+    /**
+     * 一个 updateModel 调用设置 setterCount 个 ObservableValue，直到它完成为止。
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void updateModel(UpdateModelState state) {
+        state.next++;
+        for (int i = 0; i < state.setterCount; i++) {
+            state.setters[i] = state.controller.set(state.model.values[i], state.next);
+        }
+        state.controller.updateModel(state.setters);
+        state.controller.async(() -> state.model, m -> completed++);
+        awaitCompleted();
+    }
+
+    private void awaitCompleted() {
+        expected++;
+        while (completed != expected) {
+            Thread.onSpinWait();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class UpdateModelState {
+
+        @Param({"1", "10", "100"})
+        public int setterCount;
+
+        BenchmarkController controller;
+        BenchmarkModel model;
+        ControllerBase.Setter<?>[] setters;
+        int next;
+
+        @Setup
+        public void setup() {
+            model = new BenchmarkModel(setterCount);
+            controller = new BenchmarkController(model);
+            setters = new ControllerBase.Setter<?>[setterCount];
+        }
+
+        @TearDown
+        public void tearDown() {
+            controller.shutdown();
+        }
+    }
+
+    static final class BenchmarkModel {
+
+        final ObservableValue<Integer>[] values;
+
+        @SuppressWarnings("unchecked")
+        BenchmarkModel(int size) {
+            values = new ObservableValue[size];
+            for (int i = 0; i < size; i++) {
+                values[i] = new ObservableValue<>(0);
+            }
+        }
+    }
+
+    static final class BenchmarkController extends ControllerBase<BenchmarkModel> {
+
+        BenchmarkController(BenchmarkModel model) {
+            super(model);
+        }
+    }
+
+}
@@ -0,0 +1,54 @@
+package io.czj.mvc.util;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 控制器数量的扩展性：平台线程与虚拟线程的比较。
+ * <p>
+ * 每次调用创建 controllerCount 个控制器，每个控制器执行一个阻塞的 pauseExecution，然后等待所有控制器完成并关闭它们。
+ * 虚拟线程需要 JDK 21+，在更早的 JDK 上 VIRTUAL 退回到平台线程。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ControllerScalingBenchmark {
+
+    public enum Threading {PLATFORM, VIRTUAL}
+
+    @Param({"10", "100", "1000"})
+    public int controllerCount;
+
+    @Param({"PLATFORM", "VIRTUAL"})
+    public Threading threading;
+
+    @Benchmark
+    public void blockingActions() throws InterruptedException {
+        final Object model = new Object();
+        final CountDownLatch latch = new CountDownLatch(controllerCount);
+        final BenchmarkController[] controllers = new BenchmarkController[controllerCount];
+        for (int i = 0; i < controllerCount; i++) {
+            controllers[i] = new BenchmarkController(model, threading == Threading.VIRTUAL);
+            controllers[i].pauseExecution(Duration.ofMillis(5));
+            controllers[i].runLater(m -> latch.countDown());
+        }
+        latch.await();
+        for (BenchmarkController controller : controllers) {
+            controller.shutdown();
+        }
+    }
+
+    static final class BenchmarkController extends ControllerBase<Object> {
+
+        BenchmarkController(Object model, boolean virtualThreads) {
+            super(model);
+            setVirtualThreads(virtualThreads);
+        }
+    }
+
+}
@@ -0,0 +1,82 @@
+package io.czj.mvc.util;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 比较 ObservableValue 的写时复制侦听器数组与之前基于 HashSet 的实现的通知开销。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ObservableValueBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int listenerCount;
+
+    private ObservableValue<Integer> observableValue;
+    private HashSetObservableValue<Integer> hashSetObservableValue;
+
+    private int next;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        observableValue = new ObservableValue<>(0);
+        hashSetObservableValue = new HashSetObservableValue<>(0);
+        for (int i = 0; i < listenerCount; i++) {
+            observableValue.onChange((oldValue, newValue) -> blackhole.consume(newValue));
+            hashSetObservableValue.onChange((oldValue, newValue) -> blackhole.consume(newValue));
+        }
+    }
+
+    @Benchmark
+    public void copyOnWrite() {
+        observableValue.setValue(++next & 0xFF);
+    }
+
+    @Benchmark
+    public void hashSet() {
+        hashSetObservableValue.setValue(++next & 0xFF);
+    }
+
+    /**
+     * 之前的实现，仅作为基准比较的参照。
+     */
+    static final class HashSetObservableValue<V> {
+
+        private final Set<ObservableValue.ValueChangeListener<V>> listeners = new HashSet<>();
+
+        private volatile V value;
+
+        HashSetObservableValue(V initialValue) {
+            value = initialValue;
+        }
+
+        void onChange(ObservableValue.ValueChangeListener<V> listener) {
+            listeners.add(listener);
+            listener.update(value, value);
+        }
+
+        void setValue(V newValue) {
+            if (Objects.equals(value, newValue)) {
+                return;
+            }
+            V oldValue = value;
+            value = newValue;
+
+            listeners.forEach(listener -> {
+                if (value.equals(newValue)) {
+                    listener.update(oldValue, newValue);
+                }
+            });
+        }
+    }
+
+}
@@ -3,24 +3,46 @@ package io.czj.mvc.templateapp;
 import io.czj.mvc.templateapp.controller.SomeController;
 import io.czj.mvc.templateapp.model.SomeModel;
 import io.czj.mvc.templateapp.view.SomeGUI;
+import io.czj.mvc.util.ModelSnapshot;
+import io.czj.mvc.util.ViewResources;
 import javafx.application.Application;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+
 /**
  * @Author: chenzejin
  * @Date: 2022/1/15
  */
 public class AppStarter extends Application {
 
+    // 模型的状态保存在这里，下次启动时恢复
+    private static final Path SNAPSHOT_FILE = Path.of(System.getProperty("user.home"), ".template-jfx", "SomeModel.snapshot");
+
     private SomeController controller;
+    private ModelSnapshot  snapshot;
 //    private SomePUI        pui;
+//    private RemoteProjector<SomeModel, SomeController> remote;
 
     @Override
-    public void start(Stage primaryStage) {
+    public void start(Stage primaryStage) throws IOException {
+        // 字体和样式表在后台并行加载，GUI 的 initializeSelf 只需要从缓存中取
+        ViewResources.prewarmFonts(SomeGUI.class, SomeGUI.FONTS);
+        ViewResources.prewarmStylesheets(SomeGUI.class, SomeGUI.STYLESHEETS);
+
         // 那是您的“信息中心”。
         SomeModel model = new SomeModel();
+
+        // 必须在创建控制器和 GUI 之前恢复
+        snapshot = new ModelSnapshot(model, SNAPSHOT_FILE);
+        snapshot.restore();
+        // 崩溃时最多丢失最近几秒的变化
+        snapshot.startFlushing(Duration.ofSeconds(5));
+
         controller = new SomeController(model);
 
         //both gui and pui are working on the same controller
@@ -37,12 +59,19 @@ public class AppStarter extends Application {
 
         // on desktop it's convenient to have a very basic emulator for the PUI to test the interaction between GUI and PUI
         // startPUIEmulator(new SomePuiEmulator(controller));
+
+        // 其他进程中的显示可以通过 RemoteModelMirror 连接这个端口，共用同一个控制器
+        // remote = new RemoteProjector<>(controller, 4711)
+        //         .onAction("increaseCounter", SomeController::increaseCounter)
+        //         .onAction("setLedGlows", SnapshotCodec.BOOLEAN, SomeController::setLedGlows);
     }
 
     @Override
-    public void stop() {
+    public void stop() throws IOException {
         controller.shutdown();
+        snapshot.close();
 //        pui.shutdown();
+//        remote.close();
     }
 
     private void startPUIEmulator(Parent puiEmulator) {
@@ -1,5 +1,7 @@
 package io.czj.mvc.templateapp.model;
 
+import io.czj.mvc.util.ObservableBoolean;
+import io.czj.mvc.util.ObservableInt;
 import io.czj.mvc.util.ObservableValue;
 
 /**
@@ -9,13 +11,15 @@ import io.czj.mvc.util.ObservableValue;
  *
  * 所有应用程序逻辑都由Controller处理
  *
+ * transient 字段不会保存到 ModelSnapshot 中
+ *
  * @Author: chenzejin
  * @Date: 2022/1/15
  */
 public class SomeModel {
 
-    public final ObservableValue<String>  systemInfo = new ObservableValue<>("JavaFX " + System.getProperty("javafx.version") + ", running on Java " + System.getProperty("java.version") + ".");
-    public final ObservableValue<Integer> counter    = new ObservableValue<>(73);
-    public final ObservableValue<Boolean> ledGlows   = new ObservableValue<>(false);
+    public final transient ObservableValue<String> systemInfo = new ObservableValue<>("JavaFX " + System.getProperty("javafx.version") + ", running on Java " + System.getProperty("java.version") + ".");
+    public final ObservableInt            counter    = new ObservableInt(73);
+    public final ObservableBoolean        ledGlows   = new ObservableBoolean(false);
 
 }
@@ -20,6 +20,10 @@ public class SomeGUI extends BorderPane implements ViewMixin<SomeModel, SomeCont
     // fontawesome 字体中灯泡图标的 unicode
     private static final String LIGHT_BULB = "\uf0eb";
 
+    // 所需的字体和样式表，AppStarter 会在启动时预先加载
+    public static final String[] FONTS = {"/fonts/Lato/Lato-Lig.ttf", "/fonts/fontawesome-webfont.ttf"};
+    public static final String[] STYLESHEETS = {"/mvc/templateapp/style.css"};
+
     // 声明您需要的所有 UI 元素
     private Button ledButton;
     private Button increaseButton;
@@ -34,10 +38,10 @@ public class SomeGUI extends BorderPane implements ViewMixin<SomeModel, SomeCont
     @Override
     public void initializeSelf() {
         //load all fonts you need
-        loadFonts("/fonts/Lato/Lato-Lig.ttf", "/fonts/fontawesome-webfont.ttf");
+        loadFonts(FONTS);
 
         //apply your style
-        addStylesheetFiles("/mvc/templateapp/style.css");
+        addStylesheetFiles(STYLESHEETS);
 
         getStyleClass().add("root-pane");
     }
@@ -86,8 +90,8 @@ public class SomeGUI extends BorderPane implements ViewMixin<SomeModel, SomeCont
         onChangeOf(model.systemInfo)                       // the value we need to observe, in this case that's an ObservableValue<String>, no need to convert it
                 .update(infoLabel.textProperty());         // keeps textProperty and systemInfo in sync
 
-        onChangeOf(model.counter)                          // the value we need to observe, in this case that's an ObservableValue<Integer>
-                .convertedBy(String::valueOf)              // we have to convert the Integer to a String
+        onChangeOf(model.counter)                          // the value we need to observe, in this case that's an ObservableInt
+                .convertedBy(String::valueOf)              // we have to convert the int to a String
                 .update(counterLabel.textProperty());      // keeps textProperty and counter in sync
     }
 
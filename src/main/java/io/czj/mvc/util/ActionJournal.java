@@ -0,0 +1,432 @@
+package io.czj.mvc.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * 一个只追加的日志，记录控制器对模型的每一次修改，用于审计和在启动时重建模型。
+ * <p>
+ * 和 {@link ModelSnapshot} 一样，日志跟踪模型中所有非 transient 的 Observable 字段。每当一个字段的值改变（setValue、updateModel 等），
+ * 执行操作的线程只把新值编码后放入内存缓冲区；一个单独的写线程把缓冲区中积累的所有记录一次写入文件，然后执行一次 fsync（group commit）。
+ * fsync 期间到达的记录进入下一批，所以负载越高每次 fsync 包含的记录越多。缓冲区中的字节数超过上限时，记录修改的线程会等待写线程，
+ * 因此内存和未落盘的数据都是有界的。
+ * <p>
+ * 每条记录是 [int 长度][int CRC32][long 时间][字段名][类型的键][值]。文件末尾写了一半的记录（例如进程被杀死）在 {@link #replay()} 时被截掉。
+ * <p>
+ * 典型用法：
+ * <pre>
+ * ActionJournal journal = new ActionJournal(model, file);
+ * journal.replay();                 // 在创建视图之前
+ * journal.start();                  // 之后的修改都会被记录
+ * controller = new SomeController(model);
+ * ...
+ * controller.shutdown();
+ * journal.close();
+ * </pre>
+ * 指标见 {@link #getMetrics()}。
+ */
+public final class ActionJournal implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ActionJournal.class);
+
+    private static final int MAGIC = 0x4D56434A;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+    // 长度和 CRC
+    private static final int RECORD_HEADER_SIZE = 2 * Integer.BYTES;
+
+    private static final int DEFAULT_MAX_PENDING_BYTES = 1 << 20;
+
+    private final Path file;
+    private final Map<String, Object> observables;
+    private final FieldCodecs codecs = new FieldCodecs();
+    private final JournalMetrics metrics;
+
+    private int maxPendingBytes = DEFAULT_MAX_PENDING_BYTES;
+
+    // 以下字段由 lock 保护
+    private final Object lock = new Object();
+    private List<ByteBuffer> pending = new ArrayList<>();
+    private long pendingBytes = 0;
+    // 最早一条未写入的记录放入缓冲区的时间
+    private long oldestPendingNanos;
+    private long appended = 0;
+    private long committed = 0;
+    private boolean closed = false;
+    private IOException failure;
+
+    private final List<Subscription> subscriptions = new ArrayList<>();
+    private FileChannel channel;
+    private Thread writer;
+
+    public ActionJournal(Object model, Path file) {
+        this.file = Objects.requireNonNull(file);
+        this.observables = ModelFields.persistentObservables(model);
+        this.metrics = new JournalMetrics(model.getClass().getSimpleName() + "@" + file.getFileName());
+    }
+
+    /**
+     * 注册一种值类型的编码。只有值的类与 type 完全相同时才使用它，没有编码的字段不会被记录。
+     *
+     * @return this
+     */
+    public synchronized <V> ActionJournal withCodec(Class<V> type, SnapshotCodec<V> codec) {
+        codecs.register(type, codec);
+        return this;
+    }
+
+    /**
+     * 缓冲区中最多积累多少字节等待写入，默认 1 MiB。
+     *
+     * @return this
+     */
+    public ActionJournal withMaxPendingBytes(int maxPendingBytes) {
+        if (maxPendingBytes < 1) {
+            throw new IllegalArgumentException("maxPendingBytes must be positive");
+        }
+        synchronized (lock) {
+            this.maxPendingBytes = maxPendingBytes;
+        }
+        return this;
+    }
+
+    /**
+     * 用日志重建模型：每个字段只写入它在日志中的最后一个值，所以重建的时间只取决于文件的大小，而不是字段被修改的次数。
+     * 必须在开始记录之前调用，通常在创建视图之前。
+     *
+     * @return 恢复的字段的数量
+     */
+    public synchronized int replay() throws IOException {
+        if (null != writer) {
+            throw new IllegalStateException("replay must be called before recording starts");
+        }
+        final Map<String, Entry> last = new LinkedHashMap<>();
+        final long valid = read(entry -> {
+            last.remove(entry.field);
+            last.put(entry.field, entry);
+        });
+        if (valid >= 0 && valid < Files.size(file)) {
+            try (FileChannel truncate = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                truncateTail(truncate, valid);
+            }
+        }
+        int restored = 0;
+        for (Entry entry : last.values()) {
+            final Object observable = observables.get(entry.field);
+            if (null != observable && codecs.apply(observable, entry.key, entry.bytes)) {
+                restored++;
+            }
+        }
+        return restored;
+    }
+
+    /**
+     * @return 日志中的所有记录，按写入的顺序。只包括已经写入文件的记录
+     */
+    public synchronized List<Entry> entries() throws IOException {
+        final List<Entry> entries = new ArrayList<>();
+        read(entries::add);
+        return entries;
+    }
+
+    /**
+     * @return 最后一条完整记录之后的位置，文件不存在或者不是日志时为 -1
+     */
+    private long read(Consumer<Entry> consumer) throws IOException {
+        if (!Files.exists(file) || Files.size(file) < HEADER_SIZE) {
+            return -1;
+        }
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            final MappedByteBuffer buffer = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                LOGGER.warn("{} is not an action journal, ignored", file);
+                return -1;
+            }
+            final CRC32 crc = new CRC32();
+            while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+                final int start = buffer.position();
+                final int length = buffer.getInt();
+                final int checksum = buffer.getInt();
+                if (length <= 0 || length > buffer.remaining()) {
+                    return start;
+                }
+                final ByteBuffer record = buffer.slice();
+                record.limit(length);
+                crc.reset();
+                crc.update(record.duplicate());
+                if ((int) crc.getValue() != checksum) {
+                    return start;
+                }
+                consumer.accept(decode(record));
+                buffer.position(start + RECORD_HEADER_SIZE + length);
+            }
+            return buffer.position();
+        }
+    }
+
+    private void truncateTail(FileChannel channel, long valid) throws IOException {
+        LOGGER.warn("{}: incomplete record at offset {}, truncated", file, valid);
+        channel.truncate(valid);
+        channel.force(true);
+    }
+
+    private Entry decode(ByteBuffer record) {
+        final long time = record.getLong();
+        final String field = readString(record);
+        final String key = readString(record);
+        final byte[] bytes = new byte[record.getInt()];
+        record.get(bytes);
+        return new Entry(time, field, key, bytes);
+    }
+
+    /**
+     * 开始记录模型的修改。日志直接跟踪模型中的 Observable，而不是某个控制器的操作，所以任何控制器对模型的修改都会被记录。
+     * 应在第一个操作提交之前调用，需要重建模型时在 {@link #replay()} 之后调用。
+     * <p>
+     * 即使没有调用 replay，文件末尾不完整或校验失败的记录也会在追加之前被截掉，否则之后的记录在读取时都会被丢弃。
+     */
+    public synchronized void start() throws IOException {
+        if (null != writer) {
+            return;
+        }
+        final Path parent = file.toAbsolutePath().getParent();
+        if (null != parent) {
+            Files.createDirectories(parent);
+        }
+        final long valid = read(entry -> { });
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.READ);
+        if (valid < 0) {
+            channel.truncate(0);
+            channel.write(ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(FORMAT_VERSION).flip());
+            channel.force(true);
+        } else if (valid < channel.size()) {
+            truncateTail(channel, valid);
+        }
+        channel.position(channel.size());
+        observables.forEach((name, observable) -> subscriptions.add(FieldCodecs.track(observable, value -> append(name, observable, value))));
+        if (MvcMetrics.isEnabled()) {
+            MvcMetrics.register(metrics);
+        }
+        writer = new Thread(this::writeLoop, "ActionJournal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * 在修改模型的线程中调用：编码侦听器收到的新值并放入缓冲区。
+     */
+    private void append(String name, Object observable, Object newValue) {
+        final long start = System.nanoTime();
+        final String key = codecs.keyOf(observable, newValue);
+        if (null == key) {
+            return;
+        }
+        final byte[] value = codecs.encodeValue(key, newValue);
+        final byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        final int length = Long.BYTES + Short.BYTES + nameBytes.length + Short.BYTES + keyBytes.length + Integer.BYTES + value.length;
+        final ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + length);
+        record.putInt(length).putInt(0)
+                .putLong(System.currentTimeMillis())
+                .putShort((short) nameBytes.length).put(nameBytes)
+                .putShort((short) keyBytes.length).put(keyBytes)
+                .putInt(value.length).put(value);
+        final CRC32 crc = new CRC32();
+        crc.update(record.array(), RECORD_HEADER_SIZE, length);
+        record.putInt(Integer.BYTES, (int) crc.getValue());
+        record.flip();
+        synchronized (lock) {
+            if (closed || null != failure) {
+                return;
+            }
+            if (pendingBytes >= maxPendingBytes) {
+                metrics.blocked();
+                while (pendingBytes >= maxPendingBytes && !closed && null == failure) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+            }
+            // 两个线程同时修改同一个字段时，通知的顺序可能与写入的顺序相反。在锁中确认新值仍是当前值，
+            // 已经被覆盖的值不再记录：覆盖它的那次修改的记录一定在它之后放入缓冲区，所以日志中最后一条记录总是字段最终的值
+            if (closed || null != failure || !Objects.equals(newValue, FieldCodecs.valueOf(observable))) {
+                return;
+            }
+            if (pending.isEmpty()) {
+                oldestPendingNanos = System.nanoTime();
+                lock.notifyAll();
+            }
+            pending.add(record);
+            pendingBytes += record.remaining();
+            appended++;
+        }
+        metrics.appended(value.length, System.nanoTime() - start);
+    }
+
+    private void writeLoop() {
+        while (true) {
+            final List<ByteBuffer> batch;
+            final long oldest;
+            final long bytes;
+            synchronized (lock) {
+                while (pending.isEmpty() && !closed) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        // 只有 close 会结束写线程
+                    }
+                }
+                if (pending.isEmpty()) {
+                    return;
+                }
+                batch = pending;
+                oldest = oldestPendingNanos;
+                bytes = pendingBytes;
+                pending = new ArrayList<>();
+                pendingBytes = 0;
+                lock.notifyAll();
+            }
+            try {
+                final ByteBuffer[] buffers = batch.toArray(new ByteBuffer[0]);
+                long written = 0;
+                while (written < bytes) {
+                    written += channel.write(buffers);
+                }
+                channel.force(false);
+            } catch (IOException e) {
+                LOGGER.error("{}: could not write action journal, recording stopped", file, e);
+                synchronized (lock) {
+                    failure = e;
+                    pending.clear();
+                    lock.notifyAll();
+                }
+                return;
+            }
+            metrics.committed(bytes, System.nanoTime() - oldest);
+            synchronized (lock) {
+                committed += batch.size();
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * 等待到此刻为止记录的所有修改都写入文件并 fsync。
+     *
+     * @throws IOException 写线程因为错误而停止
+     */
+    public void sync() throws IOException {
+        synchronized (lock) {
+            final long target = appended;
+            while (committed < target && null == failure) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            if (null != failure) {
+                throw failure;
+            }
+        }
+    }
+
+    /**
+     * @return 此日志的指标。启用 {@link MvcMetrics} 时也注册为 MBean
+     */
+    public JournalMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * 停止记录，写入缓冲区中剩余的记录并关闭文件。应在控制器的所有操作完成之后调用。
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        subscriptions.forEach(Subscription::dispose);
+        subscriptions.clear();
+        if (null == writer) {
+            return;
+        }
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer = null;
+        channel.close();
+        channel = null;
+        MvcMetrics.unregister(metrics);
+        synchronized (lock) {
+            if (null != failure) {
+                throw failure;
+            }
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.getShort()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 日志中的一条记录。
+     */
+    public final class Entry {
+        private final long time;
+        private final String field;
+        private final String key;
+        private final byte[] bytes;
+
+        private Entry(long time, String field, String key, byte[] bytes) {
+            this.time = time;
+            this.field = field;
+            this.key = key;
+            this.bytes = bytes;
+        }
+
+        /**
+         * @return 记录的时间，自 1970 年以来的毫秒数
+         */
+        public long getTime() {
+            return time;
+        }
+
+        public String getField() {
+            return field;
+        }
+
+        /**
+         * @return 解码后的新值，没有编码时为 null
+         */
+        public Object getValue() {
+            return codecs.decode(key, bytes);
+        }
+    }
+
+}
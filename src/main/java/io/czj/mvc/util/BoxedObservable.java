@@ -0,0 +1,61 @@
+package io.czj.mvc.util;
+
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * 基本类型的 Observable 的装箱视图，由 {@link ObservableInt#asObject()} 等方法创建。
+ * <p>
+ * 视图本身没有状态：读取值、版本和注册侦听器都转交给原来的 Observable，侦听器先被包装成基本类型的侦听器。
+ * 因此同一个侦听器注册两次时会收到两次通知，每次注册仍然只由自己的句柄取消。
+ *
+ * @param <V> 装箱后的值类型
+ * @param <L> 原来的 Observable 的侦听器类型
+ */
+final class BoxedObservable<V, L> implements ReadOnlyObservable<V> {
+
+    private final Supplier<V> value;
+    private final LongSupplier version;
+    private final Function<L, Subscription> onChange;
+    private final Function<L, Subscription> onChangeWeak;
+    private final Function<ObservableValue.ValueChangeListener<V>, L> adapter;
+
+    BoxedObservable(Supplier<V> value, LongSupplier version, Function<L, Subscription> onChange,
+                    Function<L, Subscription> onChangeWeak, Function<ObservableValue.ValueChangeListener<V>, L> adapter) {
+        this.value = value;
+        this.version = version;
+        this.onChange = onChange;
+        this.onChangeWeak = onChangeWeak;
+        this.adapter = adapter;
+    }
+
+    @Override
+    public V getValue() {
+        return value.get();
+    }
+
+    long version() {
+        return version.getAsLong();
+    }
+
+    @Override
+    public Subscription onChange(ObservableValue.ValueChangeListener<V> listener) {
+        return onChange.apply(adapter.apply(Objects.requireNonNull(listener)));
+    }
+
+    /**
+     * 原来的 Observable 弱引用包装后的侦听器，返回的句柄强引用它，而它强引用 listener。
+     */
+    @Override
+    public Subscription onChangeWeak(ObservableValue.ValueChangeListener<V> listener) {
+        return onChangeWeak.apply(adapter.apply(Objects.requireNonNull(listener)));
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(getValue());
+    }
+
+}
@@ -0,0 +1,185 @@
+package io.czj.mvc.util;
+
+import java.util.Objects;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * 从一个或多个 Observable 派生出的只读值，通过 {@link ReadOnlyObservable#map}、{@link ReadOnlyObservable#filter}
+ * 和 {@link #combine} 创建。
+ * <p>
+ * 派生值是惰性的：只有读取它或者它有侦听器时才会计算，并且只有某个输入的版本变化时才重新计算，否则返回缓存的结果。
+ * 没有侦听器的派生值不订阅它的输入，因此输入变化时不会在控制器的工作线程中产生任何计算。
+ * <p>
+ * 重新计算之前先让输入刷新自己，所以依赖图总是按拓扑顺序计算：菱形依赖（A 派生出 B 和 C，D 组合 B 和 C）中 D 只计算一次，
+ * 也不会看到 B 已更新而 C 还是旧值的中间状态。计算结果与上次相同时版本不变，下游不会重新计算也不会通知侦听器。
+ */
+public final class ComputedValue<V> implements ReadOnlyObservable<V> {
+
+    private final ReadOnlyObservable<?>[] inputs;
+    // 参数是上一次计算的结果
+    private final UnaryOperator<V> function;
+
+    // 上一次计算时各个输入的版本
+    private final long[] inputVersions;
+    private boolean computed = false;
+    private V value;
+    private long version = 0;
+
+    // 最后一个侦听器取消时停止订阅输入
+    private final Listeners<ObservableValue.ValueChangeListener<V>> listeners = new Listeners<>(this::listenersGone);
+    // 对输入的订阅，没有侦听器时为 null
+    private Subscription[] inputSubscriptions;
+    // 侦听器最后一次收到的值
+    private V notifiedValue;
+
+    ComputedValue(UnaryOperator<V> function, ReadOnlyObservable<?>... inputs) {
+        this.function = Objects.requireNonNull(function);
+        this.inputs = inputs.clone();
+        for (ReadOnlyObservable<?> input : this.inputs) {
+            if (!(input instanceof ObservableValue) && !(input instanceof ComputedValue) && !(input instanceof BoxedObservable)) {
+                throw new IllegalArgumentException("unsupported input: " + input);
+            }
+        }
+        this.inputVersions = new long[inputs.length];
+    }
+
+    /**
+     * @return 一个派生值，它的值是 combiner 应用于两个输入的值的结果
+     */
+    public static <A, B, R> ComputedValue<R> combine(ReadOnlyObservable<A> first, ReadOnlyObservable<B> second,
+                                                     BiFunction<? super A, ? super B, ? extends R> combiner) {
+        Objects.requireNonNull(combiner);
+        return new ComputedValue<>(previous -> combiner.apply(first.getValue(), second.getValue()), first, second);
+    }
+
+    /**
+     * 任意个输入的组合。computation 应该只读取 inputs 中的值。
+     *
+     * @return 一个派生值，它的值是 computation 的结果
+     */
+    public static <R> ComputedValue<R> combine(Supplier<? extends R> computation, ReadOnlyObservable<?>... inputs) {
+        Objects.requireNonNull(computation);
+        return new ComputedValue<>(previous -> computation.get(), inputs);
+    }
+
+    @Override
+    public synchronized V getValue() {
+        refresh();
+        return value;
+    }
+
+    /**
+     * 如果某个输入的版本变化了则重新计算。
+     *
+     * @return 当前的版本，每次计算结果变化时加一
+     */
+    synchronized long refresh() {
+        boolean stale = !computed;
+        for (int i = 0; i < inputs.length; i++) {
+            long inputVersion = versionOf(inputs[i]);
+            if (inputVersion != inputVersions[i]) {
+                inputVersions[i] = inputVersion;
+                stale = true;
+            }
+        }
+        if (stale) {
+            V newValue = function.apply(value);
+            if (!computed || !Objects.equals(value, newValue)) {
+                value = newValue;
+                version++;
+            }
+            computed = true;
+        }
+        return version;
+    }
+
+    private static long versionOf(ReadOnlyObservable<?> input) {
+        if (input instanceof ObservableValue) {
+            return ((ObservableValue<?>) input).version();
+        }
+        if (input instanceof BoxedObservable) {
+            return ((BoxedObservable<?, ?>) input).version();
+        }
+        return ((ComputedValue<?>) input).refresh();
+    }
+
+    /**
+     * 注册一个新的观察者（又名listener）。第一个侦听器注册时派生值开始订阅它的输入，最后一个侦听器取消时停止订阅。
+     *
+     * @param listener 指定值更改时需要执行的操作
+     * @return 用于取消注册的句柄
+     */
+    @Override
+    public Subscription onChange(ObservableValue.ValueChangeListener<V> listener) {
+        final Subscription subscription = listeners.add(listener);
+        observeInputs();
+        // 立即通知侦听器
+        V currentValue = getValue();
+        listener.update(currentValue, currentValue);
+        return subscription;
+    }
+
+    @Override
+    public Subscription onChangeWeak(ObservableValue.ValueChangeListener<V> listener) {
+        final Subscription subscription = listeners.addWeak(listener);
+        observeInputs();
+        // 立即通知侦听器
+        V currentValue = getValue();
+        listener.update(currentValue, currentValue);
+        return subscription;
+    }
+
+    /**
+     * 注册侦听器之后调用。侦听器可能在这之前已经取消，所以先检查是否还有侦听器。
+     */
+    private synchronized void observeInputs() {
+        if (null != inputSubscriptions || listeners.isEmpty()) {
+            return;
+        }
+        notifiedValue = getValue();
+        inputSubscriptions = new Subscription[inputs.length];
+        for (int i = 0; i < inputs.length; i++) {
+            inputSubscriptions[i] = inputs[i].onChange((oldValue, newValue) -> inputChanged());
+        }
+    }
+
+    private synchronized void listenersGone() {
+        if (listeners.isEmpty() && null != inputSubscriptions) {
+            // 没有人观察了：不再订阅输入，这样输入也不再引用此派生值
+            for (Subscription subscription : inputSubscriptions) {
+                subscription.dispose();
+            }
+            inputSubscriptions = null;
+        }
+    }
+
+    /**
+     * 在写入输入的线程中调用。菱形依赖中同一次变化会多次到达这里，只有第一次会重新计算并通知。
+     */
+    private void inputChanged() {
+        final V oldValue;
+        final V newValue;
+        synchronized (this) {
+            newValue = getValue();
+            if (Objects.equals(notifiedValue, newValue)) {
+                return;
+            }
+            oldValue = notifiedValue;
+            notifiedValue = newValue;
+        }
+        for (Object entry : listeners.snapshot()) {
+            final ObservableValue.ValueChangeListener<V> listener = listeners.resolve(entry);
+            if (null != listener) {
+                listener.update(oldValue, newValue);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(getValue());
+    }
+
+}
@@ -1,7 +1,14 @@
 package io.czj.mvc.util;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.time.Duration;
+import java.util.Objects;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
@@ -9,73 +16,738 @@ import java.util.function.Supplier;
  * 可以提交任务以供执行的设备。执行是异步的 - 可能在不同的线程中 - 但序列保持稳定, 这样对于所有任务A和B：如果B在A之后提交，B只会在A完成后执行。
  * <p>
  * 新任务可以在任务运行时提交。任务提交本身应该是线程受限的，即 ConcurrentTaskQueue 的创建和任务提交预计在同一个线程中运行，很可能是 JavaFX UI 应用程序线程。
+ * <p>
+ * 有两种执行模式，见 {@link Mode}。
+ * <p>
+ * 每个 todo 最多可以运行 maxToDoTime（毫秒精度）。截止时间由一个共享的定时器线程检查（见 {@link TaskScheduler}），不会阻塞任何执行线程。
+ * 超时的 todo 如何处理由 {@link TimeoutPolicy} 决定。无论哪种策略，下一个任务都要等超时的 todo 返回之后才开始，
+ * 因此顺序保证始终有效；SKIP_ON_DONE 和 FAIL 通过中断 todo 的线程来尽快结束它。
+ * <p>
+ * 默认情况下队列是无界的。通过 {@link #setCapacity(int, OverflowPolicy)} 可以限制等待执行的任务数量，
+ * 队列满时如何处理新任务由 {@link OverflowPolicy} 决定。
+ * <p>
+ * 任务可以带有一个 {@link Priority}，没有指定时是 {@link Priority#NORMAL}。只使用一种优先级时队列就是先进先出的，上面的顺序保证完全有效。
+ * 使用多种优先级时顺序保证变为：
+ * <ul>
+ * <li>同一优先级内的任务严格按提交的顺序执行，B 在 A 之后提交，B 只会在 A 完成后执行。</li>
+ * <li>不同优先级之间，每次开始下一个任务时选择优先级最高的等待中的任务，因此较晚提交的高优先级任务可以超过较早提交的低优先级任务。
+ * 已经开始的任务不会被打断，同一时间仍然只有一个任务在执行。</li>
+ * <li>老化：较低优先级中最早的任务等待超过它的老化时间（见 {@link #setAging(Priority, Duration)}）后被提升，
+ * 在下一次选择中优先于较高优先级的任务。两次提升之间至少按优先级执行一个任务，所以积压的旧任务不会反过来阻塞高优先级的任务，
+ * 而低优先级的任务在持续的高优先级负载下也能继续前进。</li>
+ * </ul>
  *
  * @Author: chenzejin
  * @Date: 2022/1/15
  */
 public final class ConcurrentTaskQueue<R> {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConcurrentTaskQueue.class);
+
     private final ExecutorService executor;
-    private final ConcurrentLinkedQueue<Task<R>> buffer;
+    // 截止时间的定时器和测量用的时钟
+    private final TaskScheduler scheduler;
+    // 每个优先级一个缓冲区，下标是 Priority.ordinal()
+    private final ConcurrentLinkedQueue<Task<R>>[] buffers;
+    // 每个优先级的老化时间（纳秒）。数组本身永远不会被修改，setAging 替换整个数组，这样工作线程总能看到完整的新值
+    private volatile long[] agingNanos = {0, Duration.ofMillis(200).toNanos(), Duration.ofSeconds(1).toNanos()};
     private final Duration maxToDoTime;
+    private final Mode mode;
+
+    private volatile TimeoutPolicy timeoutPolicy = TimeoutPolicy.FAIL;
+
+    private final LongAdder timedOut = new LongAdder();
+
+    // 未启用指标时为 null
+    private volatile QueueMetrics metrics;
+
+    private volatile int capacity = Integer.MAX_VALUE;
+    private volatile OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+    private volatile Consumer<Supplier<R>> rejectionHandler = todo -> {};
+
+    // 等待执行的任务数量，ConcurrentLinkedQueue.size() 需要遍历整个队列
+    private final AtomicInteger pending = new AtomicInteger();
+
+    // BLOCK 策略下等待空间的提交线程在此等待
+    private final Object spaceLock = new Object();
+    private volatile int waitingSubmitters = 0;
+
+    private final LongAdder blocked = new LongAdder();
+    private final LongAdder droppedOldest = new LongAdder();
+    private final LongAdder droppedNewest = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder aged = new LongAdder();
 
-    // 对于非线程限制的提交，我们可能需要一个 AtomicBoolean
-    private boolean running = false;
+    // 在第一个不是 NORMAL 的任务提交之前只有一个缓冲区在使用，不需要比较各个缓冲区
+    private volatile boolean prioritized = false;
+
+    // 上一个任务是否因老化而被选中。只由执行任务的一方访问（draining 或 running 保证同一时间只有一个）
+    private boolean lastWasAged = false;
+
+    // HANDOFF 模式下由提交线程和 onDone 线程共同访问（BLOCK 策略下被唤醒的提交线程也会访问），因此必须是原子的
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    // DRAIN 模式下由提交线程和工作线程共同访问，因此必须是原子的
+    private final AtomicBoolean draining = new AtomicBoolean(false);
 
     public ConcurrentTaskQueue() {
         this(Duration.ofSeconds(5));
     }
 
     public ConcurrentTaskQueue(Duration maxToDoTime) {
+        this(maxToDoTime, Mode.HANDOFF);
+    }
+
+    public ConcurrentTaskQueue(Mode mode) {
+        this(Duration.ofSeconds(5), mode);
+    }
+
+    public ConcurrentTaskQueue(Duration maxToDoTime, Mode mode) {
+        this(maxToDoTime, mode, TaskScheduler.SYSTEM);
+    }
+
+    /**
+     * 任务、截止时间和时钟都来自 scheduler，例如测试中的 {@link VirtualTimeScheduler}。
+     */
+    public ConcurrentTaskQueue(Duration maxToDoTime, Mode mode, TaskScheduler scheduler) {
+        // 同一时间只有一个任务在执行，一个线程就够了。HANDOFF 模式下等待 todo 的 onDone 在它的 todo 之后提交，所以不会占住唯一的线程
+        this(maxToDoTime, mode, scheduler.newExecutor(1), scheduler);
+    }
+
+    /**
+     * 使用给定的 executor 执行任务，例如 {@link VirtualThreads#newExecutor()}。顺序由队列本身保证，executor 不需要是单线程的。
+     * <p>
+     * executor 归此队列所有，并在 {@link #shutdown()} 中关闭。
+     */
+    public ConcurrentTaskQueue(Duration maxToDoTime, Mode mode, ExecutorService executor) {
+        this(maxToDoTime, mode, executor, TaskScheduler.SYSTEM);
+    }
+
+    private ConcurrentTaskQueue(Duration maxToDoTime, Mode mode, ExecutorService executor, TaskScheduler scheduler) {
         this.maxToDoTime = maxToDoTime;
-        // 使用 2 将 onDone 与下一个待办事项重叠
-        this.executor = Executors.newFixedThreadPool(1);
-        this.buffer = new ConcurrentLinkedQueue<>();
+        this.mode = mode;
+        this.executor = executor;
+        this.scheduler = Objects.requireNonNull(scheduler);
+        @SuppressWarnings("unchecked")
+        final ConcurrentLinkedQueue<Task<R>>[] buffers = new ConcurrentLinkedQueue[Priority.values().length];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.buffers = buffers;
     }
 
     public void shutdown() {
         executor.shutdown();
+        final QueueMetrics queueMetrics = metrics;
+        if (null != queueMetrics) {
+            MvcMetrics.unregister(queueMetrics);
+        }
     }
 
-    public void submit(Supplier<R> todo) {
-        submit(todo, r -> {});
+    /**
+     * 开始测量此队列并将指标注册到 {@link MvcMetrics}。应在第一个任务提交之前调用。
+     *
+     * @param name 指标的名称，例如所属控制器的名称
+     * @return 此队列的指标
+     */
+    public QueueMetrics enableMetrics(String name) {
+        if (null == metrics) {
+            QueueMetrics queueMetrics = new QueueMetrics(name, this);
+            MvcMetrics.register(queueMetrics);
+            metrics = queueMetrics;
+        }
+        return metrics;
     }
 
-    public void submit(Supplier<R> todo, Consumer<R> onDone) {
-        buffer.add(new Task<>(todo, onDone));
-        execute();
+    /**
+     * @return 此队列的指标，未启用时为 null
+     */
+    public QueueMetrics getMetrics() {
+        return metrics;
     }
 
-    private void execute() {
-        if (running) {
+    /**
+     * 限制等待执行的任务数量。
+     *
+     * @param capacity       最多有多少个任务等待执行（不包括正在执行的任务）
+     * @param overflowPolicy 队列满时如何处理新任务
+     */
+    public void setCapacity(int capacity, OverflowPolicy overflowPolicy) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.overflowPolicy = Objects.requireNonNull(overflowPolicy);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * 在 {@link OverflowPolicy#REJECT} 策略下，被拒绝的 todo 会交给这个回调，回调在提交线程中执行。
+     */
+    public void setRejectionHandler(Consumer<Supplier<R>> rejectionHandler) {
+        this.rejectionHandler = Objects.requireNonNull(rejectionHandler);
+    }
+
+    /**
+     * @return 等待执行的任务数量
+     */
+    public int size() {
+        return pending.get();
+    }
+
+    public long getBlockedCount() {
+        return blocked.sum();
+    }
+
+    public long getDroppedOldestCount() {
+        return droppedOldest.sum();
+    }
+
+    public long getDroppedNewestCount() {
+        return droppedNewest.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return 到目前为止因老化而提前执行的任务的数量
+     */
+    public long getAgedCount() {
+        return aged.sum();
+    }
+
+    /**
+     * 设置一个优先级的老化时间：这个优先级中最早的任务等待超过它之后，在下一次选择中优先于较高优先级的任务。
+     * 默认 NORMAL 是 200 毫秒，BACKGROUND 是 1 秒。INTERACTIVE 是最高的优先级，老化对它没有意义。
+     */
+    public synchronized void setAging(Priority priority, Duration aging) {
+        if (aging.isNegative()) {
+            throw new IllegalArgumentException("aging must not be negative");
+        }
+        final long[] updated = agingNanos.clone();
+        updated[priority.ordinal()] = aging.toNanos();
+        agingNanos = updated;
+    }
+
+    public Duration getAging(Priority priority) {
+        return Duration.ofNanos(agingNanos[priority.ordinal()]);
+    }
+
+    /**
+     * @return 任务是否被接受。只有在队列满并且策略是 DROP_NEWEST 或 REJECT 时才返回 false
+     */
+    public boolean submit(Supplier<R> todo) {
+        return submit(todo, r -> {});
+    }
+
+    /**
+     * @return 任务是否被接受。只有在队列满并且策略是 DROP_NEWEST 或 REJECT 时才返回 false
+     */
+    public boolean submit(Supplier<R> todo, Consumer<R> onDone) {
+        return submit(todo, onDone, Priority.NORMAL);
+    }
+
+    /**
+     * 以给定的优先级提交任务，见 {@link Priority}。
+     *
+     * @return 任务是否被接受。只有在队列满并且策略是 DROP_NEWEST 或 REJECT 时才返回 false
+     */
+    public boolean submit(Supplier<R> todo, Consumer<R> onDone, Priority priority) {
+        Objects.requireNonNull(priority);
+        if (pending.get() >= capacity && !makeRoom(todo)) {
+            return false;
+        }
+        enqueue(todo, onDone, priority);
+        return true;
+    }
+
+    /**
+     * 不考虑容量地提交任务。用于必须执行的内部任务，例如 awaitCompletion 的标记。DROP_OLDEST 不会丢弃这样的任务。
+     */
+    void forceSubmit(Supplier<R> todo, Consumer<R> onDone) {
+        forceSubmit(todo, onDone, Priority.NORMAL);
+    }
+
+    void forceSubmit(Supplier<R> todo, Consumer<R> onDone, Priority priority) {
+        final Task<R> task = new Task<>(todo, onDone, priority);
+        task.forced = true;
+        enqueue(task);
+    }
+
+    /**
+     * 队列已满时按照策略处理。
+     *
+     * @return 新任务是否仍应加入队列
+     */
+    private boolean makeRoom(Supplier<R> todo) {
+        switch (overflowPolicy) {
+            case BLOCK:
+                blocked.increment();
+                awaitSpace();
+                return true;
+            case DROP_OLDEST:
+                while (pending.get() >= capacity && null != dropOldest()) {
+                    droppedOldest.increment();
+                }
+                return true;
+            case DROP_NEWEST:
+                droppedNewest.increment();
+                return false;
+            default:
+                rejected.increment();
+                rejectionHandler.accept(todo);
+                return false;
+        }
+    }
+
+    /**
+     * 阻塞提交线程直到队列中有空间。如果提交线程被中断，任务仍然会加入队列，中断标志保持不变。
+     */
+    private void awaitSpace() {
+        synchronized (spaceLock) {
+            waitingSubmitters++;
+            try {
+                while (pending.get() >= capacity) {
+                    spaceLock.wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                waitingSubmitters--;
+            }
+        }
+    }
+
+    /**
+     * @return 是否提交过不是 NORMAL 的任务
+     */
+    boolean isPrioritized() {
+        return prioritized;
+    }
+
+    private Task<R> nextTask() {
+        return taken(prioritized ? pollByPriority() : buffers[Priority.NORMAL.ordinal()].poll());
+    }
+
+    /**
+     * DROP_OLDEST 策略：丢弃最低优先级中最早的任务，跳过强制提交的任务和暂停，否则等待它们的线程永远不会被唤醒。
+     *
+     * @return 被丢弃的任务，只剩下强制提交的任务时为 null
+     */
+    private Task<R> dropOldest() {
+        for (int i = buffers.length - 1; i >= 0; i--) {
+            for (Task<R> task : buffers[i]) {
+                // remove 失败说明工作线程同时取走了这个任务
+                if (!task.forced && buffers[i].remove(task)) {
+                    return taken(task);
+                }
+            }
+        }
+        return null;
+    }
+
+    private Task<R> taken(Task<R> task) {
+        if (null != task) {
+            pending.decrementAndGet();
+            if (waitingSubmitters > 0) {
+                synchronized (spaceLock) {
+                    spaceLock.notifyAll();
+                }
+            }
+        }
+        return task;
+    }
+
+    /**
+     * 选择下一个任务：通常是优先级最高的缓冲区的第一个任务。如果一个较低优先级的缓冲区的第一个任务已经等待超过了老化时间，
+     * 并且上一个任务不是因老化而被选中的，则选择等待最久的那个。
+     */
+    private Task<R> pollByPriority() {
+        while (true) {
+            ConcurrentLinkedQueue<Task<R>> highest = null;
+            ConcurrentLinkedQueue<Task<R>> overdue = null;
+            long overdueSince = Long.MAX_VALUE;
+            final long now = lastWasAged ? 0 : scheduler.nanoTime();
+            final long[] aging = agingNanos;
+            for (int i = 0; i < buffers.length; i++) {
+                final Task<R> head = buffers[i].peek();
+                if (null == head) {
+                    continue;
+                }
+                if (null == highest) {
+                    highest = buffers[i];
+                } else if (!lastWasAged && now - head.enqueuedAt >= aging[i] && head.enqueuedAt < overdueSince) {
+                    overdue = buffers[i];
+                    overdueSince = head.enqueuedAt;
+                }
+            }
+            if (null == highest) {
+                return null;
+            }
+            lastWasAged = null != overdue;
+            // DROP_OLDEST 可能在提交线程中同时取走了任务，这时重新选择
+            final Task<R> task = (lastWasAged ? overdue : highest).poll();
+            if (null != task) {
+                if (lastWasAged) {
+                    aged.increment();
+                }
+                return task;
+            }
+        }
+    }
+
+    private boolean isBufferEmpty() {
+        for (ConcurrentLinkedQueue<Task<R>> buffer : buffers) {
+            if (!buffer.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 在队列中插入一个暂停：之前提交的任务完成之后等待 duration，然后才开始之后的任务。
+     * <p>
+     * 和在 todo 中 sleep 不同，暂停期间不占用线程，由定时器恢复执行，因此在共用的线程池中不会阻塞其他队列。不考虑容量。
+     */
+    void pause(Duration duration) {
+        final Task<R> task = new Task<>(null, null, Priority.NORMAL);
+        task.pause = Objects.requireNonNull(duration);
+        task.forced = true;
+        enqueue(task);
+    }
+
+    private void enqueue(Supplier<R> todo, Consumer<R> onDone, Priority priority) {
+        enqueue(new Task<>(todo, onDone, priority));
+    }
+
+    private void enqueue(Task<R> task) {
+        final Priority priority = task.priority;
+        if (priority != Priority.NORMAL && !prioritized) {
+            prioritized = true;
+        }
+        // 总是记录：之后才启用的指标和之后才出现的其他优先级都需要它
+        task.enqueuedAt = scheduler.nanoTime();
+        final QueueMetrics queueMetrics = metrics;
+        if (null != queueMetrics) {
+            queueMetrics.submitted();
+        }
+        pending.incrementAndGet();
+        buffers[priority.ordinal()].add(task);
+        if (mode == Mode.DRAIN) {
+            startDraining();
+        } else {
+            execute();
+        }
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * 设置超时的 todo 的处理方式。默认是 {@link TimeoutPolicy#FAIL}。
+     */
+    public void setTimeoutPolicy(TimeoutPolicy timeoutPolicy) {
+        this.timeoutPolicy = Objects.requireNonNull(timeoutPolicy);
+    }
+
+    public TimeoutPolicy getTimeoutPolicy() {
+        return timeoutPolicy;
+    }
+
+    /**
+     * @return 到目前为止超过 maxToDoTime 的 todo 的数量
+     */
+    public long getTimedOutCount() {
+        return timedOut.sum();
+    }
+
+    private void startDraining() {
+        if (draining.compareAndSet(false, true)) {
+            executor.execute(this::drain);
+        }
+    }
+
+    /**
+     * DRAIN 模式的工作循环：按顺序从 buffer 中取出任务，todo 和 onDone 在同一线程中依次执行。
+     * 每执行 {@link TaskScheduler#drainQuantum()} 个任务重新排队一次，这样共用线程的队列之间是公平的。
+     * <p>
+     * 只有当 buffer 为空时才释放工作线程。释放之后需要再检查一次 buffer，否则在 poll 返回 null 和
+     * 复位 draining 之间提交的任务就没有人处理了。
+     */
+    private void drain() {
+        final int quantum = scheduler.drainQuantum();
+        int executed = 0;
+        while (true) {
+            if (executed >= quantum && !isBufferEmpty() && yieldWorker()) {
+                return;
+            }
+            final Task<R> task = nextTask();
+            if (task == null) {
+                draining.set(false);
+                if (isBufferEmpty() || !draining.compareAndSet(false, true)) {
+                    return;
+                }
+                continue;
+            }
+            if (null != task.pause) {
+                // draining 保持为 true，暂停期间没有工作线程，新提交的任务只是排队
+                startPause(task, () -> executor.execute(this::drain));
+                return;
+            }
+            executed++;
+            try {
+                runOnDone(task, runTodo(task));
+            } catch (Exception e) {
+                failed(task, e);
+            }
+        }
+    }
+
+    /**
+     * 在 executor 中重新排队，把线程让给其他队列。draining 保持为 true，所以没有其他工作线程会同时开始。
+     *
+     * @return 是否已经重新排队；队列已经关闭时为 false，此时继续在当前线程中执行
+     */
+    private boolean yieldWorker() {
+        try {
+            executor.execute(this::drain);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 在 pause 之后调用 resume 继续执行。resume 在定时器线程中调用，不能阻塞。
+     */
+    private void startPause(Task<R> task, Runnable resume) {
+        final QueueMetrics queueMetrics = metrics;
+        final long start = scheduler.nanoTime();
+        if (null != queueMetrics) {
+            queueMetrics.started(start - task.enqueuedAt);
+        }
+        scheduler.schedule(() -> {
+            if (null != queueMetrics) {
+                final long end = scheduler.nanoTime();
+                queueMetrics.todoDone(end - start);
+                queueMetrics.onDoneDone(0, task.priority, end - task.enqueuedAt);
+            }
+            try {
+                resume.run();
+            } catch (RejectedExecutionException e) {
+                // 队列已经关闭
+            }
+        }, task.pause);
+    }
+
+    private void runOnDone(Task<R> task, R r) {
+        if (task.timedOut) {
+            return;
+        }
+        final QueueMetrics queueMetrics = metrics;
+        if (null == queueMetrics) {
+            task.onDone.accept(r);
             return;
         }
+        final long start = scheduler.nanoTime();
+        task.onDone.accept(r);
+        final long end = scheduler.nanoTime();
+        queueMetrics.onDoneDone(end - start, task.priority, end - task.enqueuedAt);
+    }
 
-        final Task<R> task = buffer.poll();
+    private void failed(Task<R> task, Exception e) {
+        // 被中断的 todo 抛出的异常是预料之中的
+        if (task.timedOut) {
+            return;
+        }
+        final QueueMetrics queueMetrics = metrics;
+        if (null != queueMetrics) {
+            queueMetrics.failed();
+        }
+        LOGGER.error("Task failed", e instanceof ExecutionException ? e.getCause() : e);
+    }
 
-        if (task == null) {
+    /**
+     * 在当前线程中执行 todo，并在执行期间为它安排截止时间。
+     */
+    private R runTodo(Task<R> task) {
+        final QueueMetrics queueMetrics = metrics;
+        final long start = null == queueMetrics ? 0 : scheduler.nanoTime();
+        if (null != queueMetrics) {
+            queueMetrics.started(start - task.enqueuedAt);
+        }
+        task.start(Thread.currentThread());
+        final TaskScheduler.Cancellable deadline = scheduler.schedule(() -> onDeadline(task), maxToDoTime);
+        try {
+            return task.todo.get();
+        } finally {
+            deadline.cancel();
+            task.finish();
+            if (null != queueMetrics) {
+                queueMetrics.todoDone(scheduler.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * 在定时器线程中调用。
+     */
+    private void onDeadline(Task<R> task) {
+        final TimeoutPolicy policy = timeoutPolicy;
+        if (!task.timeOut(policy != TimeoutPolicy.CONTINUE, timedOut)) {
             return;
         }
+        if (policy == TimeoutPolicy.FAIL) {
+            LOGGER.error("Task exceeded maxToDoTime of {} ms and was interrupted", maxToDoTime.toMillis());
+        } else if (policy == TimeoutPolicy.SKIP_ON_DONE) {
+            LOGGER.debug("Task exceeded maxToDoTime of {} ms and was interrupted", maxToDoTime.toMillis());
+        }
+    }
 
-        running = true;
+    /**
+     * HANDOFF 模式：同一时间只有一个任务在执行。与 drain 一样，释放之后需要再检查一次 buffer。
+     */
+    private void execute() {
+        final Task<R> task = claimNextTask();
+        if (task == null) {
+            return;
+        }
+        if (null != task.pause) {
+            // running 保持为 true，直到暂停结束
+            startPause(task, () -> {
+                running.set(false);
+                execute();
+            });
+            return;
+        }
 
-        final Future<R> todoFuture = executor.submit(task.todo::get);
+        final Future<R> todoFuture = executor.submit(() -> runTodo(task));
 
         Runnable onDoneRunnable = () -> {
             try {
-                final R r = todoFuture.get(maxToDoTime.getSeconds(), TimeUnit.SECONDS);
-                task.onDone.accept(r);
+                // 截止时间由定时器负责，这里只等待 todo 返回
+                runOnDone(task, todoFuture.get());
             } catch (Exception e) {
-                e.printStackTrace();
-                // todo: 考虑更好的异常处理
+                failed(task, e);
             } finally {
-                running = false;
+                running.set(false);
                 execute();
             }
         };
         executor.submit(onDoneRunnable);
     }
 
+    /**
+     * 设置 running 并取出下一个任务。和 drain 一样在循环中再检查，而不是递归，这样竞争激烈时栈不会增长。
+     *
+     * @return 下一个任务；没有等待中的任务或者已经有任务在执行时为 null
+     */
+    private Task<R> claimNextTask() {
+        while (running.compareAndSet(false, true)) {
+            final Task<R> task = nextTask();
+            if (task != null) {
+                return task;
+            }
+            running.set(false);
+            if (isBufferEmpty()) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 任务的执行方式。两种模式都保证同样的顺序。
+     */
+    public enum Mode {
+        /**
+         * 每个任务向 executor 提交两次：一次执行 todo，一次等待结果并执行 onDone。
+         */
+        HANDOFF,
+
+        /**
+         * 一个工作线程循环处理 buffer 中的任务，todo 和 onDone 依次直接执行，没有额外的 Future 和线程切换。
+         */
+        DRAIN
+    }
+
+    /**
+     * todo 超过 maxToDoTime 时的处理方式。
+     */
+    public enum TimeoutPolicy {
+        /**
+         * 中断 todo，不调用 onDone。
+         */
+        SKIP_ON_DONE,
+
+        /**
+         * 和 SKIP_ON_DONE 一样，另外将超时作为错误报告。
+         */
+        FAIL,
+
+        /**
+         * 不中断 todo，它返回后照常调用 onDone。超时只被计数。
+         */
+        CONTINUE
+    }
+
+    /**
+     * 有界队列已满时如何处理新任务。
+     */
+    public enum OverflowPolicy {
+        /**
+         * 阻塞提交线程直到有空间。注意提交线程通常是 JavaFX 应用程序线程，而且不能在任务内部向同一个队列提交。
+         */
+        BLOCK,
+
+        /**
+         * 丢弃最早的等待中的任务，它的 onDone 不会被调用。有多种优先级时先丢弃最低优先级中最早的任务。
+         * awaitCompletion 的标记和 pauseExecution 的暂停不会被丢弃。
+         */
+        DROP_OLDEST,
+
+        /**
+         * 丢弃新任务。
+         */
+        DROP_NEWEST,
+
+        /**
+         * 丢弃新任务并把它交给拒绝回调。
+         */
+        REJECT
+    }
+
+    /**
+     * 任务的优先级，从高到低。
+     */
+    public enum Priority {
+        /**
+         * 用户直接触发并等待结果的操作，例如点击按钮。
+         */
+        INTERACTIVE,
+
+        /**
+         * 默认的优先级。
+         */
+        NORMAL,
+
+        /**
+         * 用户不在等待的工作，例如定期的刷新和批量的模型更新。
+         */
+        BACKGROUND
+    }
+
     private static class Task<T> {
 
         // to-do 的返回类型 ..
@@ -84,9 +756,63 @@ public final class ConcurrentTaskQueue<R> {
         // .. 必须匹配 onDone 的输入类型
         private final Consumer<T> onDone;
 
-        public Task(Supplier<T> todo, Consumer<T> onDone) {
+        // 正在执行 todo 的线程，todo 没有在执行时为 null
+        private Thread thread;
+
+        // 如果 todo 因超时而被放弃；之后不再调用 onDone
+        private volatile boolean timedOut = false;
+
+        private final Priority priority;
+
+        // 不为 null 时这不是一个任务，而是 pause 插入的暂停
+        private Duration pause;
+
+        // 由 forceSubmit 或 pause 提交，DROP_OLDEST 不丢弃它
+        private boolean forced = false;
+
+        // 提交的时间
+        private long enqueuedAt;
+
+        public Task(Supplier<T> todo, Consumer<T> onDone, Priority priority) {
             this.todo = todo;
             this.onDone = onDone;
+            this.priority = priority;
+        }
+
+        synchronized void start(Thread thread) {
+            this.thread = thread;
+        }
+
+        /**
+         * 在执行 todo 的线程中调用。如果 todo 已被中断，清除中断标志，这样线程就可以继续用于下一个任务。
+         * <p>
+         * 中断和清除都在同一个锁中进行，所以中断不会在 finish 之后才到达。
+         */
+        synchronized void finish() {
+            thread = null;
+            if (timedOut) {
+                //noinspection ResultOfMethodCallIgnored
+                Thread.interrupted();
+            }
+        }
+
+        /**
+         * 在定时器线程中调用。
+         *
+         * @param abandon 是否放弃 todo 并中断它的线程
+         * @param counter 在中断之前递增，这样 todo 之后的任务总能看到计数
+         * @return todo 是否在截止时间仍在执行
+         */
+        synchronized boolean timeOut(boolean abandon, LongAdder counter) {
+            if (null == thread) {
+                return false;
+            }
+            counter.increment();
+            if (abandon) {
+                timedOut = true;
+                thread.interrupt();
+            }
+            return true;
         }
     }
 
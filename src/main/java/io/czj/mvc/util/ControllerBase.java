@@ -1,9 +1,23 @@
 package io.czj.mvc.util;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Queue;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
@@ -13,14 +27,53 @@ import java.util.function.Supplier;
  * 控制器提供应用程序的全部核心功能，即所谓的“动作”,动作的执行是异步的。序列保持稳定，使得
  * <p>
  * 对于A和B所有动作：如果B在A之后提交，B只会在A完成后执行。
+ * <p>
+ * 可选的合并模式（见 {@link #setCoalescing(boolean)}）可以把连续提交的、对同一个 ObservableValue 的写操作合并为一个。
+ * <p>
+ * 分区操作（见 {@link #asyncPartitioned(Object, Runnable)}）是这个顺序的唯一例外：不同分区的操作可以并行执行。
+ * <p>
+ * 操作可以带有一个优先级（见 {@link #async(ConcurrentTaskQueue.Priority, Runnable)}），这样用户的点击不用排在一长串后台更新之后。
+ * 上面的顺序只在同一优先级内成立，不同优先级之间的规则见 {@link ConcurrentTaskQueue}。没有指定优先级的操作都是 NORMAL。
+ * <p>
+ * 默认情况下每个控制器使用自己的线程执行操作。也可以让许多控制器共用一个有界的线程池（见 {@link #setScheduler(TaskScheduler)}）。
  *
  * @Author: chenzejin
  * @Date: 2022/1/15
  */
 public abstract class ControllerBase<M> {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(ControllerBase.class);
+
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+
     private ConcurrentTaskQueue<M> actionQueue;
 
+    private boolean coalescing = false;
+
+    // 所有控制器的默认值可以通过系统属性设置
+    private boolean virtualThreads = Boolean.getBoolean("io.czj.mvc.virtualThreads");
+
+    // 最后提交的操作，如果它是一个可合并的写操作。和任务提交一样是线程受限的
+    private PendingWrite lastPendingWrite;
+
+    private final LongAdder coalescedWrites = new LongAdder();
+
+    private int capacity = Integer.MAX_VALUE;
+    private ConcurrentTaskQueue.OverflowPolicy overflowPolicy = ConcurrentTaskQueue.OverflowPolicy.BLOCK;
+
+    private final Map<ConcurrentTaskQueue.Priority, Duration> aging = new EnumMap<>(ConcurrentTaskQueue.Priority.class);
+
+    private int partitionParallelism = Runtime.getRuntime().availableProcessors();
+
+    // 所有控制器的默认值可以通过系统属性设置
+    private TaskScheduler scheduler = Boolean.getBoolean("io.czj.mvc.sharedScheduler") ? TaskScheduler.SHARED : TaskScheduler.SYSTEM;
+
+    // 执行分区操作的线程池，在第一个分区操作提交时创建
+    private ExecutorService partitionPool;
+
+    // 最后提交的操作，如果它是一批尚未开始的分区操作。和任务提交一样是线程受限的
+    private PartitionBatch openBatch;
+
     // 此 Controller 管理的模型。只有子类可以直接访问
     protected final M model;
 
@@ -40,24 +93,55 @@ public abstract class ControllerBase<M> {
             actionQueue.shutdown();
             actionQueue = null;
         }
+        if (null != partitionPool) {
+            partitionPool.shutdown();
+            partitionPool = null;
+        }
     }
 
     /**
      * 在外部线程中以严格的顺序异步调度给定的操作以执行。操作完成后立即调用 onDone
      */
     protected void async(Supplier<M> action, Consumer<M> onDone) {
-        if (null == actionQueue) {
-            actionQueue = new ConcurrentTaskQueue<>();
-        }
-        actionQueue.submit(action, onDone);
+        submit(action, onDone);
     }
 
+    /**
+     * 以给定的优先级异步执行操作。同一优先级的操作保持严格的顺序，优先级较高的操作可以超过较早提交的优先级较低的操作，
+     * 见 {@link ConcurrentTaskQueue}。
+     */
+    protected void async(ConcurrentTaskQueue.Priority priority, Supplier<M> action, Consumer<M> onDone) {
+        submit(action, onDone, priority);
+    }
 
     /**
-     * 在外部线程中以严格的顺序异步调度给定的操作以执行。
+     * 以给定的优先级异步执行操作，见 {@link #async(ConcurrentTaskQueue.Priority, Supplier, Consumer)}。
      */
-    protected void async(Runnable todo) {
-        async(() -> {
+    protected void async(ConcurrentTaskQueue.Priority priority, Runnable todo) {
+        submit(() -> {
+                    todo.run();
+                    return model;
+                },
+                m -> {
+                },
+                priority);
+    }
+
+    private boolean submit(Supplier<M> action, Consumer<M> onDone) {
+        return submit(action, onDone, ConcurrentTaskQueue.Priority.NORMAL);
+    }
+
+    /**
+     * @return 操作是否被操作队列接受，见 {@link #setBackpressure(int, ConcurrentTaskQueue.OverflowPolicy)}
+     */
+    private boolean submit(Supplier<M> action, Consumer<M> onDone, ConcurrentTaskQueue.Priority priority) {
+        lastPendingWrite = null;
+        openBatch = null;
+        return actionQueue().submit(action, onDone, priority);
+    }
+
+    private boolean submit(Runnable todo) {
+        return submit(() -> {
                     todo.run();
                     return model;
                 },
@@ -65,6 +149,220 @@ public abstract class ControllerBase<M> {
                 });
     }
 
+    private ConcurrentTaskQueue<M> actionQueue() {
+        if (null == actionQueue) {
+            actionQueue = createActionQueue();
+            if (capacity < Integer.MAX_VALUE) {
+                actionQueue.setCapacity(capacity, overflowPolicy);
+                actionQueue.setRejectionHandler(this::onActionRejected);
+            }
+            aging.forEach(actionQueue::setAging);
+            if (MvcMetrics.isEnabled()) {
+                enableMetrics();
+            }
+        }
+        return actionQueue;
+    }
+
+    /**
+     * 限制等待执行的操作数量，这样失控的事件源不会耗尽内存。必须在第一个操作提交之前调用，通常在子类的构造函数中。
+     * <p>
+     * 被丢弃的操作不会执行，它们的 onDone 也不会被调用。每种策略触发的次数可以通过 {@link #getActionQueue()} 或指标查看。
+     *
+     * @param capacity       最多有多少个操作等待执行
+     * @param overflowPolicy 队列满时如何处理新操作
+     */
+    protected void setBackpressure(int capacity, ConcurrentTaskQueue.OverflowPolicy overflowPolicy) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.overflowPolicy = Objects.requireNonNull(overflowPolicy);
+    }
+
+    /**
+     * 设置一个优先级的老化时间，见 {@link ConcurrentTaskQueue#setAging(ConcurrentTaskQueue.Priority, Duration)}。
+     * 必须在第一个操作提交之前调用，通常在子类的构造函数中。
+     */
+    protected void setAging(ConcurrentTaskQueue.Priority priority, Duration aging) {
+        this.aging.put(Objects.requireNonNull(priority), Objects.requireNonNull(aging));
+    }
+
+    /**
+     * 在 {@link ConcurrentTaskQueue.OverflowPolicy#REJECT} 策略下，队列满时被拒绝的操作。在提交线程中调用。
+     * <p>
+     * 默认只记录一条警告。
+     */
+    protected void onActionRejected(Supplier<M> action) {
+        LOGGER.warn("{}: action queue is full, action rejected", getClass().getSimpleName());
+    }
+
+    /**
+     * @return 操作队列，如果还没有提交过操作则为 null
+     */
+    protected ConcurrentTaskQueue<M> getActionQueue() {
+        return actionQueue;
+    }
+
+    /**
+     * 为操作队列和模型中的所有 Observable 注册指标，见 {@link MvcMetrics}。
+     */
+    private void enableMetrics() {
+        final String name = getClass().getSimpleName() + "#" + INSTANCES.incrementAndGet();
+        actionQueue.enableMetrics(name);
+        final String modelName = model.getClass().getSimpleName();
+        ModelFields.observables(model).forEach((field, observable) -> {
+            final String observableName = modelName + "." + field;
+            if (observable instanceof ObservableValue) {
+                ((ObservableValue<?>) observable).enableMetrics(observableName);
+            } else if (observable instanceof ObservableInt) {
+                ((ObservableInt) observable).enableMetrics(observableName);
+            } else if (observable instanceof ObservableLong) {
+                ((ObservableLong) observable).enableMetrics(observableName);
+            } else if (observable instanceof ObservableDouble) {
+                ((ObservableDouble) observable).enableMetrics(observableName);
+            } else {
+                ((ObservableBoolean) observable).enableMetrics(observableName);
+            }
+        });
+    }
+
+    /**
+     * @return 操作队列的指标，如果未启用指标或还没有提交过操作则为 null
+     */
+    public QueueMetrics getQueueMetrics() {
+        return null == actionQueue ? null : actionQueue.getMetrics();
+    }
+
+    /**
+     * 创建执行所有操作的队列。在第一个操作提交时调用。
+     * <p>
+     * 子类可以覆盖此方法来选择其他执行模式，例如 {@link ConcurrentTaskQueue.Mode#DRAIN}。
+     */
+    protected ConcurrentTaskQueue<M> createActionQueue() {
+        if (virtualThreads && (TaskScheduler.SYSTEM == scheduler || TaskScheduler.SHARED == scheduler)) {
+            // 在 HANDOFF 模式下 todo 和 onDone 会在不同的虚拟线程中并行运行，所以这里使用 DRAIN
+            return new ConcurrentTaskQueue<>(Duration.ofSeconds(5), ConcurrentTaskQueue.Mode.DRAIN, VirtualThreads.newExecutor());
+        }
+        final ConcurrentTaskQueue.Mode mode = scheduler.isShared() ? ConcurrentTaskQueue.Mode.DRAIN : ConcurrentTaskQueue.Mode.HANDOFF;
+        return new ConcurrentTaskQueue<>(Duration.ofSeconds(5), mode, scheduler);
+    }
+
+    /**
+     * 使用 scheduler 的线程和时钟执行操作、分区操作、pauseExecution 和 awaitCompletion。必须在第一个操作提交之前调用。
+     * <p>
+     * 默认是 {@link TaskScheduler#SYSTEM}：这个控制器使用自己的线程。{@link TaskScheduler#SHARED} 让所有控制器共用一个有界的线程池，
+     * 每个控制器只是其上的一条串行通道，适合大量控制器的场景。所有控制器的默认值可以通过系统属性 'io.czj.mvc.sharedScheduler' 设置。
+     * <p>
+     * 使用 SHARED 时，阻塞的操作（阻塞 I/O、等待各个分区的分区批次）在阻塞期间占用一个共用的线程，
+     * 线程池中的线程都被阻塞时，其他控制器的操作也要等待。pauseExecution 不占用线程。
+     * <p>
+     * 也用于测试：使用 {@link VirtualTimeScheduler} 时所有操作在测试线程中按确定的顺序执行，pauseExecution 和 maxToDoTime 不需要真实的等待。
+     */
+    public void setScheduler(TaskScheduler scheduler) {
+        this.scheduler = Objects.requireNonNull(scheduler);
+    }
+
+    /**
+     * 在虚拟线程中执行操作（需要 JDK 21+，否则仍使用平台线程）。必须在第一个操作提交之前调用，通常在子类的构造函数中。
+     * <p>
+     * 默认值来自系统属性 'io.czj.mvc.virtualThreads'。
+     */
+    protected void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    protected boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+
+    /**
+     * 在外部线程中以严格的顺序异步调度给定的操作以执行。
+     */
+    protected void async(Runnable todo) {
+        submit(todo);
+    }
+
+    /**
+     * 打开或关闭写操作的合并。默认关闭，通常在子类的构造函数中打开。
+     * <p>
+     * 打开后，如果对同一个 ObservableValue 的 setValue（或 increase、decrease、toggle）紧跟在一个尚未开始执行的、
+     * 同类的写操作之后提交，它不会进入队列，而是直接修改那个等待中的写操作：setValue 只保留最新的值，
+     * increase 和 decrease 累加成一个增量，两次 toggle 互相抵消。
+     * <p>
+     * 只有中间没有其他操作时才会合并，因此相对于其他 ObservableValue 和其他操作的顺序保持不变，
+     * 监听器只会错过中间值，不会看到从未存在过的状态组合。
+     */
+    protected void setCoalescing(boolean coalescing) {
+        this.coalescing = coalescing;
+        lastPendingWrite = null;
+    }
+
+    protected boolean isCoalescing() {
+        return coalescing;
+    }
+
+    /**
+     * @return 到目前为止因合并而没有单独执行的写操作的数量
+     */
+    public long getCoalescedWriteCount() {
+        return coalescedWrites.sum();
+    }
+
+    /**
+     * 在给定的分区中异步执行操作。
+     * <p>
+     * 同一分区的操作保持严格的顺序。连续提交的、不同分区的操作在一个有界线程池中并行执行（见 {@link #setPartitionParallelism(int)}）。
+     * <p>
+     * 所有其他操作（async、setValue、runLater 等）以及 awaitCompletion 都是屏障：在它们之前提交的所有分区的操作都完成之后它们才会执行，
+     * 在它们之后提交的分区操作要等它们完成之后才开始。
+     *
+     * @param partition 分区的键，例如操作修改的 ObservableValue 或子模型
+     * @param todo      需要执行的操作
+     */
+    protected void asyncPartitioned(Object partition, Runnable todo) {
+        Objects.requireNonNull(partition);
+        lastPendingWrite = null;
+        PartitionBatch batch = openBatch;
+        if (null != batch && batch.add(partition, todo)) {
+            return;
+        }
+        final Executor lanes;
+        if (!scheduler.isThreaded()) {
+            // 批次会在唯一的线程中等待它的分区，所以分区直接在批次中依次执行
+            lanes = Runnable::run;
+        } else {
+            if (null == partitionPool) {
+                // 分区批次在操作线程中等待它的各个分区，如果分区也在共用的线程池中执行，线程池可能被等待的批次占满
+                partitionPool = (scheduler.isShared() ? TaskScheduler.SYSTEM : scheduler).newExecutor(partitionParallelism);
+            }
+            lanes = partitionPool;
+        }
+        batch = new PartitionBatch(lanes);
+        batch.add(partition, todo);
+        if (submit(batch)) {
+            openBatch = batch;
+        }
+    }
+
+    /**
+     * 在以 observableValue 为键的分区中设置值，见 {@link #asyncPartitioned(Object, Runnable)}。
+     */
+    protected <V> void setValuePartitioned(ObservableValue<V> observableValue, V newValue) {
+        asyncPartitioned(observableValue, () -> observableValue.setValue(newValue));
+    }
+
+    /**
+     * 最多有多少个分区并行执行。必须在第一个分区操作提交之前调用。默认是处理器的数量。
+     */
+    protected void setPartitionParallelism(int partitionParallelism) {
+        if (partitionParallelism < 1) {
+            throw new IllegalArgumentException("partitionParallelism must be positive");
+        }
+        this.partitionParallelism = partitionParallelism;
+    }
+
     /**
      * 在已安排的所有操作完成后安排给定的操作。
      */
@@ -86,14 +384,19 @@ public abstract class ControllerBase<M> {
             return;
         }
 
-        CountDownLatch latch = new CountDownLatch(1);
-        actionQueue.submit(() -> {
-            latch.countDown();
-            return null;
-        });
+        lastPendingWrite = null;
+        openBatch = null;
+        // 每个用过的优先级一个标记，同一优先级内的顺序保证它们之前提交的操作都已完成
+        final ConcurrentTaskQueue.Priority[] priorities = actionQueue.isPrioritized()
+                ? ConcurrentTaskQueue.Priority.values() : new ConcurrentTaskQueue.Priority[]{ConcurrentTaskQueue.Priority.NORMAL};
+        CountDownLatch latch = new CountDownLatch(priorities.length);
+        for (ConcurrentTaskQueue.Priority priority : priorities) {
+            // 在 onDone 中计数，此时标记的 todo 已经完整结束（包括其指标）
+            actionQueue.forceSubmit(() -> null, m -> latch.countDown(), priority);
+        }
         try {
             //noinspection ResultOfMethodCallIgnored
-            latch.await(5, TimeUnit.SECONDS);
+            scheduler.await(latch, Duration.ofSeconds(5));
         } catch (InterruptedException e) {
             throw new IllegalStateException("CountDownLatch was interrupted");
         }
@@ -114,6 +417,10 @@ public abstract class ControllerBase<M> {
      * 值是异步设置的。
      */
     protected <V> void setValue(ObservableValue<V> observableValue, V newValue) {
+        if (coalescing) {
+            write(observableValue, PendingWrite.Kind.SET, newValue, 0L);
+            return;
+        }
         async(() -> observableValue.setValue(newValue));
     }
 
@@ -125,6 +432,10 @@ public abstract class ControllerBase<M> {
      * 切换 ObservableValue<Boolean> 的便捷方法
      */
     protected void toggle(ObservableValue<Boolean> observableValue) {
+        if (coalescing) {
+            write(observableValue, PendingWrite.Kind.TOGGLE, null, 1L);
+            return;
+        }
         async(() -> observableValue.setValue(!observableValue.getValue()));
     }
 
@@ -132,6 +443,10 @@ public abstract class ControllerBase<M> {
      * 将 ObservableValue<Integer> 增加 1 的便捷方法
      */
     protected void increase(ObservableValue<Integer> observableValue) {
+        if (coalescing) {
+            write(observableValue, PendingWrite.Kind.ADD, null, 1L);
+            return;
+        }
         async(() -> observableValue.setValue(observableValue.getValue() + 1));
     }
 
@@ -139,9 +454,192 @@ public abstract class ControllerBase<M> {
      * 将 ObservableValue<Integer> 减 1 的便捷方法
      */
     protected void decrease(ObservableValue<Integer> observableValue) {
+        if (coalescing) {
+            write(observableValue, PendingWrite.Kind.ADD, null, -1L);
+            return;
+        }
+        async(() -> observableValue.setValue(observableValue.getValue() - 1));
+    }
+
+    protected void setValue(ObservableInt observableValue, int newValue) {
+        if (coalescing) {
+            write(observableValue, PendingWrite.Kind.SET, null, newValue);
+            return;
+        }
+        async(() -> observableValue.setValue(newValue));
+    }
+
+    protected void setValue(ObservableLong observableValue, long newValue) {
+        if (coalescing) {
+            write(observableValue, PendingWrite.Kind.SET, null, newValue);
+            return;
+        }
+        async(() -> observableValue.setValue(newValue));
+    }
+
+    protected void setValue(ObservableDouble observableValue, double newValue) {
+        if (coalescing) {
+            write(observableValue, PendingWrite.Kind.SET, null, Double.doubleToRawLongBits(newValue));
+            return;
+        }
+        async(() -> observableValue.setValue(newValue));
+    }
+
+    protected void setValue(ObservableBoolean observableValue, boolean newValue) {
+        if (coalescing) {
+            write(observableValue, PendingWrite.Kind.SET, null, newValue ? 1L : 0L);
+            return;
+        }
+        async(() -> observableValue.setValue(newValue));
+    }
+
+    protected int get(ObservableInt observableValue) {
+        return observableValue.getValue();
+    }
+
+    protected long get(ObservableLong observableValue) {
+        return observableValue.getValue();
+    }
+
+    protected double get(ObservableDouble observableValue) {
+        return observableValue.getValue();
+    }
+
+    protected boolean get(ObservableBoolean observableValue) {
+        return observableValue.getValue();
+    }
+
+    /**
+     * 切换 ObservableBoolean 的便捷方法
+     */
+    protected void toggle(ObservableBoolean observableValue) {
+        if (coalescing) {
+            write(observableValue, PendingWrite.Kind.TOGGLE, null, 1L);
+            return;
+        }
+        async(() -> observableValue.setValue(!observableValue.getValue()));
+    }
+
+    /**
+     * 将 ObservableInt 增加 1 的便捷方法
+     */
+    protected void increase(ObservableInt observableValue) {
+        if (coalescing) {
+            write(observableValue, PendingWrite.Kind.ADD, null, 1L);
+            return;
+        }
+        async(() -> observableValue.setValue(observableValue.getValue() + 1));
+    }
+
+    /**
+     * 将 ObservableInt 减 1 的便捷方法
+     */
+    protected void decrease(ObservableInt observableValue) {
+        if (coalescing) {
+            write(observableValue, PendingWrite.Kind.ADD, null, -1L);
+            return;
+        }
+        async(() -> observableValue.setValue(observableValue.getValue() - 1));
+    }
+
+    /**
+     * 将 ObservableLong 增加 1 的便捷方法
+     */
+    protected void increase(ObservableLong observableValue) {
+        if (coalescing) {
+            write(observableValue, PendingWrite.Kind.ADD, null, 1L);
+            return;
+        }
+        async(() -> observableValue.setValue(observableValue.getValue() + 1));
+    }
+
+    /**
+     * 将 ObservableLong 减 1 的便捷方法
+     */
+    protected void decrease(ObservableLong observableValue) {
+        if (coalescing) {
+            write(observableValue, PendingWrite.Kind.ADD, null, -1L);
+            return;
+        }
         async(() -> observableValue.setValue(observableValue.getValue() - 1));
     }
 
+    /**
+     * 在列表末尾添加元素。与 setValue 一样异步执行，每次修改单独通知；需要合并为一个变化时使用 {@link #asyncTransaction(Runnable)}。
+     */
+    protected <E> void add(ObservableModelList<E> list, E element) {
+        async(() -> list.add(element));
+    }
+
+    protected <E> void add(ObservableModelList<E> list, int index, E element) {
+        async(() -> list.add(index, element));
+    }
+
+    protected <E> void addAll(ObservableModelList<E> list, Collection<? extends E> elements) {
+        // 复制一份，调用者之后修改 elements 不会影响还在排队的操作
+        final List<E> copy = new ArrayList<>(elements);
+        async(() -> list.addAll(copy));
+    }
+
+    protected <E> void replace(ObservableModelList<E> list, int index, E element) {
+        async(() -> list.set(index, element));
+    }
+
+    protected <E> void remove(ObservableModelList<E> list, int index) {
+        async(() -> list.remove(index));
+    }
+
+    /**
+     * 删除 [from, to) 区间的元素
+     */
+    protected <E> void removeRange(ObservableModelList<E> list, int from, int to) {
+        async(() -> list.removeRange(from, to));
+    }
+
+    protected <E> void setAll(ObservableModelList<E> list, Collection<? extends E> elements) {
+        final List<E> copy = new ArrayList<>(elements);
+        async(() -> list.setAll(copy));
+    }
+
+    protected <E> void clear(ObservableModelList<E> list) {
+        async(list::clear);
+    }
+
+    protected <K, V> void put(ObservableModelMap<K, V> map, K key, V value) {
+        async(() -> map.put(key, value));
+    }
+
+    /**
+     * 所有的键作为一个变化通知。
+     */
+    protected <K, V> void putAll(ObservableModelMap<K, V> map, Map<? extends K, ? extends V> values) {
+        final Map<K, V> copy = new LinkedHashMap<>(values);
+        async(() -> map.putAll(copy));
+    }
+
+    protected <K, V> void remove(ObservableModelMap<K, V> map, K key) {
+        async(() -> map.remove(key));
+    }
+
+    protected <K, V> void clear(ObservableModelMap<K, V> map) {
+        async(map::clear);
+    }
+
+    /**
+     * 合并模式下的写操作：尽可能合并到上一个等待中的写操作，否则作为新操作提交。
+     */
+    private void write(Object observable, PendingWrite.Kind kind, Object value, long number) {
+        PendingWrite last = lastPendingWrite;
+        if (null != last && last.merge(observable, kind, value, number)) {
+            coalescedWrites.increment();
+            return;
+        }
+        PendingWrite pendingWrite = new PendingWrite(observable, kind, value, number);
+        if (submit(pendingWrite)) {
+            lastPendingWrite = pendingWrite;
+        }
+    }
+
     /**
      * 用于在指定时间量内暂停执行操作的实用程序功能。
      * <p>
@@ -150,9 +648,16 @@ public abstract class ControllerBase<M> {
      * @param duration time to sleep
      */
     protected void pauseExecution(Duration duration) {
+        if (scheduler.isShared()) {
+            // 在共用的线程池中暂停期间不占用线程，由定时器恢复执行
+            lastPendingWrite = null;
+            openBatch = null;
+            actionQueue().pause(duration);
+            return;
+        }
         async(() -> {
             try {
-                Thread.sleep(duration.toMillis());
+                scheduler.sleep(duration);
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
             }
@@ -162,31 +667,258 @@ public abstract class ControllerBase<M> {
     /**
      * 如果您需要在一个异步调用中更新多个 ObservableValues，请使用此选项。
      * <p>
+     * 所有值在一个 {@link Transaction} 中写入：先写入所有值，然后每个发生变化的 Observable 只通知一次，
+     * 侦听器不会看到只更新了一部分的模型。
+     * <p>
      * 使用 'set' 获取合适的 Setter
      */
     protected void updateModel(Setter<?>... setters) {
-        async(() -> {
+        async(() -> Transaction.run(() -> {
             for (Setter<?> setter : setters) {
                 setter.setValue();
             }
-        });
+        }));
+    }
+
+    /**
+     * 和 {@link #updateModel(Setter[])} 一样，但以给定的优先级执行，例如用 BACKGROUND 执行批量的后台更新。
+     */
+    protected void updateModel(ConcurrentTaskQueue.Priority priority, Setter<?>... setters) {
+        async(priority, () -> Transaction.run(() -> {
+            for (Setter<?> setter : setters) {
+                setter.setValue();
+            }
+        }));
+    }
+
+    /**
+     * 在一个 {@link Transaction} 中异步执行 todo，它对模型的所有修改在 todo 结束后统一通知。
+     */
+    protected void asyncTransaction(Runnable todo) {
+        async(() -> Transaction.run(todo));
     }
 
     protected <V> Setter<V> set(ObservableValue<V> observableValue, V value) {
-        return new Setter<V>(observableValue, value);
+        return new Setter<>(() -> observableValue.setValue(value));
+    }
+
+    protected Setter<Integer> set(ObservableInt observableValue, int value) {
+        return new Setter<>(() -> observableValue.setValue(value));
+    }
+
+    protected Setter<Long> set(ObservableLong observableValue, long value) {
+        return new Setter<>(() -> observableValue.setValue(value));
+    }
+
+    protected Setter<Double> set(ObservableDouble observableValue, double value) {
+        return new Setter<>(() -> observableValue.setValue(value));
+    }
+
+    protected Setter<Boolean> set(ObservableBoolean observableValue, boolean value) {
+        return new Setter<>(() -> observableValue.setValue(value));
     }
 
     protected static class Setter<V> {
-        private final ObservableValue<V> observableValue;
-        private final V value;
+        private final Runnable write;
 
-        private Setter(ObservableValue<V> observableValue, V value) {
-            this.observableValue = observableValue;
-            this.value = value;
+        private Setter(Runnable write) {
+            this.write = write;
         }
 
         void setValue() {
-            observableValue.setValue(value);
+            write.run();
+        }
+    }
+
+    /**
+     * 连续提交的分区操作，在主队列中作为一个操作执行：每个分区作为一个任务提交到线程池，等所有分区都空闲后才结束。
+     * <p>
+     * 在执行期间仍然可以加入新的操作：它们被追加到自己的分区，需要时再启动该分区。
+     * 一旦所有分区都空闲，这批操作就结束了，不再接受新的操作。
+     */
+    private static final class PartitionBatch implements Runnable {
+
+        private final Executor pool;
+        private final Map<Object, Lane> lanes = new LinkedHashMap<>();
+
+        private boolean started = false;
+        private boolean completed = false;
+        // 正在执行的分区的数量
+        private int activeLanes = 0;
+
+        PartitionBatch(Executor pool) {
+            this.pool = pool;
+        }
+
+        synchronized boolean add(Object partition, Runnable todo) {
+            if (completed) {
+                return false;
+            }
+            Lane lane = lanes.computeIfAbsent(partition, p -> new Lane());
+            lane.todos.add(todo);
+            if (started && !lane.active) {
+                activate(lane);
+            }
+            return true;
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                started = true;
+                // 没有线程时分区在这里直接执行，它们提交的分区操作可能会加入 lanes
+                new ArrayList<>(lanes.values()).forEach(this::activate);
+                boolean interrupted = false;
+                while (activeLanes > 0) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                completed = true;
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        private void activate(Lane lane) {
+            lane.active = true;
+            activeLanes++;
+            pool.execute(() -> drain(lane));
+        }
+
+        private void drain(Lane lane) {
+            while (true) {
+                final Runnable todo;
+                synchronized (this) {
+                    todo = lane.todos.poll();
+                    if (null == todo) {
+                        lane.active = false;
+                        if (--activeLanes == 0) {
+                            notifyAll();
+                        }
+                        return;
+                    }
+                }
+                try {
+                    todo.run();
+                } catch (Exception e) {
+                    LOGGER.error("Partitioned action failed", e);
+                }
+            }
+        }
+
+        private static final class Lane {
+            private final Queue<Runnable> todos = new ArrayDeque<>();
+            private boolean active = false;
+        }
+    }
+
+    /**
+     * 合并模式下一个尚未执行的写操作。
+     * <p>
+     * 提交线程合并新值，工作线程执行写操作，两者通过 synchronized 协调：一旦开始执行，就不再接受合并。
+     * <p>
+     * 基本类型的值保存在 'number' 中（double 以其位模式保存），所以合并基本类型的写操作不需要装箱。
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static final class PendingWrite implements Runnable {
+
+        enum Kind {SET, ADD, TOGGLE}
+
+        // ObservableValue 或者某个基本类型的 Observable
+        private final Object observable;
+        private final Kind kind;
+
+        // ObservableValue 的新值
+        private Object value;
+        // 基本类型的新值，ADD 的增量，TOGGLE 的切换次数
+        private long number;
+        private boolean started = false;
+
+        PendingWrite(Object observable, Kind kind, Object value, long number) {
+            this.observable = observable;
+            this.kind = kind;
+            this.value = value;
+            this.number = number;
+        }
+
+        synchronized boolean merge(Object observable, Kind kind, Object value, long number) {
+            if (started || this.observable != observable || this.kind != kind) {
+                return false;
+            }
+            this.value = value;
+            if (kind == Kind.SET) {
+                this.number = number;
+            } else {
+                this.number += number;
+            }
+            return true;
+        }
+
+        @Override
+        public void run() {
+            final Object value;
+            final long number;
+            synchronized (this) {
+                started = true;
+                value = this.value;
+                number = this.number;
+            }
+            switch (kind) {
+                case SET:
+                    set(value, number);
+                    break;
+                case ADD:
+                    if (number != 0) {
+                        add(number);
+                    }
+                    break;
+                case TOGGLE:
+                    if (number % 2 != 0) {
+                        toggle();
+                    }
+                    break;
+            }
+        }
+
+        private void set(Object value, long number) {
+            if (observable instanceof ObservableValue) {
+                ((ObservableValue) observable).setValue(value);
+            } else if (observable instanceof ObservableInt) {
+                ((ObservableInt) observable).setValue((int) number);
+            } else if (observable instanceof ObservableLong) {
+                ((ObservableLong) observable).setValue(number);
+            } else if (observable instanceof ObservableDouble) {
+                ((ObservableDouble) observable).setValue(Double.longBitsToDouble(number));
+            } else {
+                ((ObservableBoolean) observable).setValue(number != 0);
+            }
+        }
+
+        private void add(long delta) {
+            if (observable instanceof ObservableValue) {
+                ObservableValue<Integer> observableValue = (ObservableValue<Integer>) observable;
+                observableValue.setValue(observableValue.getValue() + (int) delta);
+            } else if (observable instanceof ObservableInt) {
+                ObservableInt observableInt = (ObservableInt) observable;
+                observableInt.setValue(observableInt.getValue() + (int) delta);
+            } else {
+                ObservableLong observableLong = (ObservableLong) observable;
+                observableLong.setValue(observableLong.getValue() + delta);
+            }
+        }
+
+        private void toggle() {
+            if (observable instanceof ObservableValue) {
+                ObservableValue<Boolean> observableValue = (ObservableValue<Boolean>) observable;
+                observableValue.setValue(!observableValue.getValue());
+            } else {
+                ObservableBoolean observableBoolean = (ObservableBoolean) observable;
+                observableBoolean.setValue(!observableBoolean.getValue());
+            }
         }
     }
 
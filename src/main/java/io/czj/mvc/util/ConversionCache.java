@@ -0,0 +1,91 @@
+package io.czj.mvc.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * 虚拟化列表绑定使用的转换缓存：只缓存最近显示过的元素的转换结果，容量随可见的行数变化，而不是随数据量变化。
+ * <p>
+ * 转换默认在 {@link TaskScheduler#SHARED} 的一条通道上进行，结果在 FX 线程中放入缓存并交给 onConverted。
+ * 除了构造函数之外的方法都只在 FX 线程中调用。结果存放在一个 LRU 的 {@link MemoizingConverter} 中，
+ * 它按 equals 查找元素，所以 onConverted 收到的元素可能是与请求时相等的另一个实例。
+ */
+final class ConversionCache<E, R> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConversionCache.class);
+
+    private final Function<? super E, ? extends R> converter;
+    private final Executor conversionExecutor;
+    private final Executor fxExecutor;
+    private final BiConsumer<E, R> onConverted;
+
+    // 超出容量时删除最久没有显示的元素
+    private final MemoizingConverter<E, R> cache;
+    private final Set<E> inFlight = new HashSet<>();
+
+    ConversionCache(Function<? super E, ? extends R> converter, int capacity, Executor fxExecutor, BiConsumer<E, R> onConverted) {
+        this(converter, capacity, TaskScheduler.SHARED.newExecutor(1), fxExecutor, onConverted);
+    }
+
+    ConversionCache(Function<? super E, ? extends R> converter, int capacity, Executor conversionExecutor, Executor fxExecutor, BiConsumer<E, R> onConverted) {
+        this.converter = converter;
+        this.cache = MemoizingConverter.lru(converter, capacity);
+        this.conversionExecutor = conversionExecutor;
+        this.fxExecutor = fxExecutor;
+        this.onConverted = onConverted;
+    }
+
+    boolean contains(E element) {
+        return cache.contains(element);
+    }
+
+    /**
+     * @return 缓存的转换结果，没有时为 null。读取会把元素标记为最近使用
+     */
+    R get(E element) {
+        return cache.getIfPresent(element);
+    }
+
+    /**
+     * 如果元素还没有转换也没有正在转换，则在后台线程中转换它。
+     */
+    void request(E element) {
+        if (cache.contains(element) || !inFlight.add(element)) {
+            return;
+        }
+        conversionExecutor.execute(() -> {
+            // 转换失败时只把元素移出 inFlight，下一次显示时会重新请求
+            Runnable completion = () -> inFlight.remove(element);
+            try {
+                final R converted = converter.apply(element);
+                completion = () -> {
+                    inFlight.remove(element);
+                    cache.put(element, converted);
+                    onConverted.accept(element, converted);
+                };
+            } catch (RuntimeException e) {
+                LOGGER.error("Conversion of {} failed", element, e);
+            } finally {
+                fxExecutor.execute(completion);
+            }
+        });
+    }
+
+    /**
+     * 视口变小时立即删除最久没有显示的元素，而不是等到之后的转换。
+     */
+    void setCapacity(int capacity) {
+        cache.setMaxEntries(capacity);
+    }
+
+    int size() {
+        return cache.size();
+    }
+
+}
@@ -0,0 +1,76 @@
+package io.czj.mvc.util;
+
+import javafx.application.Platform;
+import javafx.beans.property.Property;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * 一个绑定的转换：在 {@link ViewMixin.ConversionThread} 指定的线程中转换新值，然后按照 {@link ViewMixin.DispatchMode} 更新 GUI-Property。
+ * <p>
+ * 在工作线程中转换时，较早的值可能比较新的值晚转换完。每个值都带有一个序号，已经有更新的值时不再转换，FX 线程也只接受比上次更新的序号，
+ * 所以 GUI-Property 最后总是最新值的转换结果。
+ */
+final class ConversionStage<V, P> {
+
+    private final Function<? super V, ? extends P> converter;
+    private final ViewMixin.ConversionThread conversionThread;
+    private final ViewMixin.DispatchMode dispatchMode;
+    private final Property<? super P> property;
+    // WORKER 模式下 TaskScheduler.SHARED 上的通道，其他模式为 null
+    private final Executor worker;
+
+    // 最新的值的序号
+    private final AtomicLong latest = new AtomicLong();
+    // 已经写入 property 的序号，只在 FX 线程中访问
+    private long applied = 0;
+
+    ConversionStage(Function<? super V, ? extends P> converter, ViewMixin.ConversionThread conversionThread,
+                    ViewMixin.DispatchMode dispatchMode, Property<? super P> property) {
+        this.converter = converter;
+        this.conversionThread = conversionThread;
+        this.dispatchMode = dispatchMode;
+        this.property = property;
+        this.worker = conversionThread == ViewMixin.ConversionThread.WORKER ? TaskScheduler.SHARED.newExecutor(1) : null;
+    }
+
+    /**
+     * 在通知侦听器的线程中调用，通常是控制器的线程。
+     */
+    void accept(V value) {
+        switch (conversionThread) {
+            case FX:
+                dispatch(() -> property.setValue(converter.apply(value)));
+                break;
+            case WORKER:
+                final long sequence = latest.incrementAndGet();
+                worker.execute(() -> {
+                    if (sequence != latest.get()) {
+                        return;
+                    }
+                    final P convertedValue = converter.apply(value);
+                    dispatch(() -> {
+                        if (sequence > applied) {
+                            applied = sequence;
+                            property.setValue(convertedValue);
+                        }
+                    });
+                });
+                break;
+            default:
+                final P convertedValue = converter.apply(value);
+                dispatch(() -> property.setValue(convertedValue));
+        }
+    }
+
+    private void dispatch(Runnable update) {
+        if (dispatchMode == ViewMixin.DispatchMode.PULSE) {
+            PulseDispatcher.fx().dispatch(property, update);
+        } else {
+            Platform.runLater(update);
+        }
+    }
+
+}
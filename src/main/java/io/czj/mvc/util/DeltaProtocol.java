@@ -0,0 +1,88 @@
+package io.czj.mvc.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * {@link RemoteProjector} 和 {@link RemoteModelMirror} 之间的二进制协议。所有数字都是大端序。
+ * <p>
+ * 每一帧是 [int 长度][byte 类型][内容]，长度包括类型。字符串是 [short 长度][UTF-8]，值是 [short 类型的键][int 长度][字节]，
+ * 类型的键和编码与 {@link ModelSnapshot} 相同。
+ * <ul>
+ * <li>SNAPSHOT（服务端到客户端，连接后的第一帧）：[short n] n 个 [字段名][值]。字段的顺序决定了它们在 DELTA 中的编号</li>
+ * <li>DELTA（服务端到客户端）：[short n] n 个 [short 编号][值]，一个刷新周期内变化过的字段，每个字段只有最新的值</li>
+ * <li>ACTION（客户端到服务端）：[操作名][int 长度][参数]</li>
+ * </ul>
+ * 没有编码的值的键是空字符串，接收方忽略它。
+ */
+final class DeltaProtocol {
+
+    static final byte SNAPSHOT = 1;
+    static final byte DELTA = 2;
+    static final byte ACTION = 3;
+
+    // 客户端发送的帧的上限，操作的参数通常很小
+    static final int MAX_ACTION_FRAME = 64 * 1024;
+    // 服务端发送的帧的上限
+    static final int MAX_MODEL_FRAME = 64 * 1024 * 1024;
+
+    private DeltaProtocol() {
+    }
+
+    /**
+     * 开始一帧：预留长度并写入类型。用 {@link #finish(ByteArrayOutputStream)} 得到完整的帧。
+     */
+    static DataOutputStream begin(ByteArrayOutputStream bytes, byte type) throws IOException {
+        final DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0);
+        out.writeByte(type);
+        return out;
+    }
+
+    static ByteBuffer finish(ByteArrayOutputStream bytes) {
+        final ByteBuffer frame = ByteBuffer.wrap(bytes.toByteArray());
+        frame.putInt(0, frame.remaining() - Integer.BYTES);
+        return frame;
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String getString(ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.getShort()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static byte[] getBytes(ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * 从流中读取一帧（不包括长度）。
+     */
+    static ByteBuffer readFrame(DataInputStream in, int maxLength) throws IOException {
+        final int length = in.readInt();
+        if (length < 1 || length > maxLength) {
+            throw new IOException("invalid frame length " + length);
+        }
+        final byte[] frame = new byte[length];
+        in.readFully(frame);
+        return ByteBuffer.wrap(frame);
+    }
+
+}
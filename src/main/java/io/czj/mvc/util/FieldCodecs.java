@@ -0,0 +1,183 @@
+package io.czj.mvc.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * 把模型中 Observable 字段的值编码为字节，或者把字节写回字段。由 {@link ModelSnapshot} 和 {@link ActionJournal} 共用。
+ * <p>
+ * 每个值都带有一个类型的键：基本类型的 Observable 使用 "int"、"long"、"double"、"boolean"，ObservableValue 使用值的类名，
+ * 值为 null 时使用 "null"。
+ */
+final class FieldCodecs {
+
+    private static final String NULL_KEY = "null";
+
+    private final Map<String, SnapshotCodec<?>> codecs = new HashMap<>();
+
+    FieldCodecs() {
+        codecs.put("int", SnapshotCodec.INTEGER);
+        codecs.put("long", SnapshotCodec.LONG);
+        codecs.put("double", SnapshotCodec.DOUBLE);
+        codecs.put("boolean", SnapshotCodec.BOOLEAN);
+        register(String.class, SnapshotCodec.STRING);
+        register(Integer.class, SnapshotCodec.INTEGER);
+        register(Long.class, SnapshotCodec.LONG);
+        register(Double.class, SnapshotCodec.DOUBLE);
+        register(Boolean.class, SnapshotCodec.BOOLEAN);
+    }
+
+    /**
+     * 注册一种值类型的编码。只有值的类与 type 完全相同时才使用它。
+     */
+    <V> void register(Class<V> type, SnapshotCodec<V> codec) {
+        codecs.put(type.getName(), Objects.requireNonNull(codec));
+    }
+
+    /**
+     * @return 当前值的类型的键，没有编码时为 null
+     */
+    String keyOf(Object observable) {
+        return keyOf(observable, valueOf(observable));
+    }
+
+    /**
+     * @param value observable 的某一个值（例如侦听器收到的新值），基本类型已装箱
+     * @return value 的类型的键，没有编码时为 null
+     */
+    String keyOf(Object observable, Object value) {
+        if (observable instanceof ObservableInt) {
+            return "int";
+        } else if (observable instanceof ObservableLong) {
+            return "long";
+        } else if (observable instanceof ObservableDouble) {
+            return "double";
+        } else if (observable instanceof ObservableBoolean) {
+            return "boolean";
+        }
+        if (null == value) {
+            return NULL_KEY;
+        }
+        final String key = value.getClass().getName();
+        return codecs.containsKey(key) ? key : null;
+    }
+
+    /**
+     * @param key {@link #keyOf(Object)} 的返回值，不能为 null
+     */
+    byte[] encode(Object observable, String key) {
+        return encodeValue(key, valueOf(observable));
+    }
+
+    /**
+     * @param key {@link #keyOf(Object, Object)} 对 value 的返回值，不能为 null
+     */
+    @SuppressWarnings("unchecked")
+    byte[] encodeValue(String key, Object value) {
+        if (NULL_KEY.equals(key)) {
+            return new byte[0];
+        }
+        return ((SnapshotCodec<Object>) codecs.get(key)).encode(value);
+    }
+
+    /**
+     * @return observable 的当前值，基本类型已装箱
+     */
+    static Object valueOf(Object observable) {
+        if (observable instanceof ObservableInt) {
+            return ((ObservableInt) observable).getValue();
+        } else if (observable instanceof ObservableLong) {
+            return ((ObservableLong) observable).getValue();
+        } else if (observable instanceof ObservableDouble) {
+            return ((ObservableDouble) observable).getValue();
+        } else if (observable instanceof ObservableBoolean) {
+            return ((ObservableBoolean) observable).getValue();
+        }
+        return ((ObservableValue<?>) observable).getValue();
+    }
+
+    /**
+     * @return 解码后的值，键为 "null" 或者没有编码时为 null
+     */
+    Object decode(String key, byte[] bytes) {
+        final SnapshotCodec<?> codec = codecs.get(key);
+        return null == codec ? null : codec.decode(bytes);
+    }
+
+    /**
+     * 解码 bytes 并写入 observable。
+     *
+     * @return 是否写入，键与字段的类型不符或者没有编码时为 false
+     */
+    boolean apply(Object observable, String key, byte[] bytes) {
+        if (!accepts(observable, key)) {
+            return false;
+        }
+        set(observable, decode(key, bytes));
+        return true;
+    }
+
+    /**
+     * @return 带有这个键的值能否写入 observable
+     */
+    boolean accepts(Object observable, String key) {
+        if (observable instanceof ObservableValue) {
+            return NULL_KEY.equals(key) || codecs.containsKey(key) && !isPrimitiveKey(key);
+        }
+        return key.equals(keyOf(observable));
+    }
+
+    /**
+     * 把 {@link #decode(String, byte[])} 的结果写入 observable，只在 {@link #accepts(Object, String)} 返回 true 时调用。
+     */
+    @SuppressWarnings("unchecked")
+    static void set(Object observable, Object value) {
+        if (observable instanceof ObservableValue) {
+            ((ObservableValue<Object>) observable).setValue(value);
+        } else if (observable instanceof ObservableInt) {
+            ((ObservableInt) observable).setValue((Integer) value);
+        } else if (observable instanceof ObservableLong) {
+            ((ObservableLong) observable).setValue((Long) value);
+        } else if (observable instanceof ObservableDouble) {
+            ((ObservableDouble) observable).setValue((Double) value);
+        } else {
+            ((ObservableBoolean) observable).setValue((Boolean) value);
+        }
+    }
+
+    static boolean isPrimitiveKey(String key) {
+        return "int".equals(key) || "long".equals(key) || "double".equals(key) || "boolean".equals(key);
+    }
+
+    /**
+     * 在 observable 每次变化时用新值（基本类型已装箱）执行 onChange。注册时不执行。
+     */
+    static Subscription track(Object observable, Consumer<Object> onChange) {
+        final AtomicBoolean registered = new AtomicBoolean();
+        final Subscription subscription;
+        if (observable instanceof ObservableValue) {
+            subscription = ((ObservableValue<?>) observable).onChange((oldValue, newValue) -> changed(registered, onChange, newValue));
+        } else if (observable instanceof ObservableInt) {
+            subscription = ((ObservableInt) observable).onChange((oldValue, newValue) -> changed(registered, onChange, newValue));
+        } else if (observable instanceof ObservableLong) {
+            subscription = ((ObservableLong) observable).onChange((oldValue, newValue) -> changed(registered, onChange, newValue));
+        } else if (observable instanceof ObservableDouble) {
+            subscription = ((ObservableDouble) observable).onChange((oldValue, newValue) -> changed(registered, onChange, newValue));
+        } else {
+            subscription = ((ObservableBoolean) observable).onChange((oldValue, newValue) -> changed(registered, onChange, newValue));
+        }
+        registered.set(true);
+        return subscription;
+    }
+
+    private static void changed(AtomicBoolean registered, Consumer<Object> onChange, Object newValue) {
+        // 注册时侦听器会立即被调用一次
+        if (registered.get()) {
+            onChange.accept(newValue);
+        }
+    }
+
+}
@@ -0,0 +1,131 @@
+package io.czj.mvc.util;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一个 {@link ActionJournal} 的运行时指标。
+ * <p>
+ * append 是记录一次修改给执行操作的线程增加的时间（编码和放入缓冲区）。commit 是一条记录从放入缓冲区到 fsync 完成的时间，
+ * 每次提交只记录这一批中等待最久的那条。写放大是写入文件的字节数（包括记录头）除以值本身的字节数。
+ */
+public final class JournalMetrics implements JournalMetricsMBean, MvcMetrics.Source {
+
+    private final String name;
+
+    private final LongAdder records = new LongAdder();
+    private final LongAdder commits = new LongAdder();
+    private final LongAdder payloadBytes = new LongAdder();
+    private final LongAdder writtenBytes = new LongAdder();
+    private final LongAdder blocked = new LongAdder();
+
+    private final LatencyHistogram append = new LatencyHistogram();
+    private final LatencyHistogram commit = new LatencyHistogram();
+
+    JournalMetrics(String name) {
+        this.name = name;
+    }
+
+    void appended(int payload, long nanos) {
+        records.increment();
+        payloadBytes.add(payload);
+        append.record(nanos);
+    }
+
+    void committed(long bytes, long oldestNanos) {
+        commits.increment();
+        writtenBytes.add(bytes);
+        commit.record(oldestNanos);
+    }
+
+    void blocked() {
+        blocked.increment();
+    }
+
+    public LatencyHistogram getAppendHistogram() {
+        return append;
+    }
+
+    public LatencyHistogram getCommitHistogram() {
+        return commit;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getType() {
+        return "ActionJournal";
+    }
+
+    @Override
+    public long getRecordCount() {
+        return records.sum();
+    }
+
+    @Override
+    public long getCommitCount() {
+        return commits.sum();
+    }
+
+    @Override
+    public long getPayloadBytes() {
+        return payloadBytes.sum();
+    }
+
+    @Override
+    public long getWrittenBytes() {
+        return writtenBytes.sum();
+    }
+
+    @Override
+    public double getWriteAmplification() {
+        final long payload = getPayloadBytes();
+        return 0 == payload ? 0 : (double) getWrittenBytes() / payload;
+    }
+
+    @Override
+    public double getRecordsPerCommit() {
+        final long commitCount = getCommitCount();
+        return 0 == commitCount ? 0 : (double) getRecordCount() / commitCount;
+    }
+
+    @Override
+    public long getBlockedCount() {
+        return blocked.sum();
+    }
+
+    @Override
+    public long getAppendMeanMicros() {
+        return append.getMeanNanos() / 1000;
+    }
+
+    @Override
+    public long getAppendP99Micros() {
+        return append.getPercentileNanos(99) / 1000;
+    }
+
+    @Override
+    public long getCommitMeanMicros() {
+        return commit.getMeanNanos() / 1000;
+    }
+
+    @Override
+    public long getCommitP99Micros() {
+        return commit.getPercentileNanos(99) / 1000;
+    }
+
+    @Override
+    public long getCommitMaxMicros() {
+        return commit.getMaxNanos() / 1000;
+    }
+
+    @Override
+    public String summary() {
+        return String.format("records=%d commits=%d records/commit=%.1f payload=%dB written=%dB amplification=%.2f blocked=%d | append %s | commit %s",
+                getRecordCount(), getCommitCount(), getRecordsPerCommit(), getPayloadBytes(), getWrittenBytes(),
+                getWriteAmplification(), getBlockedCount(), append, commit);
+    }
+
+}
@@ -0,0 +1,34 @@
+package io.czj.mvc.util;
+
+/**
+ * {@link JournalMetrics} 的 JMX 接口。所有时间都以微秒为单位。
+ */
+public interface JournalMetricsMBean {
+
+    String getName();
+
+    long getRecordCount();
+
+    long getCommitCount();
+
+    long getPayloadBytes();
+
+    long getWrittenBytes();
+
+    double getWriteAmplification();
+
+    double getRecordsPerCommit();
+
+    long getBlockedCount();
+
+    long getAppendMeanMicros();
+
+    long getAppendP99Micros();
+
+    long getCommitMeanMicros();
+
+    long getCommitP99Micros();
+
+    long getCommitMaxMicros();
+
+}
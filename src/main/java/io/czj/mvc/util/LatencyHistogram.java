@@ -0,0 +1,72 @@
+package io.czj.mvc.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 无锁的延迟直方图。每个桶覆盖一个 2 的幂次的区间（以纳秒为单位），所以记录一个值只需要几次原子操作，不分配内存。
+ * <p>
+ * 百分位返回所在桶的上界，因此最多高估一倍。
+ */
+public final class LatencyHistogram {
+
+    private static final int BUCKETS = 64;
+
+    // 桶 i 计数 [2^i, 2^(i+1)) 纳秒的值，桶 0 同时包含 0
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        final long value = Math.max(nanos, 0);
+        buckets.incrementAndGet(63 - Long.numberOfLeadingZeros(Math.max(value, 1)));
+        count.increment();
+        sum.add(value);
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // 重试
+        }
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getMeanNanos() {
+        final long n = count.sum();
+        return n == 0 ? 0 : sum.sum() / n;
+    }
+
+    public long getMaxNanos() {
+        return max.get();
+    }
+
+    /**
+     * @param percentile 0 到 100 之间
+     * @return 至少 percentile% 的值都不超过的上界
+     */
+    public long getPercentileNanos(double percentile) {
+        final long n = count.sum();
+        if (n == 0) {
+            return 0;
+        }
+        final long rank = (long) Math.ceil(n * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return Math.min((1L << (i + 1)) - 1, max.get());
+            }
+        }
+        return max.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("n=%d mean=%dus p50=%dus p99=%dus max=%dus",
+                getCount(), getMeanNanos() / 1000, getPercentileNanos(50) / 1000, getPercentileNanos(99) / 1000, getMaxNanos() / 1000);
+    }
+
+}
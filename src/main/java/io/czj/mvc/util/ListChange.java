@@ -0,0 +1,148 @@
+package io.czj.mvc.util;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * {@link ObservableModelList} 的一次增量变化：按顺序排列的若干个区间，每个区间在 from 处删除一些元素并插入一些元素。
+ * 每个区间的下标都是相对于应用了前面的区间之后的列表。
+ * <p>
+ * 注册侦听器时收到的第一个变化是 {@link #isReset() reset}：它的唯一区间包含列表的全部内容，应用时替换目标列表的全部内容。
+ */
+public final class ListChange<E> {
+
+    private final boolean reset;
+    private final List<Range<E>> ranges;
+
+    ListChange(boolean reset, List<Range<E>> ranges) {
+        this.reset = reset;
+        this.ranges = Collections.unmodifiableList(ranges);
+    }
+
+    public boolean isReset() {
+        return reset;
+    }
+
+    public List<Range<E>> getRanges() {
+        return ranges;
+    }
+
+    /**
+     * 把这个变化应用到 target 上，例如 JavaFX 的 ObservableList。只有变化的部分会被修改。
+     * 长度相同的替换逐个 set，这样 JavaFX 的 ObservableList 产生的也是替换而不是删除加插入。
+     */
+    public void applyTo(List<? super E> target) {
+        if (reset) {
+            target.clear();
+            target.addAll(ranges.get(0).getAdded());
+            return;
+        }
+        for (Range<E> range : ranges) {
+            final int from = range.getFrom();
+            final int removedSize = range.getRemoved().size();
+            final List<E> added = range.getAdded();
+            if (removedSize == added.size()) {
+                for (int i = 0; i < removedSize; i++) {
+                    target.set(from + i, added.get(i));
+                }
+                continue;
+            }
+            if (removedSize > 0) {
+                target.subList(from, from + removedSize).clear();
+            }
+            if (!added.isEmpty()) {
+                target.addAll(from, added);
+            }
+        }
+    }
+
+    /**
+     * 转换插入的元素。转换在调用线程中立即进行（通常是控制器的工作线程），删除的元素只在读取时才转换。
+     */
+    public <R> ListChange<R> map(Function<? super E, ? extends R> mapper) {
+        List<Range<R>> mapped = new ArrayList<>(ranges.size());
+        for (Range<E> range : ranges) {
+            List<R> added = new ArrayList<>(range.getAdded().size());
+            for (E element : range.getAdded()) {
+                added.add(mapper.apply(element));
+            }
+            final List<E> removed = range.getRemoved();
+            mapped.add(new Range<>(range.getFrom(), new AbstractList<R>() {
+                @Override
+                public R get(int index) {
+                    return mapper.apply(removed.get(index));
+                }
+
+                @Override
+                public int size() {
+                    return removed.size();
+                }
+            }, added));
+        }
+        return new ListChange<>(reset, mapped);
+    }
+
+    @Override
+    public String toString() {
+        return (reset ? "reset" : "change") + ranges;
+    }
+
+    /**
+     * 在 from 处删除 removed，然后插入 added。
+     */
+    public static final class Range<E> {
+
+        public enum Type {
+            ADD, REMOVE, REPLACE
+        }
+
+        private final int from;
+        private final List<E> removed;
+        private final List<E> added;
+
+        Range(int from, List<E> removed, List<E> added) {
+            this.from = from;
+            this.removed = removed;
+            this.added = added;
+        }
+
+        public int getFrom() {
+            return from;
+        }
+
+        public List<E> getRemoved() {
+            return Collections.unmodifiableList(removed);
+        }
+
+        public List<E> getAdded() {
+            return Collections.unmodifiableList(added);
+        }
+
+        public Type getType() {
+            if (removed.isEmpty()) {
+                return Type.ADD;
+            }
+            return added.isEmpty() ? Type.REMOVE : Type.REPLACE;
+        }
+
+        /**
+         * 紧接在此区间之后的插入可以合并进来，例如连续的 add。只在变化发布之前使用。
+         */
+        boolean tryAppend(Range<E> next) {
+            if (!removed.isEmpty() || !next.removed.isEmpty() || next.from != from + added.size()) {
+                return false;
+            }
+            added.addAll(next.added);
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return getType() + "@" + from + " -" + removed + " +" + added;
+        }
+    }
+
+}
@@ -0,0 +1,220 @@
+package io.czj.mvc.util;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 一个 Observable 的侦听器列表。所有 Observable（{@link ObservableValue}、基本类型的特化版本、{@link ComputedValue}、
+ * {@link ObservableModelList} 和 {@link ObservableModelMap}）都委托给它，所以注册、弱注册和通知的指标只有一份实现。
+ * <p>
+ * 侦听器保存在写时复制的数组中，修改时持有锁，通知时读取数组的快照，不加锁也不分配内存：
+ * <pre>
+ * for (Object entry : listeners.snapshot()) {
+ *     IntChangeListener listener = listeners.resolve(entry);
+ *     if (null != listener) {
+ *         listener.update(oldValue, newValue);
+ *     }
+ * }
+ * </pre>
+ * 同一个侦听器（按 equals）重复强注册时只通知一次，但每次注册都有自己的句柄：只有全部句柄都取消之后侦听器才被移除。
+ * 弱注册不参与去重：每次弱注册都是独立的条目，同一个侦听器弱注册两次，或者既强注册又弱注册时，每次变化会收到两次通知。
+ * 这是允许的，因为列表不能强引用弱注册的侦听器来计数。弱注册的侦听器被回收之后，在下一次通知或注册时被移除。
+ */
+final class Listeners<L> {
+
+    private static final Object[] NO_ENTRIES = new Object[0];
+
+    // 侦听器本身，或者弱注册时的 WeakEntry。数组本身永远不会被修改
+    private volatile Object[] entries = NO_ENTRIES;
+
+    // 已经在列表中的侦听器又被注册的次数，只在持有锁时访问。没有重复注册时为 null
+    private Map<Object, Integer> duplicates;
+
+    // 最后一个侦听器被移除时调用，可以为 null
+    private final Runnable onEmpty;
+
+    // 未启用指标时为 null
+    private volatile ObservableMetrics metrics;
+
+    Listeners() {
+        this(null);
+    }
+
+    Listeners(Runnable onEmpty) {
+        this.onEmpty = onEmpty;
+    }
+
+    /**
+     * @return 只属于这一次注册的句柄，重复取消没有影响
+     */
+    Subscription add(L listener) {
+        Objects.requireNonNull(listener);
+        synchronized (this) {
+            if (indexOf(listener) < 0) {
+                append(listener);
+            } else {
+                if (null == duplicates) {
+                    duplicates = new HashMap<>();
+                }
+                duplicates.merge(listener, 1, Integer::sum);
+            }
+        }
+        final AtomicBoolean disposed = new AtomicBoolean();
+        return () -> {
+            if (disposed.compareAndSet(false, true)) {
+                release(listener);
+            }
+        };
+    }
+
+    /**
+     * 取消一次强注册：还有其他注册共享这个侦听器时只减少计数。计数和移除在同一个锁中，
+     * 否则在两者之间并发的 add 只增加了计数，它的侦听器却被移除了。
+     */
+    private void release(Object listener) {
+        synchronized (this) {
+            final Integer count = null == duplicates ? null : duplicates.get(listener);
+            if (null != count) {
+                if (1 == count) {
+                    duplicates.remove(listener);
+                } else {
+                    duplicates.put(listener, count - 1);
+                }
+                return;
+            }
+            if (!removeLocked(listener)) {
+                return;
+            }
+        }
+        // 在锁外调用，onEmpty 可能需要 Observable 自己的锁
+        onEmpty.run();
+    }
+
+    /**
+     * 以弱引用注册：列表只弱引用 listener，由返回的句柄强引用它。
+     *
+     * @return 持有 listener 的句柄，也可以用它提前取消注册
+     */
+    Subscription addWeak(L listener) {
+        Objects.requireNonNull(listener);
+        final WeakEntry entry = new WeakEntry(listener);
+        synchronized (this) {
+            append(entry);
+        }
+        return new WeakSubscription(listener, () -> remove(entry));
+    }
+
+    /**
+     * @return 当前的条目，用 {@link #resolve(Object)} 取出侦听器
+     */
+    Object[] snapshot() {
+        return entries;
+    }
+
+    /**
+     * @return 条目中的侦听器；弱注册的侦听器已经被回收时为 null，同时移除这个条目
+     */
+    @SuppressWarnings("unchecked")
+    L resolve(Object entry) {
+        if (entry instanceof WeakEntry) {
+            final Object listener = ((WeakEntry) entry).get();
+            if (null == listener) {
+                remove(entry);
+            }
+            return (L) listener;
+        }
+        return (L) entry;
+    }
+
+    boolean isEmpty() {
+        return 0 == entries.length;
+    }
+
+    /**
+     * 开始测量侦听器的通知时间并将指标注册到 {@link MvcMetrics}。重复调用返回同一个指标。
+     */
+    synchronized ObservableMetrics enableMetrics(String name) {
+        if (null == metrics) {
+            ObservableMetrics observableMetrics = new ObservableMetrics(name);
+            MvcMetrics.register(observableMetrics);
+            metrics = observableMetrics;
+        }
+        return metrics;
+    }
+
+    /**
+     * @return 通知开始的时间，未启用指标时为 0
+     */
+    long dispatchStarted() {
+        return null == metrics ? 0 : System.nanoTime();
+    }
+
+    void dispatchFinished(long start) {
+        final ObservableMetrics observableMetrics = metrics;
+        if (null != observableMetrics && 0 != start) {
+            observableMetrics.dispatched(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 添加条目，同时清除已经被回收的弱引用条目。只在持有锁时调用。
+     */
+    private void append(Object entry) {
+        final Object[] current = entries;
+        Object[] updated = new Object[current.length + 1];
+        int size = 0;
+        for (Object existing : current) {
+            if (!(existing instanceof WeakEntry) || null != ((WeakEntry) existing).get()) {
+                updated[size++] = existing;
+            }
+        }
+        updated[size++] = entry;
+        entries = size < updated.length ? Arrays.copyOf(updated, size) : updated;
+    }
+
+    private void remove(Object entry) {
+        synchronized (this) {
+            if (!removeLocked(entry)) {
+                return;
+            }
+        }
+        // 在锁外调用，onEmpty 可能需要 Observable 自己的锁
+        onEmpty.run();
+    }
+
+    /**
+     * 只在持有锁时调用。
+     *
+     * @return 最后一个条目被移除并且需要调用 onEmpty
+     */
+    private boolean removeLocked(Object entry) {
+        final Object[] current = entries;
+        final int index = indexOf(entry);
+        if (index < 0) {
+            return false;
+        }
+        final Object[] updated = current.length == 1 ? NO_ENTRIES : new Object[current.length - 1];
+        System.arraycopy(current, 0, updated, 0, index);
+        System.arraycopy(current, index + 1, updated, index, current.length - index - 1);
+        entries = updated;
+        return 0 == updated.length && null != onEmpty;
+    }
+
+    private int indexOf(Object entry) {
+        return Arrays.asList(entries).indexOf(entry);
+    }
+
+    /**
+     * 弱注册的条目。equals 是对象本身，所以同一个侦听器的多次弱注册互不影响。
+     */
+    private static final class WeakEntry extends WeakReference<Object> {
+        WeakEntry(Object listener) {
+            super(listener);
+        }
+    }
+
+}
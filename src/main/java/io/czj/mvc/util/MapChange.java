@@ -0,0 +1,107 @@
+package io.czj.mvc.util;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * {@link ObservableModelMap} 的一次增量变化：每个被修改的键的旧值和新值。同一个键在一个事务中的多次修改合并为一项。
+ * <p>
+ * 注册侦听器时收到的第一个变化是 {@link #isReset() reset}：它包含映射的全部内容，应用时替换目标映射的全部内容。
+ */
+public final class MapChange<K, V> {
+
+    private final boolean reset;
+    private final Map<K, Entry<V>> entries;
+
+    MapChange(boolean reset, Map<K, Entry<V>> entries) {
+        this.reset = reset;
+        this.entries = Collections.unmodifiableMap(entries);
+    }
+
+    public boolean isReset() {
+        return reset;
+    }
+
+    /**
+     * @return 按修改顺序排列的被修改的键
+     */
+    public Map<K, Entry<V>> getEntries() {
+        return entries;
+    }
+
+    /**
+     * 把这个变化应用到 target 上，例如 JavaFX 的 ObservableMap。只有变化的键会被修改。
+     */
+    public void applyTo(Map<? super K, ? super V> target) {
+        if (reset) {
+            target.clear();
+        }
+        entries.forEach((key, entry) -> {
+            if (entry.isPresent()) {
+                target.put(key, entry.getNewValue());
+            } else {
+                target.remove(key);
+            }
+        });
+    }
+
+    /**
+     * 转换新值。转换在调用线程中立即进行（通常是控制器的工作线程）。旧值不转换，在结果中为 null。
+     */
+    public <R> MapChange<K, R> map(Function<? super V, ? extends R> mapper) {
+        Map<K, Entry<R>> mapped = new LinkedHashMap<>();
+        entries.forEach((key, entry) -> mapped.put(key, new Entry<>(entry.wasPresent(), null,
+                entry.isPresent(), entry.isPresent() ? mapper.apply(entry.getNewValue()) : null)));
+        return new MapChange<>(reset, mapped);
+    }
+
+    @Override
+    public String toString() {
+        return (reset ? "reset" : "change") + entries;
+    }
+
+    /**
+     * 一个键的变化。不存在的一侧的值为 null。
+     */
+    public static final class Entry<V> {
+
+        private final boolean wasPresent;
+        private final V oldValue;
+        private final boolean present;
+        private final V newValue;
+
+        Entry(boolean wasPresent, V oldValue, boolean present, V newValue) {
+            this.wasPresent = wasPresent;
+            this.oldValue = oldValue;
+            this.present = present;
+            this.newValue = newValue;
+        }
+
+        public boolean wasPresent() {
+            return wasPresent;
+        }
+
+        public V getOldValue() {
+            return oldValue;
+        }
+
+        /**
+         * @return 变化之后键是否存在，false 表示键被删除了
+         */
+        public boolean isPresent() {
+            return present;
+        }
+
+        public V getNewValue() {
+            return newValue;
+        }
+
+        @Override
+        public String toString() {
+            return (wasPresent ? String.valueOf(oldValue) : "-") + " -> " + (present ? String.valueOf(newValue) : "-");
+        }
+    }
+
+}
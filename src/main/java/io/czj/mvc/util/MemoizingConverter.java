@@ -0,0 +1,205 @@
+package io.czj.mvc.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * 记住最近的转换结果的转换函数，用于值在一个小集合中反复出现、而转换又比较昂贵的绑定，例如格式化、图标或图片解码。
+ * <p>
+ * 最多保存 maxEntries 个结果，超出时按 {@link Eviction} 删除一个。转换在锁之外进行，所以一个很慢的转换不会阻塞其他线程的查找；
+ * 两个线程同时转换同一个值时只保留第一个结果。值必须适合作为 HashMap 的键，转换函数必须没有副作用。
+ * <p>
+ * 通常通过 {@link ViewMixin.Updater#cached(int)} 使用，也可以直接传给 convertedBy，这样多个绑定可以共用一个缓存。
+ * {@link ConversionCache} 在后台线程中转换，只用它存放结果，见 {@link #getIfPresent(Object)} 和 {@link #put(Object, Object)}。
+ */
+public final class MemoizingConverter<V, R> implements Function<V, R> {
+
+    /**
+     * 缓存满时删除哪个结果。
+     */
+    public enum Eviction {
+        /**
+         * 最久没有使用的结果。
+         */
+        LRU,
+
+        /**
+         * 使用次数最少的结果，次数相同时删除最早加入的。删除需要遍历缓存，适合比较小的容量。
+         */
+        LFU
+    }
+
+    private final Function<? super V, ? extends R> converter;
+    private final Eviction eviction;
+
+    // 以下字段由 this 保护。LRU 按访问顺序排列，LFU 按加入顺序排列
+    private final Map<V, Entry<R>> cache;
+    private int maxEntries;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    public MemoizingConverter(Function<? super V, ? extends R> converter, int maxEntries, Eviction eviction) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        this.converter = Objects.requireNonNull(converter);
+        this.maxEntries = maxEntries;
+        this.eviction = Objects.requireNonNull(eviction);
+        this.cache = new LinkedHashMap<>(16, 0.75f, eviction == Eviction.LRU);
+    }
+
+    public static <V, R> MemoizingConverter<V, R> lru(Function<? super V, ? extends R> converter, int maxEntries) {
+        return new MemoizingConverter<>(converter, maxEntries, Eviction.LRU);
+    }
+
+    public static <V, R> MemoizingConverter<V, R> lfu(Function<? super V, ? extends R> converter, int maxEntries) {
+        return new MemoizingConverter<>(converter, maxEntries, Eviction.LFU);
+    }
+
+    @Override
+    public R apply(V value) {
+        synchronized (this) {
+            final Entry<R> entry = cache.get(value);
+            if (null != entry) {
+                hits++;
+                entry.uses++;
+                return entry.result;
+            }
+            misses++;
+        }
+        final R result = converter.apply(value);
+        synchronized (this) {
+            final Entry<R> raced = cache.get(value);
+            if (null != raced) {
+                return raced.result;
+            }
+            insert(value, result);
+        }
+        return result;
+    }
+
+    /**
+     * 只查找不转换，命中时和 apply 一样计数并把值标记为最近使用。
+     *
+     * @return 缓存的结果，没有时为 null
+     */
+    synchronized R getIfPresent(V value) {
+        final Entry<R> entry = cache.get(value);
+        if (null == entry) {
+            misses++;
+            return null;
+        }
+        hits++;
+        entry.uses++;
+        return entry.result;
+    }
+
+    /**
+     * 不影响使用顺序和计数。
+     */
+    synchronized boolean contains(V value) {
+        return cache.containsKey(value);
+    }
+
+    /**
+     * 放入在别处转换的结果，已经有结果时替换它。
+     */
+    synchronized void put(V value, R result) {
+        if (null == cache.remove(value)) {
+            insert(value, result);
+        } else {
+            cache.put(value, new Entry<>(result));
+        }
+    }
+
+    /**
+     * 容量变小时立即删除多出的结果。
+     */
+    synchronized void setMaxEntries(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        this.maxEntries = maxEntries;
+        while (cache.size() > maxEntries) {
+            evict();
+        }
+    }
+
+    private void insert(V value, R result) {
+        if (cache.size() >= maxEntries) {
+            evict();
+        }
+        cache.put(value, new Entry<>(result));
+    }
+
+    private void evict() {
+        final Iterator<Map.Entry<V, Entry<R>>> iterator = cache.entrySet().iterator();
+        if (eviction == Eviction.LRU) {
+            iterator.next();
+            iterator.remove();
+        } else {
+            V victim = null;
+            long fewest = Long.MAX_VALUE;
+            while (iterator.hasNext()) {
+                final Map.Entry<V, Entry<R>> candidate = iterator.next();
+                if (candidate.getValue().uses < fewest) {
+                    fewest = candidate.getValue().uses;
+                    victim = candidate.getKey();
+                }
+            }
+            cache.remove(victim);
+        }
+        evictions++;
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    /**
+     * @return 命中的比例，还没有查找过时为 0
+     */
+    public synchronized double getHitRate() {
+        final long lookups = hits + misses;
+        return 0 == lookups ? 0 : (double) hits / lookups;
+    }
+
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    public synchronized int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public synchronized void clear() {
+        cache.clear();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("size=%d/%d hits=%d misses=%d evictions=%d", cache.size(), maxEntries, hits, misses, evictions);
+    }
+
+    private static final class Entry<R> {
+        final R result;
+        long uses = 1;
+
+        Entry(R result) {
+            this.result = result;
+        }
+    }
+
+}
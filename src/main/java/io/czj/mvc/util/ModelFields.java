@@ -0,0 +1,65 @@
+package io.czj.mvc.util;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 通过反射找到模型中的所有 Observable 字段（ObservableValue 和基本类型的 Observable）。
+ * <p>
+ * 模块是 open 的，所以非 public 的字段也可以访问。
+ */
+final class ModelFields {
+
+    private ModelFields() {
+    }
+
+    /**
+     * @return 字段名到 Observable 的映射，按照声明顺序，父类的字段在前
+     */
+    static Map<String, Object> observables(Object model) {
+        Map<String, Object> observables = new LinkedHashMap<>();
+        collect(model, model.getClass(), observables, true);
+        return observables;
+    }
+
+    /**
+     * @return 与 {@link #observables(Object)} 相同，但不包括 transient 字段
+     */
+    static Map<String, Object> persistentObservables(Object model) {
+        Map<String, Object> observables = new LinkedHashMap<>();
+        collect(model, model.getClass(), observables, false);
+        return observables;
+    }
+
+    static boolean isObservable(Object value) {
+        return value instanceof ObservableValue
+                || value instanceof ObservableInt
+                || value instanceof ObservableLong
+                || value instanceof ObservableDouble
+                || value instanceof ObservableBoolean;
+    }
+
+    private static void collect(Object model, Class<?> type, Map<String, Object> observables, boolean includeTransient) {
+        if (null == type || Object.class == type) {
+            return;
+        }
+        collect(model, type.getSuperclass(), observables, includeTransient);
+        for (Field field : type.getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers()) || (!includeTransient && Modifier.isTransient(field.getModifiers()))) {
+                continue;
+            }
+            try {
+                field.setAccessible(true);
+                Object value = field.get(model);
+                if (isObservable(value)) {
+                    observables.put(field.getName(), value);
+                }
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                // 无法访问的字段被忽略
+            }
+        }
+    }
+
+}
@@ -0,0 +1,343 @@
+package io.czj.mvc.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * 把模型的状态保存在一个二进制文件中，并在下次启动时恢复。
+ * <p>
+ * 通过反射找到模型中的所有 Observable 字段（transient 字段除外），每个字段在文件中占一个固定容量的槽。
+ * 字段变化时只被标记为“脏”，{@link #flush()} 通过 FileChannel 按位置只重写脏字段的槽；只有新值放不下或者字段的类型变了才重写整个文件。
+ * 文件不使用内存映射：映射的文件在有些系统上无法被替换，而槽很小，按位置写入和映射写入的开销相近。
+ * 每个槽带有长度和值的 CRC32，就地重写时崩溃留下的不完整的槽在恢复时被跳过，字段保留初始值。
+ * 重写整个文件时先写入旁边的临时文件，再原子地替换原文件，因此中途崩溃时原文件保持完整。
+ * <p>
+ * {@link #startFlushing(Duration)} 定期在后台调用 flush，这样崩溃时最多丢失一个周期内的变化。
+ * <p>
+ * 基本类型的 Observable 和 String、Integer、Long、Double、Boolean 类型的 ObservableValue 可以直接保存，
+ * 其他类型需要用 {@link #withCodec(Class, SnapshotCodec)} 注册编码，没有编码的字段被忽略。
+ * <p>
+ * {@link #restore()} 直接设置值，因此必须在创建视图（Projector.init 绑定 UI）和控制器开始执行操作之前调用。
+ */
+public final class ModelSnapshot implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ModelSnapshot.class);
+
+    private static final int MAGIC = 0x4D564353;
+    private static final int FORMAT_VERSION = 2;
+    private static final int MIN_CAPACITY = 16;
+    // 槽中值之前的长度和 CRC
+    private static final int SLOT_HEADER_SIZE = 2 * Integer.BYTES;
+
+    private final Path file;
+    private final Map<String, Object> observables;
+    private final FieldCodecs codecs = new FieldCodecs();
+
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+    private final List<Subscription> subscriptions = new ArrayList<>();
+
+    // 上一次 save 或 restore 之后打开的文件，flush 通过它就地重写槽。为 null 时 flush 重写整个文件
+    private FileChannel channel;
+    private final Map<String, Slot> slots = new HashMap<>();
+
+    private ScheduledExecutorService flusher;
+
+    public ModelSnapshot(Object model, Path file) {
+        this.file = Objects.requireNonNull(file);
+        this.observables = ModelFields.persistentObservables(model);
+        observables.forEach((name, observable) -> subscriptions.add(FieldCodecs.track(observable, value -> dirty.add(name))));
+    }
+
+    /**
+     * 注册一种值类型的编码。只有值的类与 type 完全相同时才使用它。
+     *
+     * @return this
+     */
+    public synchronized <V> ModelSnapshot withCodec(Class<V> type, SnapshotCodec<V> codec) {
+        codecs.register(type, codec);
+        return this;
+    }
+
+    /**
+     * 从文件中恢复字段的值。文件不存在或格式不对时什么都不做，文件中没有的字段保留初始值。
+     *
+     * @return 恢复的字段的数量
+     */
+    public synchronized int restore() throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        final ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        // 先解码整个文件，全部成功之后才写入模型，这样损坏的文件不会留下一半恢复的模型
+        final Map<Object, Object> decoded = new LinkedHashMap<>();
+        final Map<String, Slot> parsed = new HashMap<>();
+        final List<String> torn = new ArrayList<>();
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                LOGGER.warn("{} is not a model snapshot, ignored", file);
+                return 0;
+            }
+            final int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                final String name = readString(buffer);
+                final String key = readString(buffer);
+                final int capacity = buffer.getInt();
+                final int lengthOffset = buffer.position();
+                final int length = buffer.getInt();
+                final int checksum = buffer.getInt();
+                if (length < 0 || length > capacity) {
+                    throw new IllegalStateException("slot " + name + " has length " + length + " but capacity " + capacity);
+                }
+                final byte[] bytes = new byte[length];
+                buffer.get(bytes);
+                buffer.position(lengthOffset + SLOT_HEADER_SIZE + capacity);
+                parsed.put(name, new Slot(key, lengthOffset, capacity));
+                final Object observable = observables.get(name);
+                if (checksum != checksum(bytes)) {
+                    torn.add(name);
+                } else if (null != observable && codecs.accepts(observable, key)) {
+                    decoded.put(observable, codecs.decode(key, bytes));
+                }
+            }
+        } catch (RuntimeException e) {
+            LOGGER.warn("{} is truncated or corrupt, ignored", file, e);
+            return 0;
+        }
+        decoded.forEach(FieldCodecs::set);
+        slots.putAll(parsed);
+        openChannel();
+        dirty.clear();
+        if (!torn.isEmpty()) {
+            LOGGER.warn("{}: fields {} were not completely written, not restored", file, torn);
+            // 下一次 flush 用初始值修复这些槽
+            torn.stream().filter(observables::containsKey).forEach(dirty::add);
+        }
+        return decoded.size();
+    }
+
+    /**
+     * 把所有字段写入文件，重写整个文件：先写入临时文件，再原子地替换原文件。
+     */
+    public synchronized void save() throws IOException {
+        dirty.clear();
+        final Map<String, String> keys = new LinkedHashMap<>();
+        final Map<String, byte[]> values = new LinkedHashMap<>();
+        long size = 3 * Integer.BYTES;
+        for (String name : observables.keySet()) {
+            final String key = codecs.keyOf(observables.get(name));
+            if (null == key) {
+                continue;
+            }
+            final byte[] bytes = codecs.encode(observables.get(name), key);
+            keys.put(name, key);
+            values.put(name, bytes);
+            size += stringSize(name) + stringSize(key) + Integer.BYTES + SLOT_HEADER_SIZE + capacityFor(key, bytes);
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(size));
+        final Map<String, Slot> written = new HashMap<>();
+        buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(values.size());
+        for (Map.Entry<String, byte[]> entry : values.entrySet()) {
+            final String name = entry.getKey();
+            final String key = keys.get(name);
+            final byte[] bytes = entry.getValue();
+            final int capacity = capacityFor(key, bytes);
+            writeString(buffer, name);
+            writeString(buffer, key);
+            buffer.putInt(capacity);
+            final int lengthOffset = buffer.position();
+            buffer.put(slotValue(bytes));
+            buffer.position(lengthOffset + SLOT_HEADER_SIZE + capacity);
+            written.put(name, new Slot(key, lengthOffset, capacity));
+        }
+        buffer.flip();
+
+        final Path parent = file.toAbsolutePath().getParent();
+        if (null != parent) {
+            Files.createDirectories(parent);
+        }
+        final Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            out.force(true);
+        }
+        // 原文件的 channel 必须在替换之前关闭，否则有些系统上无法替换
+        closeChannel();
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        slots.clear();
+        slots.putAll(written);
+        openChannel();
+    }
+
+    /**
+     * 只把自上次写入以来变化过的字段写入文件。
+     *
+     * @return 写入的字段的数量
+     */
+    public synchronized int flush() throws IOException {
+        if (dirty.isEmpty()) {
+            return 0;
+        }
+        if (null == channel) {
+            save();
+            return slots.size();
+        }
+        final List<String> names = new ArrayList<>(dirty);
+        dirty.removeAll(names);
+        for (String name : names) {
+            final String key = codecs.keyOf(observables.get(name));
+            final Slot slot = slots.get(name);
+            final byte[] bytes = null == key ? null : codecs.encode(observables.get(name), key);
+            if (null == bytes || null == slot || !slot.key.equals(key) || bytes.length > slot.capacity) {
+                // 槽放不下新值，重写整个文件
+                save();
+                return slots.size();
+            }
+            final ByteBuffer value = slotValue(bytes);
+            long position = slot.lengthOffset;
+            while (value.hasRemaining()) {
+                position += channel.write(value, position);
+            }
+        }
+        channel.force(false);
+        return names.size();
+    }
+
+    /**
+     * 每隔 period 在后台线程中调用一次 {@link #flush()}，直到 {@link #close()}。重复调用替换之前的周期。
+     *
+     * @return this
+     */
+    public synchronized ModelSnapshot startFlushing(Duration period) {
+        stopFlushing();
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ModelSnapshot-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(() -> {
+            try {
+                flush();
+            } catch (IOException | RuntimeException e) {
+                LOGGER.warn("Periodic flush of {} failed", file, e);
+            }
+        }, period.toMillis(), period.toMillis(), TimeUnit.MILLISECONDS);
+        return this;
+    }
+
+    private void stopFlushing() {
+        if (null != flusher) {
+            flusher.shutdown();
+            flusher = null;
+        }
+    }
+
+    /**
+     * 停止定期写入，写入剩余的脏字段，停止跟踪模型并关闭文件。
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        stopFlushing();
+        subscriptions.forEach(Subscription::dispose);
+        subscriptions.clear();
+        flush();
+        closeChannel();
+    }
+
+    private void openChannel() throws IOException {
+        if (null == channel) {
+            channel = FileChannel.open(file, StandardOpenOption.WRITE);
+        }
+    }
+
+    private void closeChannel() throws IOException {
+        if (null != channel) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * 基本类型的长度固定，其他类型预留一半的空间，这样值变长一些时仍然可以只重写它自己的槽。
+     */
+    private static int capacityFor(String key, byte[] bytes) {
+        if (FieldCodecs.isPrimitiveKey(key)) {
+            return bytes.length;
+        }
+        return Math.max(MIN_CAPACITY, bytes.length + bytes.length / 2);
+    }
+
+    /**
+     * @return 槽的内容：[int 长度][int CRC32][值]
+     */
+    private static ByteBuffer slotValue(byte[] bytes) {
+        final ByteBuffer value = ByteBuffer.allocate(SLOT_HEADER_SIZE + bytes.length);
+        value.putInt(bytes.length).putInt(checksum(bytes)).put(bytes);
+        return value.flip();
+    }
+
+    /**
+     * 长度也参与计算，所以只写了新长度而没有写完新值的槽同样无法通过校验。
+     */
+    private static int checksum(byte[] bytes) {
+        final CRC32 crc = new CRC32();
+        crc.update(ByteBuffer.allocate(Integer.BYTES).putInt(bytes.length).flip());
+        crc.update(bytes);
+        return (int) crc.getValue();
+    }
+
+    private static int stringSize(String value) {
+        return Short.BYTES + value.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static void writeString(ByteBuffer buffer, String value) {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.getShort()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 一个字段在文件中的位置。lengthOffset 处是值的长度和 CRC32，紧接着是值本身，最多 capacity 个字节。
+     */
+    private static final class Slot {
+        final String key;
+        final int lengthOffset;
+        final int capacity;
+
+        Slot(String key, int lengthOffset, int capacity) {
+            this.key = key;
+            this.lengthOffset = lengthOffset;
+            this.capacity = capacity;
+        }
+    }
+
+}
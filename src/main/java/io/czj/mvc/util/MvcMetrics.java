@@ -0,0 +1,120 @@
+package io.czj.mvc.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 队列、操作和侦听器的运行时指标的入口。
+ * <p>
+ * 指标默认关闭，可以通过系统属性 'io.czj.mvc.metrics=true' 或 {@link #setEnabled(boolean)} 打开。
+ * 只有在打开之后创建的控制器和队列才会被测量；关闭时每个任务只多一次 null 检查。
+ * <p>
+ * 所有指标都注册为 JMX MBean（域 'io.czj.mvc'），也可以通过 {@link #startLogging(Duration)} 定期写入日志。
+ */
+public final class MvcMetrics {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MvcMetrics.class);
+
+    private static final String DOMAIN = "io.czj.mvc";
+
+    private static volatile boolean enabled = Boolean.getBoolean("io.czj.mvc.metrics");
+
+    private static final List<Source> SOURCES = new CopyOnWriteArrayList<>();
+
+    private static ScheduledExecutorService logger;
+
+    private MvcMetrics() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        MvcMetrics.enabled = enabled;
+    }
+
+    /**
+     * @return 当前注册的所有指标
+     */
+    public static List<Source> getSources() {
+        return List.copyOf(SOURCES);
+    }
+
+    /**
+     * 每隔 period 把所有指标的摘要以 INFO 级别写入日志。
+     */
+    public static synchronized void startLogging(Duration period) {
+        stopLogging();
+        logger = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "MvcMetrics-logger");
+            thread.setDaemon(true);
+            return thread;
+        });
+        logger.scheduleAtFixedRate(MvcMetrics::logSummary, period.toMillis(), period.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public static synchronized void stopLogging() {
+        if (null != logger) {
+            logger.shutdown();
+            logger = null;
+        }
+    }
+
+    public static void logSummary() {
+        for (Source source : SOURCES) {
+            LOGGER.info("{} '{}': {}", source.getType(), source.getName(), source.summary());
+        }
+    }
+
+    static void register(Source source) {
+        SOURCES.add(source);
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(source, objectName(source));
+        } catch (JMException e) {
+            LOGGER.warn("Could not register MBean for {} '{}'", source.getType(), source.getName(), e);
+        }
+    }
+
+    static void unregister(Source source) {
+        SOURCES.remove(source);
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = objectName(source);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            LOGGER.warn("Could not unregister MBean for {} '{}'", source.getType(), source.getName(), e);
+        }
+    }
+
+    private static ObjectName objectName(Source source) throws JMException {
+        return new ObjectName(DOMAIN + ":type=" + source.getType() + ",name=" + ObjectName.quote(source.getName()));
+    }
+
+    /**
+     * 一组可以注册的指标。
+     */
+    public interface Source {
+
+        String getName();
+
+        String getType();
+
+        String summary();
+    }
+
+}
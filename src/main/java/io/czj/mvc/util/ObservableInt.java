@@ -0,0 +1,132 @@
+package io.czj.mvc.util;
+
+/**
+ * {@link ObservableValue} 的 int 特化版本。设置值和通知侦听器都不需要装箱。
+ *
+ * 侦听器的管理方式与 ObservableValue 相同，都由 {@link Listeners} 管理，按注册顺序通知。
+ */
+public final class ObservableInt {
+
+    // 每当值更改时，所有这些侦听器都会收到通知
+    private final Listeners<IntChangeListener> listeners = new Listeners<>();
+
+    private volatile int value;
+    // 每次值变化时加一，派生值用它判断是否需要重新计算。只有写入线程修改它
+    private volatile long version = 0;
+
+    public ObservableInt(int initialValue) {
+        value = initialValue;
+    }
+
+    /**
+     * 注册一个新的观察者（又名listener）
+     *
+     * @param listener 指定值更改时需要执行的操作
+     * @return 用于取消注册的句柄
+     */
+    public Subscription onChange(IntChangeListener listener) {
+        final Subscription subscription = listeners.add(listener);
+        // 立即通知侦听器
+        listener.update(value, value);
+        return subscription;
+    }
+
+    /**
+     * 以弱引用注册观察者：此 ObservableInt 只弱引用 listener，由返回的句柄强引用它。
+     * 调用者（通常是视图）持有句柄期间 listener 会收到通知；句柄不可达之后 listener 会被回收并自动移除。
+     *
+     * @param listener 指定值更改时需要执行的操作
+     * @return 持有 listener 的句柄，也可以用它提前取消注册
+     */
+    public Subscription onChangeWeak(IntChangeListener listener) {
+        final Subscription subscription = listeners.addWeak(listener);
+        // 立即通知侦听器
+        listener.update(value, value);
+        return subscription;
+    }
+
+    /**
+     * 此方法是包私有，仅允许ControllerBase设置新值。
+     *
+     * @param newValue 新值
+     */
+    void setValue(int newValue) {
+        // 如果值未更改，则不通知
+        if (value == newValue) {
+            return;
+        }
+        int oldValue = value;
+        value = newValue;
+        version++;
+
+        final Transaction transaction = Transaction.current();
+        if (null != transaction) {
+            transaction.changed(this, () -> publish(oldValue));
+            return;
+        }
+        notifyListeners(oldValue, newValue);
+    }
+
+    /**
+     * 事务结束时调用：如果值与事务开始前不同，则用最终的值通知侦听器。
+     */
+    private void publish(int oldValue) {
+        if (value == oldValue) {
+            return;
+        }
+        notifyListeners(oldValue, value);
+    }
+
+    private void notifyListeners(int oldValue, int newValue) {
+        final long start = listeners.dispatchStarted();
+        for (Object entry : listeners.snapshot()) {
+            final IntChangeListener listener = listeners.resolve(entry);
+            // 预先订购的侦听器可能已经改变了这一点，因此回调不再适用
+            if (null != listener && value == newValue) {
+                listener.update(oldValue, newValue);
+            }
+        }
+        listeners.dispatchFinished(start);
+    }
+
+    /**
+     * 开始测量侦听器的通知时间并将指标注册到 {@link MvcMetrics}。重复调用返回同一个指标。
+     */
+    ObservableMetrics enableMetrics(String name) {
+        return listeners.enableMetrics(name);
+    }
+
+    /**
+     * @return 此 ObservableInt 管理的值
+     */
+    public int getValue() {
+        return value;
+    }
+
+    long version() {
+        return version;
+    }
+
+    /**
+     * 以装箱的值观察此 ObservableInt，例如作为 {@link ComputedValue} 的输入或者传给 onChangeOf：
+     * <pre>
+     * ComputedValue&lt;String&gt; label = model.counter.asObject().map(value -&gt; "value: " + value);
+     * </pre>
+     * 每次调用返回一个新的视图，通过它注册的侦听器被包装后注册到此 ObservableInt。
+     */
+    public ReadOnlyObservable<Integer> asObject() {
+        return new BoxedObservable<Integer, IntChangeListener>(this::getValue, this::version, this::onChange, this::onChangeWeak,
+                listener -> (oldValue, newValue) -> listener.update(oldValue, newValue));
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(value);
+    }
+
+    @FunctionalInterface
+    public interface IntChangeListener {
+        void update(int oldValue, int newValue);
+    }
+
+}
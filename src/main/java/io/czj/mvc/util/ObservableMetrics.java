@@ -0,0 +1,58 @@
+package io.czj.mvc.util;
+
+/**
+ * 一个 Observable 的运行时指标：每次值变化时通知所有侦听器所需的时间。
+ */
+public final class ObservableMetrics implements ObservableMetricsMBean, MvcMetrics.Source {
+
+    private final String name;
+    private final LatencyHistogram dispatch = new LatencyHistogram();
+
+    ObservableMetrics(String name) {
+        this.name = name;
+    }
+
+    void dispatched(long nanos) {
+        dispatch.record(nanos);
+    }
+
+    public LatencyHistogram getDispatchHistogram() {
+        return dispatch;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getType() {
+        return "Observable";
+    }
+
+    @Override
+    public long getDispatchCount() {
+        return dispatch.getCount();
+    }
+
+    @Override
+    public long getDispatchMeanMicros() {
+        return dispatch.getMeanNanos() / 1000;
+    }
+
+    @Override
+    public long getDispatchP99Micros() {
+        return dispatch.getPercentileNanos(99) / 1000;
+    }
+
+    @Override
+    public long getDispatchMaxMicros() {
+        return dispatch.getMaxNanos() / 1000;
+    }
+
+    @Override
+    public String summary() {
+        return "dispatch " + dispatch;
+    }
+
+}
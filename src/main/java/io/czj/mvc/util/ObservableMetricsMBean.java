@@ -0,0 +1,18 @@
+package io.czj.mvc.util;
+
+/**
+ * {@link ObservableMetrics} 的 JMX 接口。所有时间都以微秒为单位。
+ */
+public interface ObservableMetricsMBean {
+
+    String getName();
+
+    long getDispatchCount();
+
+    long getDispatchMeanMicros();
+
+    long getDispatchP99Micros();
+
+    long getDispatchMaxMicros();
+
+}
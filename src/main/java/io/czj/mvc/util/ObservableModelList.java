@@ -0,0 +1,218 @@
+package io.czj.mvc.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 模型中的可观察列表。与 {@link ObservableValue} 不同，修改时侦听器收到的是增量的 {@link ListChange}，
+ * 而不是整个新列表，因此大列表的一次小修改只需要比较和重建修改的部分。
+ * <p>
+ * 与 ObservableValue 一样，修改方法是包私有，只能通过 ControllerBase 调用。在 {@link Transaction} 中的修改合并为一个变化，
+ * 在事务结束时通知。读取方法可以在任何线程中调用。
+ * <p>
+ * 侦听器在持有此列表的锁时收到通知，所以注册时的 reset 和之后的变化不会交错或重复；侦听器不应在回调中等待其他线程修改此列表。
+ */
+public final class ObservableModelList<E> {
+
+    private final Listeners<ListChangeListener<E>> listeners = new Listeners<>();
+
+    private final List<E> items;
+
+    // 当前事务中累积的区间，不在事务中时为 null
+    private List<ListChange.Range<E>> pendingRanges;
+
+    public ObservableModelList() {
+        items = new ArrayList<>();
+    }
+
+    public ObservableModelList(Collection<? extends E> initialItems) {
+        items = new ArrayList<>(initialItems);
+    }
+
+    /**
+     * 注册一个新的观察者（又名listener）。它会立即收到一个包含全部内容的 reset 变化。
+     *
+     * @param listener 指定列表更改时需要执行的操作
+     * @return 用于取消注册的句柄
+     */
+    public Subscription onChange(ListChangeListener<E> listener) {
+        // 与修改和通知使用同一个锁：侦听器收到的 reset 之后的每个变化都恰好通知一次
+        synchronized (this) {
+            final Subscription subscription = listeners.add(listener);
+            listener.onChanged(resetChange());
+            return subscription;
+        }
+    }
+
+    /**
+     * 以弱引用注册观察者，见 {@link ObservableValue#onChangeWeak}。
+     *
+     * @return 持有 listener 的句柄，也可以用它提前取消注册
+     */
+    public Subscription onChangeWeak(ListChangeListener<E> listener) {
+        // 与修改和通知使用同一个锁：侦听器收到的 reset 之后的每个变化都恰好通知一次
+        synchronized (this) {
+            final Subscription subscription = listeners.addWeak(listener);
+            listener.onChanged(resetChange());
+            return subscription;
+        }
+    }
+
+    private synchronized ListChange<E> resetChange() {
+        return new ListChange<>(true, List.of(new ListChange.Range<>(0, List.of(), new ArrayList<>(items))));
+    }
+
+    // 以下修改方法是包私有，仅允许ControllerBase调用
+
+    void add(E element) {
+        final ListChange.Range<E> range;
+        synchronized (this) {
+            range = new ListChange.Range<>(items.size(), List.of(), new ArrayList<>(Collections.singletonList(element)));
+            items.add(element);
+            changed(range);
+        }
+    }
+
+    void add(int index, E element) {
+        final ListChange.Range<E> range;
+        synchronized (this) {
+            items.add(index, element);
+            range = new ListChange.Range<>(index, List.of(), new ArrayList<>(Collections.singletonList(element)));
+            changed(range);
+        }
+    }
+
+    void addAll(Collection<? extends E> elements) {
+        if (elements.isEmpty()) {
+            return;
+        }
+        final ListChange.Range<E> range;
+        synchronized (this) {
+            range = new ListChange.Range<>(items.size(), List.of(), new ArrayList<>(elements));
+            items.addAll(elements);
+            changed(range);
+        }
+    }
+
+    void set(int index, E element) {
+        final ListChange.Range<E> range;
+        synchronized (this) {
+            E old = items.set(index, element);
+            if (Objects.equals(old, element)) {
+                return;
+            }
+            range = new ListChange.Range<>(index, Collections.singletonList(old), new ArrayList<>(Collections.singletonList(element)));
+            changed(range);
+        }
+    }
+
+    void remove(int index) {
+        removeRange(index, index + 1);
+    }
+
+    /**
+     * 删除 [from, to) 区间的元素
+     */
+    void removeRange(int from, int to) {
+        if (from == to) {
+            return;
+        }
+        final ListChange.Range<E> range;
+        synchronized (this) {
+            List<E> view = items.subList(from, to);
+            range = new ListChange.Range<>(from, new ArrayList<>(view), new ArrayList<>());
+            view.clear();
+            changed(range);
+        }
+    }
+
+    void clear() {
+        final int size;
+        synchronized (this) {
+            size = items.size();
+        }
+        removeRange(0, size);
+    }
+
+    /**
+     * 替换全部内容。变化中只包含一个区间：删除旧的全部内容，插入新的全部内容。
+     */
+    void setAll(Collection<? extends E> elements) {
+        final ListChange.Range<E> range;
+        synchronized (this) {
+            range = new ListChange.Range<>(0, new ArrayList<>(items), new ArrayList<>(elements));
+            items.clear();
+            items.addAll(elements);
+            changed(range);
+        }
+    }
+
+    /**
+     * 只在持有锁时调用。
+     */
+    private void changed(ListChange.Range<E> range) {
+        final Transaction transaction = Transaction.current();
+        if (null == transaction) {
+            notifyListeners(new ListChange<>(false, List.of(range)));
+            return;
+        }
+        if (null == pendingRanges) {
+            pendingRanges = new ArrayList<>();
+            transaction.changed(this, this::publish);
+        }
+        if (pendingRanges.isEmpty() || !pendingRanges.get(pendingRanges.size() - 1).tryAppend(range)) {
+            pendingRanges.add(range);
+        }
+    }
+
+    /**
+     * 事务结束时调用：把事务中的所有修改作为一个变化通知。
+     */
+    private synchronized void publish() {
+        final List<ListChange.Range<E>> ranges = pendingRanges;
+        pendingRanges = null;
+        notifyListeners(new ListChange<>(false, ranges));
+    }
+
+    private void notifyListeners(ListChange<E> change) {
+        for (Object entry : listeners.snapshot()) {
+            final ListChangeListener<E> listener = listeners.resolve(entry);
+            if (null != listener) {
+                listener.onChanged(change);
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return items.size();
+    }
+
+    public synchronized boolean isEmpty() {
+        return items.isEmpty();
+    }
+
+    public synchronized E get(int index) {
+        return items.get(index);
+    }
+
+    /**
+     * @return 当前内容的不可修改的副本
+     */
+    public synchronized List<E> snapshot() {
+        return Collections.unmodifiableList(new ArrayList<>(items));
+    }
+
+    @Override
+    public synchronized String toString() {
+        return items.toString();
+    }
+
+    @FunctionalInterface
+    public interface ListChangeListener<E> {
+        void onChanged(ListChange<E> change);
+    }
+
+}
@@ -0,0 +1,185 @@
+package io.czj.mvc.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 模型中的可观察映射。修改时侦听器收到的是增量的 {@link MapChange}，只包含被修改的键。
+ * <p>
+ * 与 ObservableValue 一样，修改方法是包私有，只能通过 ControllerBase 调用。在 {@link Transaction} 中的修改合并为一个变化，
+ * 在事务结束时通知。读取方法可以在任何线程中调用。
+ * <p>
+ * 侦听器在持有此映射的锁时收到通知，所以注册时的 reset 和之后的变化不会交错或重复；侦听器不应在回调中等待其他线程修改此映射。
+ */
+public final class ObservableModelMap<K, V> {
+
+    private final Listeners<MapChangeListener<K, V>> listeners = new Listeners<>();
+
+    private final Map<K, V> entries;
+
+    // 当前事务中累积的变化，不在事务中时为 null
+    private Map<K, MapChange.Entry<V>> pendingEntries;
+
+    public ObservableModelMap() {
+        entries = new LinkedHashMap<>();
+    }
+
+    public ObservableModelMap(Map<? extends K, ? extends V> initialEntries) {
+        entries = new LinkedHashMap<>(initialEntries);
+    }
+
+    /**
+     * 注册一个新的观察者（又名listener）。它会立即收到一个包含全部内容的 reset 变化。
+     *
+     * @param listener 指定映射更改时需要执行的操作
+     * @return 用于取消注册的句柄
+     */
+    public Subscription onChange(MapChangeListener<K, V> listener) {
+        // 与修改和通知使用同一个锁：侦听器收到的 reset 之后的每个变化都恰好通知一次
+        synchronized (this) {
+            final Subscription subscription = listeners.add(listener);
+            listener.onChanged(resetChange());
+            return subscription;
+        }
+    }
+
+    /**
+     * 以弱引用注册观察者，见 {@link ObservableValue#onChangeWeak}。
+     *
+     * @return 持有 listener 的句柄，也可以用它提前取消注册
+     */
+    public Subscription onChangeWeak(MapChangeListener<K, V> listener) {
+        // 与修改和通知使用同一个锁：侦听器收到的 reset 之后的每个变化都恰好通知一次
+        synchronized (this) {
+            final Subscription subscription = listeners.addWeak(listener);
+            listener.onChanged(resetChange());
+            return subscription;
+        }
+    }
+
+    private synchronized MapChange<K, V> resetChange() {
+        Map<K, MapChange.Entry<V>> all = new LinkedHashMap<>();
+        entries.forEach((key, value) -> all.put(key, new MapChange.Entry<>(false, null, true, value)));
+        return new MapChange<>(true, all);
+    }
+
+    // 以下修改方法是包私有，仅允许ControllerBase调用
+
+    void put(K key, V value) {
+        final MapChange.Entry<V> entry;
+        synchronized (this) {
+            final boolean wasPresent = entries.containsKey(key);
+            final V oldValue = entries.put(key, value);
+            if (wasPresent && Objects.equals(oldValue, value)) {
+                return;
+            }
+            entry = new MapChange.Entry<>(wasPresent, oldValue, true, value);
+            changed(key, entry);
+        }
+    }
+
+    void putAll(Map<? extends K, ? extends V> values) {
+        Transaction.run(() -> values.forEach(this::put));
+    }
+
+    void remove(K key) {
+        final MapChange.Entry<V> entry;
+        synchronized (this) {
+            if (!entries.containsKey(key)) {
+                return;
+            }
+            entry = new MapChange.Entry<>(true, entries.remove(key), false, null);
+            changed(key, entry);
+        }
+    }
+
+    void clear() {
+        final ArrayList<K> keys;
+        synchronized (this) {
+            keys = new ArrayList<>(entries.keySet());
+        }
+        Transaction.run(() -> keys.forEach(this::remove));
+    }
+
+    /**
+     * 只在持有锁时调用。
+     */
+    private void changed(K key, MapChange.Entry<V> entry) {
+        final Transaction transaction = Transaction.current();
+        if (null == transaction) {
+            Map<K, MapChange.Entry<V>> single = new LinkedHashMap<>();
+            single.put(key, entry);
+            notifyListeners(new MapChange<>(false, single));
+            return;
+        }
+        if (null == pendingEntries) {
+            pendingEntries = new LinkedHashMap<>();
+            transaction.changed(this, this::publish);
+        }
+        final MapChange.Entry<V> previous = pendingEntries.get(key);
+        if (null == previous) {
+            pendingEntries.put(key, entry);
+            return;
+        }
+        // 合并为从事务开始前到现在的变化，没有净变化的键不通知
+        final MapChange.Entry<V> merged = new MapChange.Entry<>(previous.wasPresent(), previous.getOldValue(), entry.isPresent(), entry.getNewValue());
+        if (merged.wasPresent() == merged.isPresent() && (!merged.isPresent() || Objects.equals(merged.getOldValue(), merged.getNewValue()))) {
+            pendingEntries.remove(key);
+        } else {
+            pendingEntries.put(key, merged);
+        }
+    }
+
+    /**
+     * 事务结束时调用：把事务中的所有修改作为一个变化通知。
+     */
+    private synchronized void publish() {
+        final Map<K, MapChange.Entry<V>> changes = pendingEntries;
+        pendingEntries = null;
+        if (!changes.isEmpty()) {
+            notifyListeners(new MapChange<>(false, changes));
+        }
+    }
+
+    private void notifyListeners(MapChange<K, V> change) {
+        for (Object entry : listeners.snapshot()) {
+            final MapChangeListener<K, V> listener = listeners.resolve(entry);
+            if (null != listener) {
+                listener.onChanged(change);
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized boolean containsKey(K key) {
+        return entries.containsKey(key);
+    }
+
+    public synchronized V get(K key) {
+        return entries.get(key);
+    }
+
+    /**
+     * @return 当前内容的不可修改的副本
+     */
+    public synchronized Map<K, V> snapshot() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(entries));
+    }
+
+    @Override
+    public synchronized String toString() {
+        return entries.toString();
+    }
+
+    @FunctionalInterface
+    public interface MapChangeListener<K, V> {
+        void onChanged(MapChange<K, V> change);
+    }
+
+}
@@ -1,23 +1,26 @@
 package io.czj.mvc.util;
 
-import java.util.HashSet;
 import java.util.Objects;
-import java.util.Set;
 
 /**
  * Observable-Pattern 的基本实现。
  *
  * 准备好根据您的要求增强此功能。
  *
+ * 侦听器保存在 {@link Listeners} 的写时复制数组中：注册时复制数组，通知时只读取当前数组的快照。
+ * 因此注册可以在任何线程中进行，也可以在通知期间进行（新侦听器从下一次变化开始收到通知），侦听器按注册顺序收到通知。
+ *
  * @Author: chenzejin
  * @Date: 2022/1/15
  */
-public final class ObservableValue<V> {
+public final class ObservableValue<V> implements ReadOnlyObservable<V> {
 
     // 每当值更改时，所有这些侦听器都会收到通知
-    private final Set<ValueChangeListener<V>> listeners = new HashSet<>();
+    private final Listeners<ValueChangeListener<V>> listeners = new Listeners<>();
 
     private volatile V value;
+    // 每次值变化时加一，派生值用它判断是否需要重新计算。只有写入线程修改它
+    private volatile long version = 0;
 
     public ObservableValue(V initialValue) {
         value = initialValue;
@@ -27,11 +30,29 @@ public final class ObservableValue<V> {
      * 注册一个新的观察者（又名listener）
      *
      * @param listener 指定值更改时需要执行的操作
+     * @return 用于取消注册的句柄
      */
-    public void onChange(ValueChangeListener<V> listener) {
-        listeners.add(listener);
+    @Override
+    public Subscription onChange(ValueChangeListener<V> listener) {
+        final Subscription subscription = listeners.add(listener);
         // 立即通知侦听器
         listener.update(value, value);
+        return subscription;
+    }
+
+    /**
+     * 以弱引用注册观察者：此 ObservableValue 只弱引用 listener，由返回的句柄强引用它。
+     * 调用者（通常是视图）持有句柄期间 listener 会收到通知；句柄不可达之后 listener 会被回收并自动移除。
+     *
+     * @param listener 指定值更改时需要执行的操作
+     * @return 持有 listener 的句柄，也可以用它提前取消注册
+     */
+    @Override
+    public Subscription onChangeWeak(ValueChangeListener<V> listener) {
+        final Subscription subscription = listeners.addWeak(listener);
+        // 立即通知侦听器
+        listener.update(value, value);
+        return subscription;
     }
 
     /**
@@ -50,13 +71,43 @@ public final class ObservableValue<V> {
         }
         V oldValue = value;
         value = newValue;
+        version++;
+
+        final Transaction transaction = Transaction.current();
+        if (null != transaction) {
+            transaction.changed(this, () -> publish(oldValue));
+            return;
+        }
+        notifyListeners(oldValue, newValue);
+    }
 
-        listeners.forEach(listener -> {
+    /**
+     * 事务结束时调用：如果值与事务开始前不同，则用最终的值通知侦听器。
+     */
+    private void publish(V oldValue) {
+        if (Objects.equals(value, oldValue)) {
+            return;
+        }
+        notifyListeners(oldValue, value);
+    }
+
+    private void notifyListeners(V oldValue, V newValue) {
+        final long start = listeners.dispatchStarted();
+        for (Object entry : listeners.snapshot()) {
+            final ValueChangeListener<V> listener = listeners.resolve(entry);
             // 预先订购的侦听器可能已经改变了这一点，因此回调不再适用
-            if (value.equals(newValue)) {
+            if (null != listener && Objects.equals(value, newValue)) {
                 listener.update(oldValue, newValue);
             }
-        });
+        }
+        listeners.dispatchFinished(start);
+    }
+
+    /**
+     * 开始测量侦听器的通知时间并将指标注册到 {@link MvcMetrics}。重复调用返回同一个指标。
+     */
+    ObservableMetrics enableMetrics(String name) {
+        return listeners.enableMetrics(name);
     }
 
     /**
@@ -64,10 +115,15 @@ public final class ObservableValue<V> {
      *
      * @return 此 ObservableValue 管理的值
      */
+    @Override
     public V getValue() {
         return value;
     }
 
+    long version() {
+        return version;
+    }
+
     @Override
     public String toString() {
         return value.toString();
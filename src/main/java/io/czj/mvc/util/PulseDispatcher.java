@@ -0,0 +1,94 @@
+package io.czj.mvc.util;
+
+import javafx.application.Platform;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 把发往 FX 线程的更新合并起来：每个绑定只保留最新的更新，所有等待中的更新在一次 runLater 中执行。
+ * <p>
+ * 只要还有等待执行的更新，就不会再调用 runLater。因此无论模型变化多快，FX 事件队列中最多只有一个来自这里的任务。
+ * <p>
+ * 更新按照它们第一次被标记为“脏”的顺序执行。
+ */
+public final class PulseDispatcher {
+
+    private static final PulseDispatcher FX = new PulseDispatcher(Platform::runLater);
+
+    private final Consumer<Runnable> scheduler;
+
+    // 等待中的更新，键是绑定的目标（通常是 Property）
+    private Map<Object, Runnable> pending = new LinkedHashMap<>();
+
+    private final LongAdder dispatched = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+
+    PulseDispatcher(Consumer<Runnable> scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * @return 在 JavaFX 应用程序线程上执行更新的共享实例
+     */
+    public static PulseDispatcher fx() {
+        return FX;
+    }
+
+    /**
+     * 为给定的目标安排更新。如果该目标已经有一个等待中的更新，它将被替换。
+     * <p>
+     * 可以从任何线程调用。
+     *
+     * @param target 更新的目标，同一目标的更新会互相替换
+     * @param update 在 FX 线程上执行的更新
+     */
+    void dispatch(Object target, Runnable update) {
+        dispatched.increment();
+        final boolean schedule;
+        synchronized (this) {
+            schedule = pending.isEmpty();
+            if (null != pending.put(target, update)) {
+                skipped.increment();
+            }
+        }
+        if (schedule) {
+            scheduler.accept(this::flush);
+        }
+    }
+
+    private void flush() {
+        final Map<Object, Runnable> updates;
+        synchronized (this) {
+            updates = pending;
+            pending = new LinkedHashMap<>();
+        }
+        flushes.increment();
+        updates.values().forEach(Runnable::run);
+    }
+
+    /**
+     * @return 安排的更新总数
+     */
+    public long getDispatchedCount() {
+        return dispatched.sum();
+    }
+
+    /**
+     * @return 被更新的值替换而从未执行的中间更新的数量
+     */
+    public long getSkippedCount() {
+        return skipped.sum();
+    }
+
+    /**
+     * @return 执行了的 runLater 的数量
+     */
+    public long getFlushCount() {
+        return flushes.sum();
+    }
+
+}
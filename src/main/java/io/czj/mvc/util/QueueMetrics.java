@@ -0,0 +1,202 @@
+package io.czj.mvc.util;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一个 {@link ConcurrentTaskQueue} 的运行时指标：队列深度、从提交到开始的等待时间、todo 和 onDone 的执行时间，
+ * 以及每个优先级从提交到 onDone 结束的延迟（即用户感受到的响应时间）。
+ */
+public final class QueueMetrics implements QueueMetricsMBean, MvcMetrics.Source {
+
+    private final String name;
+    private final ConcurrentTaskQueue<?> queue;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    private final LatencyHistogram wait = new LatencyHistogram();
+    private final LatencyHistogram todo = new LatencyHistogram();
+    private final LatencyHistogram onDone = new LatencyHistogram();
+    // 下标是 Priority.ordinal()
+    private final LatencyHistogram[] latency = new LatencyHistogram[ConcurrentTaskQueue.Priority.values().length];
+
+    QueueMetrics(String name, ConcurrentTaskQueue<?> queue) {
+        this.name = name;
+        this.queue = queue;
+        for (int i = 0; i < latency.length; i++) {
+            latency[i] = new LatencyHistogram();
+        }
+    }
+
+    void submitted() {
+        submitted.increment();
+    }
+
+    void started(long waitNanos) {
+        wait.record(waitNanos);
+    }
+
+    void todoDone(long nanos) {
+        todo.record(nanos);
+    }
+
+    void onDoneDone(long nanos, ConcurrentTaskQueue.Priority priority, long latencyNanos) {
+        onDone.record(nanos);
+        latency[priority.ordinal()].record(latencyNanos);
+        completed.increment();
+    }
+
+    void failed() {
+        failed.increment();
+    }
+
+    public LatencyHistogram getWaitHistogram() {
+        return wait;
+    }
+
+    public LatencyHistogram getTodoHistogram() {
+        return todo;
+    }
+
+    public LatencyHistogram getOnDoneHistogram() {
+        return onDone;
+    }
+
+    /**
+     * @return 给定优先级的任务从提交到 onDone 结束的延迟
+     */
+    public LatencyHistogram getLatencyHistogram(ConcurrentTaskQueue.Priority priority) {
+        return latency[priority.ordinal()];
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getType() {
+        return "ConcurrentTaskQueue";
+    }
+
+    @Override
+    public long getDepth() {
+        return queue.size();
+    }
+
+    @Override
+    public long getSubmittedCount() {
+        return submitted.sum();
+    }
+
+    @Override
+    public long getCompletedCount() {
+        return completed.sum();
+    }
+
+    @Override
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    @Override
+    public long getTimedOutCount() {
+        return queue.getTimedOutCount();
+    }
+
+    @Override
+    public long getBlockedCount() {
+        return queue.getBlockedCount();
+    }
+
+    @Override
+    public long getDroppedOldestCount() {
+        return queue.getDroppedOldestCount();
+    }
+
+    @Override
+    public long getDroppedNewestCount() {
+        return queue.getDroppedNewestCount();
+    }
+
+    @Override
+    public long getRejectedCount() {
+        return queue.getRejectedCount();
+    }
+
+    @Override
+    public long getWaitMeanMicros() {
+        return wait.getMeanNanos() / 1000;
+    }
+
+    @Override
+    public long getWaitP99Micros() {
+        return wait.getPercentileNanos(99) / 1000;
+    }
+
+    @Override
+    public long getTodoMeanMicros() {
+        return todo.getMeanNanos() / 1000;
+    }
+
+    @Override
+    public long getTodoP99Micros() {
+        return todo.getPercentileNanos(99) / 1000;
+    }
+
+    @Override
+    public long getTodoMaxMicros() {
+        return todo.getMaxNanos() / 1000;
+    }
+
+    @Override
+    public long getOnDoneMeanMicros() {
+        return onDone.getMeanNanos() / 1000;
+    }
+
+    @Override
+    public long getOnDoneP99Micros() {
+        return onDone.getPercentileNanos(99) / 1000;
+    }
+
+    @Override
+    public long getAgedCount() {
+        return queue.getAgedCount();
+    }
+
+    @Override
+    public long getInteractiveLatencyP99Micros() {
+        return latencyP99Micros(ConcurrentTaskQueue.Priority.INTERACTIVE);
+    }
+
+    @Override
+    public long getNormalLatencyP99Micros() {
+        return latencyP99Micros(ConcurrentTaskQueue.Priority.NORMAL);
+    }
+
+    @Override
+    public long getBackgroundLatencyP99Micros() {
+        return latencyP99Micros(ConcurrentTaskQueue.Priority.BACKGROUND);
+    }
+
+    private long latencyP99Micros(ConcurrentTaskQueue.Priority priority) {
+        return latency[priority.ordinal()].getPercentileNanos(99) / 1000;
+    }
+
+    @Override
+    public String summary() {
+        final StringBuilder summary = new StringBuilder(String.format("depth=%d submitted=%d completed=%d failed=%d timedOut=%d blocked=%d droppedOldest=%d droppedNewest=%d rejected=%d aged=%d | wait %s | todo %s | onDone %s",
+                getDepth(), getSubmittedCount(), getCompletedCount(), getFailedCount(), getTimedOutCount(),
+                getBlockedCount(), getDroppedOldestCount(), getDroppedNewestCount(), getRejectedCount(), getAgedCount(), wait, todo, onDone));
+        // 只列出用过的优先级
+        for (ConcurrentTaskQueue.Priority priority : ConcurrentTaskQueue.Priority.values()) {
+            final LatencyHistogram histogram = latency[priority.ordinal()];
+            if (histogram.getCount() > 0) {
+                summary.append(" | ").append(priority.name().toLowerCase()).append(' ').append(histogram);
+            }
+        }
+        return summary.toString();
+    }
+
+}
@@ -0,0 +1,50 @@
+package io.czj.mvc.util;
+
+/**
+ * {@link QueueMetrics} 的 JMX 接口。所有时间都以微秒为单位。
+ */
+public interface QueueMetricsMBean {
+
+    String getName();
+
+    long getDepth();
+
+    long getSubmittedCount();
+
+    long getCompletedCount();
+
+    long getFailedCount();
+
+    long getTimedOutCount();
+
+    long getBlockedCount();
+
+    long getDroppedOldestCount();
+
+    long getDroppedNewestCount();
+
+    long getRejectedCount();
+
+    long getWaitMeanMicros();
+
+    long getWaitP99Micros();
+
+    long getTodoMeanMicros();
+
+    long getTodoP99Micros();
+
+    long getTodoMaxMicros();
+
+    long getOnDoneMeanMicros();
+
+    long getOnDoneP99Micros();
+
+    long getAgedCount();
+
+    long getInteractiveLatencyP99Micros();
+
+    long getNormalLatencyP99Micros();
+
+    long getBackgroundLatencyP99Micros();
+
+}
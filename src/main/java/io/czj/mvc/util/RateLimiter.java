@@ -0,0 +1,119 @@
+package io.czj.mvc.util;
+
+import javafx.animation.Animation;
+import javafx.animation.PauseTransition;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * {@link ViewMixin.ActionTrigger} 的限流算子：限制 Property 的变化以多高的频率到达控制器。
+ * <p>
+ * 所有方法都在 FX 线程中调用，计时使用 {@link PauseTransition}，因此不需要额外的线程，也不需要同步。
+ */
+final class RateLimiter<V> implements Consumer<V> {
+
+    enum Kind {
+        /**
+         * 值停止变化 quietPeriod 之后才传递最后一个值。
+         */
+        DEBOUNCE,
+
+        /**
+         * 立即传递第一个值，之后每个周期最多传递一次，周期结束时传递期间的最后一个值。
+         */
+        THROTTLE,
+
+        /**
+         * 变化之后在周期结束时传递最新的值，每个周期最多一次。没有变化时不计时。
+         */
+        SAMPLE
+    }
+
+    /**
+     * 一个可以重新开始的一次性计时器。
+     */
+    interface Timer {
+        void restart();
+
+        boolean isRunning();
+    }
+
+    private final Kind kind;
+    private final Consumer<V> downstream;
+    private final Timer timer;
+
+    private boolean hasLatest = false;
+    private V latest;
+
+    RateLimiter(Kind kind, Consumer<V> downstream, Function<Runnable, Timer> timerFactory) {
+        this.kind = Objects.requireNonNull(kind);
+        this.downstream = Objects.requireNonNull(downstream);
+        this.timer = timerFactory.apply(this::onTimer);
+    }
+
+    RateLimiter(Kind kind, Consumer<V> downstream, Duration period) {
+        this(kind, downstream, onFinished -> fxTimer(period, onFinished));
+    }
+
+    static Timer fxTimer(Duration period, Runnable onFinished) {
+        final PauseTransition pause = new PauseTransition(javafx.util.Duration.millis(period.toMillis()));
+        pause.setOnFinished(event -> onFinished.run());
+        return new Timer() {
+            @Override
+            public void restart() {
+                pause.playFromStart();
+            }
+
+            @Override
+            public boolean isRunning() {
+                return pause.getStatus() == Animation.Status.RUNNING;
+            }
+        };
+    }
+
+    @Override
+    public void accept(V value) {
+        switch (kind) {
+            case DEBOUNCE:
+                remember(value);
+                timer.restart();
+                break;
+            case THROTTLE:
+                if (timer.isRunning()) {
+                    remember(value);
+                } else {
+                    downstream.accept(value);
+                    timer.restart();
+                }
+                break;
+            default:
+                remember(value);
+                if (!timer.isRunning()) {
+                    timer.restart();
+                }
+        }
+    }
+
+    private void remember(V value) {
+        latest = value;
+        hasLatest = true;
+    }
+
+    private void onTimer() {
+        if (!hasLatest) {
+            return;
+        }
+        final V value = latest;
+        hasLatest = false;
+        latest = null;
+        downstream.accept(value);
+        if (kind == Kind.THROTTLE) {
+            // 刚传递了一个值，新的周期从现在开始
+            timer.restart();
+        }
+    }
+
+}
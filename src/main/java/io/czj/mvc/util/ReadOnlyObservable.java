@@ -0,0 +1,51 @@
+package io.czj.mvc.util;
+
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * UI 和派生值能看到的 Observable：可以读取值和注册侦听器，但不能设置值。
+ * <p>
+ * 只有 {@link ObservableValue}、{@link ComputedValue} 和基本类型的 Observable 的装箱视图（见 {@link ObservableInt#asObject()}）实现此接口。
+ */
+public interface ReadOnlyObservable<V> {
+
+    V getValue();
+
+    /**
+     * 注册一个新的观察者（又名listener），它会立即收到一次通知
+     *
+     * @param listener 指定值更改时需要执行的操作
+     * @return 用于取消注册的句柄
+     */
+    Subscription onChange(ObservableValue.ValueChangeListener<V> listener);
+
+    /**
+     * 以弱引用注册观察者：只有返回的句柄强引用 listener，句柄不可达之后 listener 会被回收并自动移除。
+     *
+     * @param listener 指定值更改时需要执行的操作
+     * @return 持有 listener 的句柄，也可以用它提前取消注册
+     */
+    Subscription onChangeWeak(ObservableValue.ValueChangeListener<V> listener);
+
+    /**
+     * @return 一个派生值，它的值是 mapper 应用于此值的结果，见 {@link ComputedValue}
+     */
+    default <R> ComputedValue<R> map(Function<? super V, ? extends R> mapper) {
+        Objects.requireNonNull(mapper);
+        return new ComputedValue<>(previous -> mapper.apply(getValue()), this);
+    }
+
+    /**
+     * @return 一个派生值，它保留此值最后一个满足 predicate 的值。在此之前为 null
+     */
+    default ComputedValue<V> filter(Predicate<? super V> predicate) {
+        Objects.requireNonNull(predicate);
+        return new ComputedValue<>(previous -> {
+            V value = getValue();
+            return predicate.test(value) ? value : previous;
+        }, this);
+    }
+
+}
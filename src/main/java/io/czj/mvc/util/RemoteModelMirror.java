@@ -0,0 +1,197 @@
+package io.czj.mvc.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link RemoteProjector} 的另一端：把远程模型的状态复制到一个本地模型中，并把操作发回远程控制器。
+ * <p>
+ * 本地模型通常是同一个模型类的新实例，视图可以像绑定普通模型一样绑定它。字段按名字对应，本地没有的字段被忽略。
+ * 每一帧（快照或者一个刷新周期的增量）在一个 {@link Transaction} 中写入，所以侦听器看到的总是远程模型在某次刷新时的完整状态。
+ * 值在接收线程中写入。
+ */
+public final class RemoteModelMirror implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RemoteModelMirror.class);
+
+    private final Map<String, Object> observables;
+    private final FieldCodecs codecs = new FieldCodecs();
+
+    // 快照中的字段编号 -> 本地的 Observable，本地没有的字段为 null。只在接收线程中访问
+    private Object[] fields = new Object[0];
+
+    private final CountDownLatch snapshotReceived = new CountDownLatch(1);
+    private final LongAdder frames = new LongAdder();
+
+    private Socket socket;
+    private OutputStream out;
+    private Thread reader;
+
+    public RemoteModelMirror(Object model) {
+        this.observables = ModelFields.observables(model);
+    }
+
+    /**
+     * 注册一种值类型的编码，必须与远程的 RemoteProjector 一致。应在 connect 之前调用。
+     *
+     * @return this
+     */
+    public <V> RemoteModelMirror withCodec(Class<V> type, SnapshotCodec<V> codec) {
+        codecs.register(type, codec);
+        return this;
+    }
+
+    /**
+     * 连接本机回环地址上的 RemoteProjector。
+     */
+    public RemoteModelMirror connect(int port) throws IOException {
+        return connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+
+    public synchronized RemoteModelMirror connect(InetSocketAddress address) throws IOException {
+        if (null != socket) {
+            throw new IllegalStateException("already connected");
+        }
+        socket = new Socket();
+        socket.setTcpNoDelay(true);
+        socket.connect(address);
+        out = socket.getOutputStream();
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        reader = new Thread(() -> readLoop(in), "RemoteModelMirror-reader");
+        reader.setDaemon(true);
+        reader.start();
+        return this;
+    }
+
+    /**
+     * 等待第一个快照。
+     *
+     * @return 是否在 timeout 之内收到了快照
+     */
+    public boolean awaitSnapshot(Duration timeout) throws InterruptedException {
+        return snapshotReceived.await(timeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return 到目前为止收到的帧的数量，包括快照
+     */
+    public long getFrameCount() {
+        return frames.sum();
+    }
+
+    /**
+     * 触发远程控制器上用 {@link RemoteProjector#onAction(String, java.util.function.Consumer)} 注册的操作。
+     */
+    public void sendAction(String name) throws IOException {
+        send(name, new byte[0]);
+    }
+
+    /**
+     * 触发一个带参数的远程操作，参数用 codec 编码。
+     */
+    public <A> void sendAction(String name, SnapshotCodec<A> codec, A argument) throws IOException {
+        send(name, codec.encode(argument));
+    }
+
+    private synchronized void send(String name, byte[] argument) throws IOException {
+        Objects.requireNonNull(name);
+        if (null == out) {
+            throw new IllegalStateException("not connected");
+        }
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream frame = DeltaProtocol.begin(bytes, DeltaProtocol.ACTION);
+        DeltaProtocol.writeString(frame, name);
+        DeltaProtocol.writeBytes(frame, argument);
+        final ByteBuffer buffer = DeltaProtocol.finish(bytes);
+        out.write(buffer.array(), 0, buffer.limit());
+        out.flush();
+    }
+
+    private void readLoop(DataInputStream in) {
+        try {
+            while (true) {
+                final ByteBuffer frame = DeltaProtocol.readFrame(in, DeltaProtocol.MAX_MODEL_FRAME);
+                final byte type = frame.get();
+                if (type == DeltaProtocol.SNAPSHOT) {
+                    Transaction.run(() -> applySnapshot(frame));
+                    snapshotReceived.countDown();
+                } else if (type == DeltaProtocol.DELTA) {
+                    Transaction.run(() -> applyDelta(frame));
+                }
+                frames.increment();
+            }
+        } catch (IOException | RuntimeException e) {
+            synchronized (this) {
+                if (null != socket && !socket.isClosed()) {
+                    LOGGER.info("Remote projection ended: {}", e.toString());
+                }
+            }
+        }
+    }
+
+    private void applySnapshot(ByteBuffer frame) {
+        final int count = frame.getShort() & 0xFFFF;
+        fields = new Object[count];
+        for (int i = 0; i < count; i++) {
+            fields[i] = observables.get(DeltaProtocol.getString(frame));
+            apply(fields[i], frame);
+        }
+    }
+
+    private void applyDelta(ByteBuffer frame) {
+        final int count = frame.getShort() & 0xFFFF;
+        for (int i = 0; i < count; i++) {
+            final int index = frame.getShort() & 0xFFFF;
+            apply(index < fields.length ? fields[index] : null, frame);
+        }
+    }
+
+    private void apply(Object observable, ByteBuffer frame) {
+        final String key = DeltaProtocol.getString(frame);
+        final byte[] value = DeltaProtocol.getBytes(frame);
+        if (null != observable && !key.isEmpty()) {
+            codecs.apply(observable, key, value);
+        }
+    }
+
+    /**
+     * 断开连接。本地模型保留最后收到的状态。
+     */
+    @Override
+    public void close() throws IOException {
+        final Thread readerThread;
+        synchronized (this) {
+            if (null == socket) {
+                return;
+            }
+            final Socket closing = socket;
+            socket = null;
+            out = null;
+            readerThread = reader;
+            closing.close();
+        }
+        try {
+            readerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,432 @@
+package io.czj.mvc.util;
+
+import javafx.application.Platform;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * 把模型投影到其他进程的投影仪：模型的变化通过 socket 以紧凑的二进制增量发送给任意多个 {@link RemoteModelMirror}，
+ * 客户端发回的操作转交给控制器。协议见 {@link DeltaProtocol}。
+ * <p>
+ * 与 GUI 不同，模型的变化不会为每个侦听器调用 Platform.runLater：侦听器只把字段标记为“脏”，一个 I/O 线程每隔 flushInterval
+ * 把所有脏字段的最新值作为一帧发给所有客户端。新连接的客户端先收到所有字段的快照，之后收到增量。
+ * 发送缓冲区超过上限的慢客户端会被断开，不会拖慢其他客户端。
+ * <p>
+ * 操作需要先用 {@link #onAction(String, Consumer)} 注册。默认在 FX 线程中执行，因为控制器的操作提交是线程受限的。
+ * <pre>
+ * remote = new RemoteProjector&lt;&gt;(controller, 4711)
+ *         .onAction("increaseCounter", SomeController::increaseCounter);
+ * </pre>
+ * 模型中的 Observable 字段（包括 transient 字段）都会被投影，编码与 {@link ModelSnapshot} 相同。
+ */
+public final class RemoteProjector<M, C extends ControllerBase<M>> implements Projector<M, C>, AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RemoteProjector.class);
+
+    // 一个客户端最多积压多少字节没有发送
+    private static final int MAX_OUTBOX_BYTES = 4 * 1024 * 1024;
+
+    private final ServerSocketChannel server;
+    private final Selector selector;
+    private final Duration flushInterval;
+    private final Executor actionExecutor;
+
+    private final FieldCodecs codecs = new FieldCodecs();
+    private final Map<String, BiConsumer<C, byte[]>> actions = new ConcurrentHashMap<>();
+
+    private C controller;
+    private final List<String> names = new ArrayList<>();
+    private final List<Object> observables = new ArrayList<>();
+    private final List<Subscription> subscriptions = new ArrayList<>();
+    // 自上次刷新以来变化过的字段的编号
+    private final Set<Integer> dirty = ConcurrentHashMap.newKeySet();
+
+    // 只在 I/O 线程中访问
+    private final List<Client> clients = new ArrayList<>();
+    private volatile int clientCount = 0;
+
+    private final LongAdder deltas = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+
+    private final Thread io;
+    private volatile boolean closed = false;
+
+    /**
+     * 在本机回环地址的 port 上等待客户端，每 50 毫秒刷新一次，操作在 FX 线程中执行。
+     *
+     * @param port 0 表示任意空闲端口，见 {@link #getPort()}
+     */
+    public RemoteProjector(C controller, int port) throws IOException {
+        this(controller, new InetSocketAddress(InetAddress.getLoopbackAddress(), port), Duration.ofMillis(50), Platform::runLater);
+    }
+
+    /**
+     * @param flushInterval  多久发送一次增量
+     * @param actionExecutor 在哪里执行客户端发来的操作，应该是提交控制器操作的那个线程
+     */
+    public RemoteProjector(C controller, InetSocketAddress address, Duration flushInterval, Executor actionExecutor) throws IOException {
+        this.flushInterval = Objects.requireNonNull(flushInterval);
+        this.actionExecutor = Objects.requireNonNull(actionExecutor);
+        server = ServerSocketChannel.open();
+        server.bind(address);
+        server.configureBlocking(false);
+        selector = Selector.open();
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        init(controller);
+        io = new Thread(this::ioLoop, "RemoteProjector-io");
+        io.setDaemon(true);
+        io.start();
+    }
+
+    @Override
+    public void initializeParts() {
+    }
+
+    @Override
+    public void setupUiToActionBindings(C controller) {
+        this.controller = controller;
+    }
+
+    @Override
+    public void setupModelToUiBindings(M model) {
+        ModelFields.observables(model).forEach((name, observable) -> {
+            final int index = names.size();
+            names.add(name);
+            observables.add(observable);
+            subscriptions.add(FieldCodecs.track(observable, value -> dirty.add(index)));
+        });
+    }
+
+    /**
+     * 注册一种值类型的编码，见 {@link ModelSnapshot#withCodec(Class, SnapshotCodec)}。客户端需要注册同样的编码。
+     *
+     * @return this
+     */
+    public <V> RemoteProjector<M, C> withCodec(Class<V> type, SnapshotCodec<V> codec) {
+        synchronized (codecs) {
+            codecs.register(type, codec);
+        }
+        return this;
+    }
+
+    /**
+     * 注册一个客户端可以触发的操作，见 {@link RemoteModelMirror#sendAction(String)}。
+     *
+     * @return this
+     */
+    public RemoteProjector<M, C> onAction(String name, Consumer<? super C> action) {
+        Objects.requireNonNull(action);
+        actions.put(name, (controller, argument) -> action.accept(controller));
+        return this;
+    }
+
+    /**
+     * 注册一个带参数的操作，参数用 codec 解码，见 {@link RemoteModelMirror#sendAction(String, SnapshotCodec, Object)}。
+     *
+     * @return this
+     */
+    public <A> RemoteProjector<M, C> onAction(String name, SnapshotCodec<A> codec, BiConsumer<? super C, A> action) {
+        Objects.requireNonNull(codec);
+        Objects.requireNonNull(action);
+        actions.put(name, (controller, argument) -> action.accept(controller, codec.decode(argument)));
+        return this;
+    }
+
+    /**
+     * @return 实际监听的端口
+     */
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    public int getClientCount() {
+        return clientCount;
+    }
+
+    /**
+     * @return 到目前为止发送的增量帧的数量，每个刷新周期最多一帧
+     */
+    public long getDeltaCount() {
+        return deltas.sum();
+    }
+
+    public long getBytesSent() {
+        return bytesSent.sum();
+    }
+
+    /**
+     * 断开所有客户端，停止投影。
+     */
+    @Override
+    public void close() {
+        subscriptions.forEach(Subscription::dispose);
+        subscriptions.clear();
+        closed = true;
+        selector.wakeup();
+        try {
+            io.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void ioLoop() {
+        final long interval = Math.max(1, flushInterval.toMillis());
+        long nextFlush = System.currentTimeMillis() + interval;
+        try {
+            while (!closed) {
+                selector.select(Math.max(1, nextFlush - System.currentTimeMillis()));
+                final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    final SelectionKey key = keys.next();
+                    keys.remove();
+                    handle(key);
+                }
+                if (System.currentTimeMillis() >= nextFlush) {
+                    flush();
+                    nextFlush = System.currentTimeMillis() + interval;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Remote projection stopped", e);
+        } finally {
+            for (Client client : new ArrayList<>(clients)) {
+                drop(client, null);
+            }
+            try {
+                selector.close();
+                server.close();
+            } catch (IOException e) {
+                LOGGER.warn("Could not close server socket", e);
+            }
+        }
+    }
+
+    private void handle(SelectionKey key) throws IOException {
+        if (!key.isValid()) {
+            return;
+        }
+        if (key.isAcceptable()) {
+            accept();
+            return;
+        }
+        final Client client = (Client) key.attachment();
+        try {
+            if (key.isReadable()) {
+                client.read();
+            }
+            if (key.isValid() && key.isWritable()) {
+                client.write();
+            }
+        } catch (IOException e) {
+            drop(client, e);
+        }
+    }
+
+    private void accept() throws IOException {
+        final SocketChannel channel = server.accept();
+        if (null == channel) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        final Client client = new Client(channel);
+        client.key = channel.register(selector, SelectionKey.OP_READ, client);
+        clients.add(client);
+        clientCount = clients.size();
+        try {
+            client.send(snapshot());
+        } catch (IOException e) {
+            drop(client, e);
+        }
+    }
+
+    /**
+     * 把所有脏字段的最新值作为一帧发给所有客户端。
+     */
+    private void flush() throws IOException {
+        if (dirty.isEmpty()) {
+            return;
+        }
+        final List<Integer> changed = new ArrayList<>(dirty);
+        dirty.removeAll(changed);
+        if (clients.isEmpty()) {
+            // 以后的客户端从快照开始
+            return;
+        }
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = DeltaProtocol.begin(bytes, DeltaProtocol.DELTA);
+        out.writeShort(changed.size());
+        for (int index : changed) {
+            out.writeShort(index);
+            writeValue(out, observables.get(index));
+        }
+        final ByteBuffer frame = DeltaProtocol.finish(bytes);
+        deltas.increment();
+        for (Client client : new ArrayList<>(clients)) {
+            try {
+                client.send(frame.duplicate());
+            } catch (IOException e) {
+                drop(client, e);
+            }
+        }
+    }
+
+    private ByteBuffer snapshot() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = DeltaProtocol.begin(bytes, DeltaProtocol.SNAPSHOT);
+        out.writeShort(names.size());
+        for (int i = 0; i < names.size(); i++) {
+            DeltaProtocol.writeString(out, names.get(i));
+            writeValue(out, observables.get(i));
+        }
+        return DeltaProtocol.finish(bytes);
+    }
+
+    private void writeValue(DataOutputStream out, Object observable) throws IOException {
+        final String key;
+        final byte[] value;
+        synchronized (codecs) {
+            key = codecs.keyOf(observable);
+            value = null == key ? new byte[0] : codecs.encode(observable, key);
+        }
+        DeltaProtocol.writeString(out, null == key ? "" : key);
+        DeltaProtocol.writeBytes(out, value);
+    }
+
+    private void onAction(ByteBuffer frame) {
+        final String name = DeltaProtocol.getString(frame);
+        final byte[] argument = DeltaProtocol.getBytes(frame);
+        final BiConsumer<C, byte[]> action = actions.get(name);
+        if (null == action) {
+            LOGGER.warn("Unknown remote action '{}' ignored", name);
+            return;
+        }
+        actionExecutor.execute(() -> action.accept(controller, argument));
+    }
+
+    private void drop(Client client, IOException cause) {
+        if (null != cause) {
+            LOGGER.info("Remote client {} disconnected: {}", client.address(), cause.getMessage());
+        }
+        clients.remove(client);
+        clientCount = clients.size();
+        client.key.cancel();
+        try {
+            client.channel.close();
+        } catch (IOException e) {
+            // 已经断开
+        }
+    }
+
+    /**
+     * 一个连接的客户端，只在 I/O 线程中访问。
+     */
+    private final class Client {
+        final SocketChannel channel;
+        SelectionKey key;
+
+        final Queue<ByteBuffer> outbox = new ArrayDeque<>();
+        int outboxBytes = 0;
+
+        ByteBuffer inbound = ByteBuffer.allocate(256);
+
+        Client(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        void send(ByteBuffer frame) throws IOException {
+            if (outboxBytes + frame.remaining() > MAX_OUTBOX_BYTES) {
+                throw new IOException("client too slow, " + outboxBytes + " bytes pending");
+            }
+            outbox.add(frame);
+            outboxBytes += frame.remaining();
+            write();
+        }
+
+        void write() throws IOException {
+            ByteBuffer head;
+            while (null != (head = outbox.peek())) {
+                final int written = channel.write(head);
+                outboxBytes -= written;
+                bytesSent.add(written);
+                if (head.hasRemaining()) {
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+                outbox.poll();
+            }
+            key.interestOps(SelectionKey.OP_READ);
+        }
+
+        void read() throws IOException {
+            if (channel.read(inbound) < 0) {
+                throw new IOException("closed by peer");
+            }
+            inbound.flip();
+            while (inbound.remaining() >= Integer.BYTES) {
+                final int length = inbound.getInt(inbound.position());
+                if (length < 1 || length > DeltaProtocol.MAX_ACTION_FRAME) {
+                    throw new IOException("invalid frame length " + length);
+                }
+                if (inbound.remaining() < Integer.BYTES + length) {
+                    break;
+                }
+                inbound.position(inbound.position() + Integer.BYTES);
+                final ByteBuffer frame = inbound.slice();
+                frame.limit(length);
+                inbound.position(inbound.position() + length);
+                if (frame.get() == DeltaProtocol.ACTION) {
+                    try {
+                        onAction(frame);
+                    } catch (RuntimeException e) {
+                        throw new IOException("malformed action frame", e);
+                    }
+                }
+            }
+            inbound.compact();
+            if (!inbound.hasRemaining()) {
+                // 一帧比缓冲区大
+                final ByteBuffer larger = ByteBuffer.allocate(Math.min(inbound.capacity() * 2, Integer.BYTES + DeltaProtocol.MAX_ACTION_FRAME));
+                inbound.flip();
+                larger.put(inbound);
+                inbound = larger;
+            }
+        }
+
+        Object address() {
+            try {
+                return channel.getRemoteAddress();
+            } catch (IOException e) {
+                return "?";
+            }
+        }
+    }
+
+}
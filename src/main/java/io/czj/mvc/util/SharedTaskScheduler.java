@@ -0,0 +1,139 @@
+package io.czj.mvc.util;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link TaskScheduler#SHARED} 的实现：整个进程只有一个有界的线程池，每个队列从 {@link #newExecutor(int)} 得到的只是线程池上的一条“通道”。
+ * <p>
+ * 通道本身没有线程，空闲的通道除了对象本身没有任何开销，控制器不可达时随之被回收，忘记 shutdown 也不会泄漏线程。
+ * 通道的 shutdown 只拒绝这条通道上的新任务，不影响线程池。顺序由 {@link ConcurrentTaskQueue} 本身保证；
+ * 队列每连续执行 {@link #drainQuantum()} 个任务就把线程让给线程池中排队的其他通道，因此繁忙的控制器之间是公平的。
+ * <p>
+ * 线程数默认是处理器的数量（至少 2），可以通过系统属性 'io.czj.mvc.sharedThreads' 设置。空闲的线程在 10 秒后结束。
+ * 注意长时间阻塞的操作（例如阻塞 I/O）会占用一个共用的线程，所有线程都被阻塞时其他控制器的操作也要等待。
+ * pauseExecution 例外，它在暂停期间释放线程。
+ */
+final class SharedTaskScheduler implements TaskScheduler {
+
+    private static final int DRAIN_QUANTUM = 16;
+
+    private final TaskScheduler clock;
+    private final ThreadPoolExecutor pool;
+
+    SharedTaskScheduler(TaskScheduler clock) {
+        this(clock, Integer.getInteger("io.czj.mvc.sharedThreads", Math.max(2, Runtime.getRuntime().availableProcessors())));
+    }
+
+    SharedTaskScheduler(TaskScheduler clock, int threads) {
+        this.clock = clock;
+        final AtomicInteger count = new AtomicInteger();
+        pool = new ThreadPoolExecutor(threads, threads, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "ControllerBase-shared-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        pool.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @param threads 被忽略，所有通道共用同一个线程池
+     */
+    @Override
+    public ExecutorService newExecutor(int threads) {
+        return new Lane();
+    }
+
+    @Override
+    public boolean isShared() {
+        return true;
+    }
+
+    @Override
+    public int drainQuantum() {
+        return DRAIN_QUANTUM;
+    }
+
+    @Override
+    public long nanoTime() {
+        return clock.nanoTime();
+    }
+
+    @Override
+    public Cancellable schedule(Runnable action, Duration delay) {
+        return clock.schedule(action, delay);
+    }
+
+    @Override
+    public void sleep(Duration duration) throws InterruptedException {
+        clock.sleep(duration);
+    }
+
+    @Override
+    public boolean await(CountDownLatch latch, Duration timeout) throws InterruptedException {
+        return clock.await(latch, timeout);
+    }
+
+    /**
+     * @return 线程池中当前的线程数量
+     */
+    int getPoolSize() {
+        return pool.getPoolSize();
+    }
+
+    /**
+     * 线程池上的一条通道。
+     */
+    private final class Lane extends AbstractExecutorService {
+
+        private volatile boolean shutdown = false;
+
+        @Override
+        public void execute(Runnable command) {
+            if (shutdown) {
+                throw new RejectedExecutionException("lane has been shut down");
+            }
+            pool.execute(Objects.requireNonNull(command));
+        }
+
+        @Override
+        public void shutdown() {
+            shutdown = true;
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            shutdown = true;
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return shutdown;
+        }
+
+        /**
+         * 已经提交的任务不被跟踪，所以和 isShutdown 相同。
+         */
+        @Override
+        public boolean isTerminated() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return true;
+        }
+    }
+
+}
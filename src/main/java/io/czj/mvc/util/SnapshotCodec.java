@@ -0,0 +1,75 @@
+package io.czj.mvc.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * {@link ModelSnapshot} 中一种值类型的二进制编码。
+ */
+public interface SnapshotCodec<V> {
+
+    byte[] encode(V value);
+
+    V decode(byte[] bytes);
+
+    SnapshotCodec<String> STRING = new SnapshotCodec<>() {
+        @Override
+        public byte[] encode(String value) {
+            return value.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String decode(byte[] bytes) {
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    };
+
+    SnapshotCodec<Integer> INTEGER = new SnapshotCodec<>() {
+        @Override
+        public byte[] encode(Integer value) {
+            return ByteBuffer.allocate(Integer.BYTES).putInt(value).array();
+        }
+
+        @Override
+        public Integer decode(byte[] bytes) {
+            return ByteBuffer.wrap(bytes).getInt();
+        }
+    };
+
+    SnapshotCodec<Long> LONG = new SnapshotCodec<>() {
+        @Override
+        public byte[] encode(Long value) {
+            return ByteBuffer.allocate(Long.BYTES).putLong(value).array();
+        }
+
+        @Override
+        public Long decode(byte[] bytes) {
+            return ByteBuffer.wrap(bytes).getLong();
+        }
+    };
+
+    SnapshotCodec<Double> DOUBLE = new SnapshotCodec<>() {
+        @Override
+        public byte[] encode(Double value) {
+            return ByteBuffer.allocate(Double.BYTES).putDouble(value).array();
+        }
+
+        @Override
+        public Double decode(byte[] bytes) {
+            return ByteBuffer.wrap(bytes).getDouble();
+        }
+    };
+
+    SnapshotCodec<Boolean> BOOLEAN = new SnapshotCodec<>() {
+        @Override
+        public byte[] encode(Boolean value) {
+            return new byte[]{(byte) (value ? 1 : 0)};
+        }
+
+        @Override
+        public Boolean decode(byte[] bytes) {
+            return bytes[0] != 0;
+        }
+    };
+
+}
@@ -0,0 +1,17 @@
+package io.czj.mvc.util;
+
+/**
+ * 注册侦听器时返回的句柄，用于取消注册。
+ * <p>
+ * 视图被丢弃时应该取消它的所有注册，否则模型会一直引用侦听器以及它们捕获的整个视图。
+ * 也可以使用弱注册（例如 {@link ObservableValue#onChangeWeak}），此时侦听器随句柄一起被回收。
+ */
+@FunctionalInterface
+public interface Subscription {
+
+    /**
+     * 取消注册。重复调用没有影响。
+     */
+    void dispose();
+
+}
@@ -0,0 +1,82 @@
+package io.czj.mvc.util;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * {@link ConcurrentTaskQueue} 和 {@link ControllerBase} 使用的线程和时钟：执行任务的 executor、测量用的时钟、maxToDoTime 的定时器、
+ * pauseExecution 的等待和 awaitCompletion 的等待。
+ * <p>
+ * 控制器默认使用 {@link #SYSTEM}，为每个队列创建自己的线程。{@link #SHARED} 让所有控制器共用一个线程池。测试可以使用 {@link VirtualTimeScheduler}，所有任务在测试线程中按确定的顺序执行，时间瞬间前进。
+ */
+public interface TaskScheduler {
+
+    /**
+     * 真实的线程和 System.nanoTime。
+     */
+    TaskScheduler SYSTEM = new SystemTaskScheduler();
+
+    /**
+     * 整个进程共用的有界线程池，每个队列只是其上的一条通道，见 {@link SharedTaskScheduler}。时钟和定时器与 SYSTEM 相同。
+     */
+    TaskScheduler SHARED = new SharedTaskScheduler(SYSTEM);
+
+    /**
+     * @return 新的 executor，归调用者所有
+     */
+    ExecutorService newExecutor(int threads);
+
+    /**
+     * @return newExecutor 返回的 executor 是否共用线程。共用时队列使用 {@link ConcurrentTaskQueue.Mode#DRAIN} 模式，
+     * 因为 HANDOFF 模式会让 onDone 在等待 todo 时占用一个线程
+     */
+    default boolean isShared() {
+        return false;
+    }
+
+    /**
+     * @return 任务是否在真实的线程中执行。为 false 时（例如 {@link VirtualTimeScheduler}）所有任务在调用线程中依次执行，
+     * 一个任务不能阻塞等待同一个 scheduler 中的其他任务，因此分区操作的各个分区在批次中依次执行
+     */
+    default boolean isThreaded() {
+        return true;
+    }
+
+    /**
+     * @return DRAIN 模式下一个队列最多连续执行多少个任务，然后把线程让给其他队列
+     */
+    default int drainQuantum() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * @return 当前时间，只用于测量时间间隔，和 System.nanoTime 一样
+     */
+    long nanoTime();
+
+    /**
+     * 在 delay 之后执行 action。
+     */
+    Cancellable schedule(Runnable action, Duration delay);
+
+    /**
+     * 让当前线程等待 duration。
+     */
+    void sleep(Duration duration) throws InterruptedException;
+
+    /**
+     * 等待 latch 归零，最多等待 timeout。
+     *
+     * @return latch 是否已经归零
+     */
+    boolean await(CountDownLatch latch, Duration timeout) throws InterruptedException;
+
+    /**
+     * 一个可以取消的定时任务。
+     */
+    interface Cancellable {
+        void cancel();
+    }
+
+}
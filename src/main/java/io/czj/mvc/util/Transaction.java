@@ -0,0 +1,112 @@
+package io.czj.mvc.util;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * 对模型的一组写操作：先写入所有值，再统一通知侦听器。
+ * <p>
+ * 事务绑定在执行它的线程上。事务中的 setValue 只修改值并记录下来，事务结束时每个发生变化的 Observable 按第一次修改的顺序通知一次，
+ * 旧值是事务开始前的值。在事务中改了又改回原值的 Observable 不会通知。因此侦听器在通知时看到的都是事务结束后的完整状态。
+ * <p>
+ * 依赖多个 Observable 的侦听器可以用 {@link #batched(Runnable)} 包装，这样它在一个事务中只执行一次。
+ */
+public final class Transaction {
+
+    private static final ThreadLocal<Transaction> CURRENT = new ThreadLocal<>();
+
+    // Observable -> 通知它的侦听器的操作，按第一次修改的顺序
+    private final Map<Object, Runnable> changes = new IdentityHashMap<>();
+    private final List<Runnable> publishers = new ArrayList<>();
+    // 通知过程中被触发的 batched 侦听器，在所有 Observable 都通知完之后执行
+    private final Set<Runnable> batchedListeners = new LinkedHashSet<>();
+
+    private boolean publishing = false;
+
+    private Transaction() {
+    }
+
+    /**
+     * 在一个事务中执行 writes。如果当前线程已经在事务中，则 writes 属于外层事务。
+     * <p>
+     * 即使 writes 抛出异常，已经写入的值也会通知侦听器。
+     */
+    public static void run(Runnable writes) {
+        Objects.requireNonNull(writes);
+        if (null != current()) {
+            writes.run();
+            return;
+        }
+        final Transaction transaction = new Transaction();
+        CURRENT.set(transaction);
+        try {
+            writes.run();
+        } finally {
+            transaction.publish();
+        }
+    }
+
+    /**
+     * 包装一个依赖多个 Observable 的侦听器：在事务的通知过程中无论被触发多少次，它只在所有 Observable 都通知完之后执行一次。
+     * 在事务之外它会立即执行。
+     * <p>
+     * 需要把同一个返回值注册到所有相关的 Observable 上，例如
+     * <pre>
+     * Runnable render = Transaction.batched(() -&gt; label.setText(model.x.getValue() + ", " + model.y.getValue()));
+     * model.x.onChange((oldValue, newValue) -&gt; render.run());
+     * model.y.onChange((oldValue, newValue) -&gt; render.run());
+     * </pre>
+     */
+    public static Runnable batched(Runnable listener) {
+        Objects.requireNonNull(listener);
+        return new Runnable() {
+            @Override
+            public void run() {
+                final Transaction transaction = CURRENT.get();
+                if (null != transaction && transaction.publishing) {
+                    transaction.batchedListeners.add(listener);
+                } else {
+                    listener.run();
+                }
+            }
+        };
+    }
+
+    /**
+     * @return 当前线程中正在写入的事务，没有则为 null。通知阶段的事务不再接受写入
+     */
+    static Transaction current() {
+        final Transaction transaction = CURRENT.get();
+        return null == transaction || transaction.publishing ? null : transaction;
+    }
+
+    /**
+     * 记录 observable 的一次修改。只有第一次修改的 publisher 会被保留，它持有事务开始前的旧值。
+     */
+    void changed(Object observable, Runnable publisher) {
+        if (null == changes.putIfAbsent(observable, publisher)) {
+            publishers.add(publisher);
+        }
+    }
+
+    private void publish() {
+        publishing = true;
+        try {
+            for (Runnable publisher : publishers) {
+                publisher.run();
+            }
+        } finally {
+            CURRENT.remove();
+        }
+        // 事务已经结束，这些侦听器引起的修改会立即通知
+        for (Runnable listener : batchedListeners) {
+            listener.run();
+        }
+    }
+
+}
@@ -4,14 +4,35 @@ import io.czj.mvc.util.ControllerBase;
 import io.czj.mvc.util.ObservableValue;
 import io.czj.mvc.util.Projector;
 import javafx.application.Platform;
+import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.LongProperty;
 import javafx.beans.property.Property;
-import javafx.scene.text.Font;
+import javafx.beans.value.ChangeListener;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.collections.ObservableMap;
+import javafx.scene.Node;
+import javafx.scene.control.IndexedCell;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.control.skin.VirtualFlow;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.DoubleFunction;
 import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.LongFunction;
+import java.util.function.UnaryOperator;
 
 /**
  * 将此接口用于所有 GUI 部分以确保实现的一致性。它提供了使 MVC 运行的基本功能。
@@ -33,36 +54,126 @@ public interface ViewMixin<M, C extends ControllerBase<M>> extends Projector<M,
     void layoutParts();
 
     /**
-     * 只是加载样式表文件的便捷方法
+     * 只是加载样式表文件的便捷方法。URL 只解析一次，见 {@link ViewResources}
      *
      * @param stylesheetFiles name of the stylesheet file
      */
     default void addStylesheetFiles(String... stylesheetFiles) {
         for (String file : stylesheetFiles) {
-            String stylesheet = getClass().getResource(file).toExternalForm();
-            getStylesheets().add(stylesheet);
+            getStylesheets().add(ViewResources.stylesheet(getClass(), file));
         }
     }
 
     /**
-     * 只是一种方便的方法来加载额外的字体
+     * 只是一种方便的方法来加载额外的字体。每个字体在整个进程中只加载一次，见 {@link ViewResources}
      */
     default void loadFonts(String... fonts) {
         for (String f : fonts) {
-            Font.loadFont(getClass().getResourceAsStream(f), 0);
+            ViewResources.font(getClass(), f);
         }
     }
 
     List<String> getStylesheets();
 
+    /**
+     * 模型的变化如何传递到 FX 线程。覆盖此方法以使用 {@link DispatchMode#PULSE}。
+     */
+    default DispatchMode getDispatchMode() {
+        return DispatchMode.IMMEDIATE;
+    }
+
     /**
      * 注册观察者的起点。
      *
-     * @param observableValue 需要观察的值
+     * @param observableValue 需要观察的值，也可以是派生值 {@link ComputedValue}
      * @return 一个 'Converter' 指定一个函数将 'ObservableValue' 的类型转换为 'Property' 的类型
      */
-    default <V> Converter<V> onChangeOf(ObservableValue<V> observableValue) {
-        return new Converter<>(observableValue);
+    default <V> Converter<V> onChangeOf(ReadOnlyObservable<V> observableValue) {
+        return new Converter<>(observableValue, getDispatchMode(), this);
+    }
+
+    /**
+     * 返回 true 时本视图对模型的绑定是弱注册的（见 {@link ReadOnlyObservable#onChangeWeak}）：模型只弱引用绑定，
+     * 绑定的句柄由视图自己持有（见 {@link #retain(Subscription)}）。被替换掉的视图不可达之后，它的绑定会随视图一起被回收并自动从模型中移除。
+     */
+    default boolean isWeakBinding() {
+        return false;
+    }
+
+    /**
+     * 弱注册时保存本视图的一个绑定句柄，让绑定和视图一样长寿，也让 {@link #disposeBindings()} 可以提前取消它。
+     * 强注册的绑定由模型持有，不经过这里。
+     * <p>
+     * 默认实现把句柄保存在节点的 properties 中，不是 {@link Node} 的视图使用弱注册时需要覆盖此方法和 {@link #disposeBindings()}。
+     */
+    @SuppressWarnings("unchecked")
+    default void retain(Subscription subscription) {
+        if (!(this instanceof Node)) {
+            throw new IllegalStateException(getClass().getName() + " is not a Node and must override retain() to use weak bindings");
+        }
+        ((List<Subscription>) ((Node) this).getProperties().computeIfAbsent(Subscription.class, key -> new ArrayList<Subscription>())).add(subscription);
+    }
+
+    /**
+     * 取消本视图通过 onChangeOf 弱注册的所有绑定。
+     */
+    @SuppressWarnings("unchecked")
+    default void disposeBindings() {
+        if (!(this instanceof Node)) {
+            return;
+        }
+        List<Subscription> subscriptions = (List<Subscription>) ((Node) this).getProperties().remove(Subscription.class);
+        if (null != subscriptions) {
+            subscriptions.forEach(Subscription::dispose);
+        }
+    }
+
+    /**
+     * 所有 onChangeOf 绑定的注册都经过这里：按照视图的设置强注册或弱注册 listener，弱注册时让视图持有句柄。
+     *
+     * @param view   绑定所属的视图，为 null 时总是强注册
+     * @param strong Observable 的 onChange
+     * @param weak   Observable 的 onChangeWeak
+     */
+    private static <L> Subscription bind(ViewMixin<?, ?> view, L listener, Function<L, Subscription> strong, Function<L, Subscription> weak) {
+        if (null == view || !view.isWeakBinding()) {
+            return strong.apply(listener);
+        }
+        Subscription subscription = weak.apply(listener);
+        view.retain(subscription);
+        return subscription;
+    }
+
+    enum DispatchMode {
+        /**
+         * 每个变化都单独调用一次 Platform.runLater。
+         */
+        IMMEDIATE,
+
+        /**
+         * 变化只把绑定标记为“脏”，由 {@link PulseDispatcher} 在一次 runLater 中执行每个绑定的最新值。中间值会被跳过。
+         */
+        PULSE
+    }
+
+    /**
+     * 绑定的转换函数在哪个线程中执行，见 {@link Updater#convertedOn(ConversionThread)}。
+     */
+    enum ConversionThread {
+        /**
+         * 在通知侦听器的线程中，通常是控制器的线程。这是默认值。
+         */
+        CONTROLLER,
+
+        /**
+         * 在 FX 线程中，紧接着更新 GUI-Property。在 PULSE 模式下被跳过的值不会被转换。
+         */
+        FX,
+
+        /**
+         * 在 {@link TaskScheduler#SHARED} 的线程池中，适合图片解码等很慢的转换。已经有更新的值时，较早的值不再转换。
+         */
+        WORKER
     }
 
     /**
@@ -70,10 +181,25 @@ public interface ViewMixin<M, C extends ControllerBase<M>> extends Projector<M,
      */
     class Converter<V> {
 
-        private ObservableValue<V> observableValue;
+        private ReadOnlyObservable<V> observableValue;
+
+        private DispatchMode dispatchMode;
+
+        // 注册绑定的视图，为 null 时绑定是强注册的，也不由视图持有
+        private ViewMixin<?, ?> view;
+
+        public Converter(ReadOnlyObservable<V> observableValue) {
+            this(observableValue, DispatchMode.IMMEDIATE);
+        }
+
+        public Converter(ReadOnlyObservable<V> observableValue, DispatchMode dispatchMode) {
+            this(observableValue, dispatchMode, null);
+        }
 
-        public Converter(ObservableValue<V> observableValue) {
+        public Converter(ReadOnlyObservable<V> observableValue, DispatchMode dispatchMode, ViewMixin<?, ?> view) {
             this.observableValue = observableValue;
+            this.dispatchMode = dispatchMode;
+            this.view = view;
         }
 
         /**
@@ -83,53 +209,698 @@ public interface ViewMixin<M, C extends ControllerBase<M>> extends Projector<M,
          * @return 一个更新程序，用于指定如果ObservableValue发生更改则需要更新的GUI-Property
          */
         public <R> Updater<V, R> convertedBy(Function<V, R> converter) {
-            return new Updater<>(observableValue, converter);
+            return new Updater<>(observableValue, converter, dispatchMode, view);
         }
 
         /**
          * 注册一个没有任何类型转换的观察者，这将使属性值和 observableValue 保持同步。
          *
          * @param property 当 observableValue 改变时将更新的 GUI-Property
+         * @return 用于取消绑定的句柄
          */
-        public void update(Property<? super V> property) {
-            execute((oldValue, newValue) -> property.setValue(newValue));
+        public Subscription update(Property<? super V> property) {
+            if (dispatchMode == DispatchMode.PULSE) {
+                return register(observableValue, view, (oldValue, newValue) -> PulseDispatcher.fx().dispatch(property, () -> property.setValue(newValue)));
+            }
+            return execute((oldValue, newValue) -> property.setValue(newValue));
         }
 
         /**
          * 注册一个观察者。
          *
          * @param listener 当 observableValue 改变时需要在 GUI 上做的任何事情
+         * @return 用于取消注册的句柄
          */
-        public void execute(ObservableValue.ValueChangeListener<V> listener) {
-            observableValue.onChange((oldValue, newValue) -> Platform.runLater(() -> listener.update(oldValue, newValue)));
+        public Subscription execute(ObservableValue.ValueChangeListener<V> listener) {
+            if (dispatchMode == DispatchMode.PULSE) {
+                return register(observableValue, view, new PendingChange<>(listener));
+            }
+            return register(observableValue, view, (oldValue, newValue) -> Platform.runLater(() -> listener.update(oldValue, newValue)));
+        }
+
+        /**
+         * 见 {@link ViewMixin#bind}。
+         */
+        static <V> Subscription register(ReadOnlyObservable<V> observableValue, ViewMixin<?, ?> view, ObservableValue.ValueChangeListener<V> listener) {
+            return bind(view, listener, observableValue::onChange, observableValue::onChangeWeak);
+        }
+    }
+
+    /**
+     * PULSE 模式下 'execute' 的绑定：合并的变化从第一个被跳过的旧值到最新的新值。
+     */
+    class PendingChange<V> implements ObservableValue.ValueChangeListener<V>, Runnable {
+
+        private final ObservableValue.ValueChangeListener<V> listener;
+
+        private boolean dirty = false;
+        private V oldValue;
+        private V newValue;
+
+        PendingChange(ObservableValue.ValueChangeListener<V> listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void update(V oldValue, V newValue) {
+            synchronized (this) {
+                if (!dirty) {
+                    this.oldValue = oldValue;
+                    dirty = true;
+                }
+                this.newValue = newValue;
+            }
+            PulseDispatcher.fx().dispatch(this, this);
+        }
+
+        @Override
+        public void run() {
+            final V oldValue;
+            final V newValue;
+            synchronized (this) {
+                oldValue = this.oldValue;
+                newValue = this.newValue;
+                dirty = false;
+            }
+            listener.update(oldValue, newValue);
         }
     }
 
     class Updater<V, P> {
 
-        private ObservableValue<V> observableValue;
+        private ReadOnlyObservable<V> observableValue;
 
         // 将ObservableValue类型转换为Property类型的函数
         private Function<V, P> converter;
 
-        public Updater(ObservableValue<V> observableValue, Function<V, P> converter) {
+        private DispatchMode dispatchMode;
+
+        private ViewMixin<?, ?> view;
+
+        private ConversionThread conversionThread = ConversionThread.CONTROLLER;
+
+        // 没有调用 cached 时为 null
+        private MemoizingConverter<V, P> cache;
+
+        public Updater(ReadOnlyObservable<V> observableValue, Function<V, P> converter) {
+            this(observableValue, converter, DispatchMode.IMMEDIATE);
+        }
+
+        public Updater(ReadOnlyObservable<V> observableValue, Function<V, P> converter, DispatchMode dispatchMode) {
+            this(observableValue, converter, dispatchMode, null);
+        }
+
+        public Updater(ReadOnlyObservable<V> observableValue, Function<V, P> converter, DispatchMode dispatchMode, ViewMixin<?, ?> view) {
             this.observableValue = observableValue;
             this.converter = converter;
+            this.dispatchMode = dispatchMode;
+            this.view = view;
         }
 
         /**
          * 注册一个观察者，它将通过应用指定的转换器使 observableValue 和 GUI-Property 保持同步。
          *
          * @param property 当 observableValue 改变时将更新的 GUI-Property
+         * @return 用于取消绑定的句柄
+         */
+        public Subscription update(Property<? super P> property) {
+            ConversionStage<V, P> stage = new ConversionStage<>(null == cache ? converter : cache, conversionThread, dispatchMode, property);
+            return Converter.register(observableValue, view, (oldValue, newValue) -> stage.accept(newValue));
+        }
+
+        /**
+         * 可选：记住最近 maxEntries 个值的转换结果（LRU），值反复出现时不再转换。
+         *
+         * @return this
+         */
+        public Updater<V, P> cached(int maxEntries) {
+            return cached(maxEntries, MemoizingConverter.Eviction.LRU);
+        }
+
+        public Updater<V, P> cached(int maxEntries, MemoizingConverter.Eviction eviction) {
+            cache = new MemoizingConverter<>(converter, maxEntries, eviction);
+            return this;
+        }
+
+        /**
+         * 可选：在另一个线程中执行转换，默认是 {@link ConversionThread#CONTROLLER}。
+         *
+         * @return this
+         */
+        public Updater<V, P> convertedOn(ConversionThread conversionThread) {
+            this.conversionThread = Objects.requireNonNull(conversionThread);
+            return this;
+        }
+
+        /**
+         * @return {@link #cached(int)} 创建的缓存，可以查看命中率；没有缓存时为 null
          */
-        public void update(Property<? super P> property) {
-            observableValue.onChange((oldValue, newValue) -> {
-                P convertedValue = converter.apply(newValue);
-                Platform.runLater(() -> property.setValue(convertedValue));
+        public MemoizingConverter<V, P> getCache() {
+            return cache;
+        }
+    }
+
+    /**
+     * 注册基本类型观察者的起点。值在转换之前不会被装箱。
+     */
+    default IntConverter onChangeOf(ObservableInt observableValue) {
+        return new IntConverter(observableValue, getDispatchMode(), this);
+    }
+
+    default LongConverter onChangeOf(ObservableLong observableValue) {
+        return new LongConverter(observableValue, getDispatchMode(), this);
+    }
+
+    default DoubleConverter onChangeOf(ObservableDouble observableValue) {
+        return new DoubleConverter(observableValue, getDispatchMode(), this);
+    }
+
+    default BooleanConverter onChangeOf(ObservableBoolean observableValue) {
+        return new BooleanConverter(observableValue, getDispatchMode(), this);
+    }
+
+    class IntConverter {
+
+        private final ObservableInt observableValue;
+        private final DispatchMode dispatchMode;
+        private final ViewMixin<?, ?> view;
+
+        public IntConverter(ObservableInt observableValue, DispatchMode dispatchMode) {
+            this(observableValue, dispatchMode, null);
+        }
+
+        public IntConverter(ObservableInt observableValue, DispatchMode dispatchMode, ViewMixin<?, ?> view) {
+            this.observableValue = observableValue;
+            this.dispatchMode = dispatchMode;
+            this.view = view;
+        }
+
+        private Subscription register(ObservableInt.IntChangeListener listener) {
+            return bind(view, listener, observableValue::onChange, observableValue::onChangeWeak);
+        }
+
+        public <R> PrimitiveUpdater<R> convertedBy(IntFunction<R> converter) {
+            return new PrimitiveUpdater<>(sink -> register((oldValue, newValue) -> sink.accept(converter.apply(newValue))),
+                    sink -> register((oldValue, newValue) -> sink.accept(newValue)), value -> converter.apply((Integer) value), dispatchMode);
+        }
+
+        public Subscription update(IntegerProperty property) {
+            return execute((oldValue, newValue) -> property.set(newValue));
+        }
+
+        public Subscription execute(ObservableInt.IntChangeListener listener) {
+            if (dispatchMode == DispatchMode.PULSE) {
+                PrimitivePendingChange pending = new PrimitivePendingChange((oldBits, newBits) -> listener.update((int) oldBits, (int) newBits));
+                return register(pending::update);
+            }
+            return register((oldValue, newValue) -> Platform.runLater(() -> listener.update(oldValue, newValue)));
+        }
+    }
+
+    class LongConverter {
+
+        private final ObservableLong observableValue;
+        private final DispatchMode dispatchMode;
+        private final ViewMixin<?, ?> view;
+
+        public LongConverter(ObservableLong observableValue, DispatchMode dispatchMode) {
+            this(observableValue, dispatchMode, null);
+        }
+
+        public LongConverter(ObservableLong observableValue, DispatchMode dispatchMode, ViewMixin<?, ?> view) {
+            this.observableValue = observableValue;
+            this.dispatchMode = dispatchMode;
+            this.view = view;
+        }
+
+        private Subscription register(ObservableLong.LongChangeListener listener) {
+            return bind(view, listener, observableValue::onChange, observableValue::onChangeWeak);
+        }
+
+        public <R> PrimitiveUpdater<R> convertedBy(LongFunction<R> converter) {
+            return new PrimitiveUpdater<>(sink -> register((oldValue, newValue) -> sink.accept(converter.apply(newValue))),
+                    sink -> register((oldValue, newValue) -> sink.accept(newValue)), value -> converter.apply((Long) value), dispatchMode);
+        }
+
+        public Subscription update(LongProperty property) {
+            return execute((oldValue, newValue) -> property.set(newValue));
+        }
+
+        public Subscription execute(ObservableLong.LongChangeListener listener) {
+            if (dispatchMode == DispatchMode.PULSE) {
+                PrimitivePendingChange pending = new PrimitivePendingChange(listener::update);
+                return register(pending::update);
+            }
+            return register((oldValue, newValue) -> Platform.runLater(() -> listener.update(oldValue, newValue)));
+        }
+    }
+
+    class DoubleConverter {
+
+        private final ObservableDouble observableValue;
+        private final DispatchMode dispatchMode;
+        private final ViewMixin<?, ?> view;
+
+        public DoubleConverter(ObservableDouble observableValue, DispatchMode dispatchMode) {
+            this(observableValue, dispatchMode, null);
+        }
+
+        public DoubleConverter(ObservableDouble observableValue, DispatchMode dispatchMode, ViewMixin<?, ?> view) {
+            this.observableValue = observableValue;
+            this.dispatchMode = dispatchMode;
+            this.view = view;
+        }
+
+        private Subscription register(ObservableDouble.DoubleChangeListener listener) {
+            return bind(view, listener, observableValue::onChange, observableValue::onChangeWeak);
+        }
+
+        public <R> PrimitiveUpdater<R> convertedBy(DoubleFunction<R> converter) {
+            return new PrimitiveUpdater<>(sink -> register((oldValue, newValue) -> sink.accept(converter.apply(newValue))),
+                    sink -> register((oldValue, newValue) -> sink.accept(newValue)), value -> converter.apply((Double) value), dispatchMode);
+        }
+
+        public Subscription update(DoubleProperty property) {
+            return execute((oldValue, newValue) -> property.set(newValue));
+        }
+
+        public Subscription execute(ObservableDouble.DoubleChangeListener listener) {
+            if (dispatchMode == DispatchMode.PULSE) {
+                PrimitivePendingChange pending = new PrimitivePendingChange((oldBits, newBits) -> listener.update(Double.longBitsToDouble(oldBits), Double.longBitsToDouble(newBits)));
+                return register((oldValue, newValue) -> pending.update(Double.doubleToRawLongBits(oldValue), Double.doubleToRawLongBits(newValue)));
+            }
+            return register((oldValue, newValue) -> Platform.runLater(() -> listener.update(oldValue, newValue)));
+        }
+    }
+
+    class BooleanConverter {
+
+        private final ObservableBoolean observableValue;
+        private final DispatchMode dispatchMode;
+        private final ViewMixin<?, ?> view;
+
+        public BooleanConverter(ObservableBoolean observableValue, DispatchMode dispatchMode) {
+            this(observableValue, dispatchMode, null);
+        }
+
+        public BooleanConverter(ObservableBoolean observableValue, DispatchMode dispatchMode, ViewMixin<?, ?> view) {
+            this.observableValue = observableValue;
+            this.dispatchMode = dispatchMode;
+            this.view = view;
+        }
+
+        private Subscription register(ObservableBoolean.BooleanChangeListener listener) {
+            return bind(view, listener, observableValue::onChange, observableValue::onChangeWeak);
+        }
+
+        /**
+         * Boolean.valueOf 返回缓存的实例，因此这里的装箱不会分配内存。
+         */
+        public <R> PrimitiveUpdater<R> convertedBy(Function<Boolean, R> converter) {
+            return new PrimitiveUpdater<>(sink -> register((oldValue, newValue) -> sink.accept(converter.apply(newValue))),
+                    sink -> register((oldValue, newValue) -> sink.accept(newValue)), value -> converter.apply((Boolean) value), dispatchMode);
+        }
+
+        public Subscription update(BooleanProperty property) {
+            return execute((oldValue, newValue) -> property.set(newValue));
+        }
+
+        public Subscription execute(ObservableBoolean.BooleanChangeListener listener) {
+            if (dispatchMode == DispatchMode.PULSE) {
+                PrimitivePendingChange pending = new PrimitivePendingChange((oldBits, newBits) -> listener.update(oldBits != 0, newBits != 0));
+                return register((oldValue, newValue) -> pending.update(oldValue ? 1 : 0, newValue ? 1 : 0));
+            }
+            return register((oldValue, newValue) -> Platform.runLater(() -> listener.update(oldValue, newValue)));
+        }
+    }
+
+    /**
+     * 基本类型观察者的第二步：转换后的值与 'Updater' 一样更新 GUI-Property。
+     */
+    class PrimitiveUpdater<P> {
+
+        // 用给定的接收者注册到基本类型的 Observable 上，接收者得到转换后的值
+        private final Function<Consumer<P>, Subscription> registration;
+        // 同上，但接收者得到装箱的原始值，由 boxedConverter 转换。只在缓存或者在其他线程中转换时使用
+        private final Function<Consumer<Object>, Subscription> boxedRegistration;
+        private final Function<Object, P> boxedConverter;
+        private final DispatchMode dispatchMode;
+
+        private ConversionThread conversionThread = ConversionThread.CONTROLLER;
+        private MemoizingConverter<Object, P> cache;
+
+        PrimitiveUpdater(Function<Consumer<P>, Subscription> registration, Function<Consumer<Object>, Subscription> boxedRegistration,
+                         Function<Object, P> boxedConverter, DispatchMode dispatchMode) {
+            this.registration = registration;
+            this.boxedRegistration = boxedRegistration;
+            this.boxedConverter = boxedConverter;
+            this.dispatchMode = dispatchMode;
+        }
+
+        /**
+         * 与 {@link Updater#cached(int)} 相同。缓存的键是装箱的值。
+         *
+         * @return this
+         */
+        public PrimitiveUpdater<P> cached(int maxEntries) {
+            return cached(maxEntries, MemoizingConverter.Eviction.LRU);
+        }
+
+        public PrimitiveUpdater<P> cached(int maxEntries, MemoizingConverter.Eviction eviction) {
+            cache = new MemoizingConverter<>(boxedConverter, maxEntries, eviction);
+            return this;
+        }
+
+        /**
+         * 与 {@link Updater#convertedOn(ConversionThread)} 相同。
+         *
+         * @return this
+         */
+        public PrimitiveUpdater<P> convertedOn(ConversionThread conversionThread) {
+            this.conversionThread = Objects.requireNonNull(conversionThread);
+            return this;
+        }
+
+        public MemoizingConverter<?, P> getCache() {
+            return cache;
+        }
+
+        public Subscription update(Property<? super P> property) {
+            if (null != cache || conversionThread != ConversionThread.CONTROLLER) {
+                ConversionStage<Object, P> stage = new ConversionStage<>(null == cache ? boxedConverter : cache, conversionThread, dispatchMode, property);
+                return boxedRegistration.apply(stage::accept);
+            }
+            return registration.apply(convertedValue -> {
+                if (dispatchMode == DispatchMode.PULSE) {
+                    PulseDispatcher.fx().dispatch(property, () -> property.setValue(convertedValue));
+                } else {
+                    Platform.runLater(() -> property.setValue(convertedValue));
+                }
             });
         }
     }
 
+    /**
+     * 基本类型在 PULSE 模式下的 'PendingChange'。所有基本类型都以 long 位模式保存，
+     * 因此每个绑定只有这一个对象，标记为“脏”不需要分配内存。
+     */
+    class PrimitivePendingChange implements Runnable {
+
+        @FunctionalInterface
+        interface Sink {
+            void accept(long oldBits, long newBits);
+        }
+
+        private final Sink sink;
+
+        private boolean dirty = false;
+        private long oldBits;
+        private long newBits;
+
+        PrimitivePendingChange(Sink sink) {
+            this.sink = sink;
+        }
+
+        void update(long oldBits, long newBits) {
+            synchronized (this) {
+                if (!dirty) {
+                    this.oldBits = oldBits;
+                    dirty = true;
+                }
+                this.newBits = newBits;
+            }
+            PulseDispatcher.fx().dispatch(this, this);
+        }
+
+        @Override
+        public void run() {
+            final long oldBits;
+            final long newBits;
+            synchronized (this) {
+                oldBits = this.oldBits;
+                newBits = this.newBits;
+                dirty = false;
+            }
+            sink.accept(oldBits, newBits);
+        }
+    }
+
+    /**
+     * 列表绑定的起点：只把变化的部分应用到 JavaFX 的 ObservableList 上，而不是每次重建整个列表。
+     */
+    default <E> ListConverter<E> onChangeOf(ObservableModelList<E> observableList) {
+        return new ListConverter<>(observableList, getDispatchMode(), this);
+    }
+
+    /**
+     * 映射绑定的起点：只把变化的键应用到 JavaFX 的 ObservableMap 上。
+     */
+    default <K, V> MapConverter<K, V> onChangeOf(ObservableModelMap<K, V> observableMap) {
+        return new MapConverter<>(observableMap, getDispatchMode(), this);
+    }
+
+    class ListConverter<E> {
+
+        private final ObservableModelList<E> observableList;
+        private final DispatchMode dispatchMode;
+        private final ViewMixin<?, ?> view;
+
+        public ListConverter(ObservableModelList<E> observableList, DispatchMode dispatchMode, ViewMixin<?, ?> view) {
+            this.observableList = observableList;
+            this.dispatchMode = dispatchMode;
+            this.view = view;
+        }
+
+        /**
+         * @param converter 转换每个插入的元素，在写入模型的线程中执行，而不是在 FX 线程中
+         */
+        public <R> ListUpdater<E, R> convertedBy(Function<? super E, ? extends R> converter) {
+            return new ListUpdater<>(this, change -> change.map(converter));
+        }
+
+        public Subscription update(ObservableList<? super E> list) {
+            return new ListUpdater<E, E>(this, change -> change).update(list);
+        }
+
+        /**
+         * 大列表的虚拟化绑定：ListView 中只保存元素本身，只有显示的行（加上前后的预取范围）才会被转换。
+         * 转换在后台线程中进行，结果只为最近显示过的行缓存，因此内存和转换的开销与可见区域成正比，而不是与数据量成正比。
+         *
+         * @param converter 转换一个元素，在后台线程中执行，因此不能访问 GUI
+         */
+        public <R> VirtualListUpdater<E, R> convertedLazilyBy(Function<? super E, ? extends R> converter) {
+            return new VirtualListUpdater<>(this, converter);
+        }
+    }
+
+    class VirtualListUpdater<E, R> {
+
+        private final ListConverter<E> source;
+        private final Function<? super E, ? extends R> converter;
+
+        private int prefetch = 20;
+        private BiConsumer<ListCell<E>, R> renderer = (cell, converted) -> cell.setText(String.valueOf(converted));
+
+        VirtualListUpdater(ListConverter<E> source, Function<? super E, ? extends R> converter) {
+            this.source = source;
+            this.converter = converter;
+        }
+
+        /**
+         * @param rows 在每个显示的行前后提前转换多少行，默认 20
+         */
+        public VirtualListUpdater<E, R> prefetch(int rows) {
+            if (rows < 0) {
+                throw new IllegalArgumentException("rows must not be negative");
+            }
+            this.prefetch = rows;
+            return this;
+        }
+
+        /**
+         * @param renderer 在 FX 线程中用转换结果更新单元格，默认把结果作为文本
+         */
+        public VirtualListUpdater<E, R> renderedBy(BiConsumer<ListCell<E>, R> renderer) {
+            this.renderer = Objects.requireNonNull(renderer);
+            return this;
+        }
+
+        /**
+         * 把列表绑定到 listView：替换它的 items 和 cellFactory。
+         *
+         * @return 用于取消绑定的句柄
+         */
+        public Subscription update(ListView<E> listView) {
+            // 正在显示元素的单元格：变空的单元格被移除，被 ListView 丢弃的单元格随之被回收，所以只包含视口中的行
+            final Set<ListCell<E>> cells = Collections.newSetFromMap(new WeakHashMap<>());
+            final ConversionCache<E, R> cache = new ConversionCache<>(converter, 2 * prefetch + 1, Platform::runLater, (element, converted) -> {
+                for (ListCell<E> cell : new ArrayList<>(cells)) {
+                    // 缓存按 equals 查找，单元格中的元素可能是相等的另一个实例
+                    if (!cell.isEmpty() && Objects.equals(cell.getItem(), element)) {
+                        renderer.accept(cell, converted);
+                    }
+                }
+            });
+            listView.setCellFactory(view -> {
+                ListCell<E> cell = new ListCell<>() {
+                    @Override
+                    protected void updateItem(E item, boolean empty) {
+                        super.updateItem(item, empty);
+                        if (empty) {
+                            cells.remove(this);
+                            setText(null);
+                            setGraphic(null);
+                            return;
+                        }
+                        cells.add(this);
+                        cache.setCapacity(visibleRows(getListView()) + 2 * prefetch);
+                        if (cache.contains(item)) {
+                            renderer.accept(this, cache.get(item));
+                        } else {
+                            // 转换完成之前先显示空行
+                            setText(null);
+                            setGraphic(null);
+                            cache.request(item);
+                        }
+                        final List<E> items = getListView().getItems();
+                        final int index = getIndex();
+                        for (int i = Math.max(0, index - prefetch); i <= Math.min(items.size() - 1, index + prefetch); i++) {
+                            cache.request(items.get(i));
+                        }
+                    }
+                };
+                return cell;
+            });
+            final ObservableList<E> items = FXCollections.observableArrayList();
+            listView.setItems(items);
+            return source.update(items);
+        }
+
+        /**
+         * @return 视口中的行数。缓存容纳这些行和它们前后的预取范围，所以大小随视口变化，而不是随创建过的单元格数量变化
+         */
+        private static int visibleRows(ListView<?> listView) {
+            final Node flow = listView.lookup(".virtual-flow");
+            if (flow instanceof VirtualFlow) {
+                final IndexedCell<?> first = ((VirtualFlow<?>) flow).getFirstVisibleCell();
+                final IndexedCell<?> last = ((VirtualFlow<?>) flow).getLastVisibleCell();
+                if (null != first && null != last) {
+                    return last.getIndex() - first.getIndex() + 1;
+                }
+            }
+            // 第一次布局之前还没有可见的行
+            return 1;
+        }
+    }
+
+    class ListUpdater<E, R> {
+
+        private final ListConverter<E> source;
+        private final Function<ListChange<E>, ListChange<R>> converter;
+
+        ListUpdater(ListConverter<E> source, Function<ListChange<E>, ListChange<R>> converter) {
+            this.source = source;
+            this.converter = converter;
+        }
+
+        /**
+         * 注册一个观察者，它在 FX 线程中把每个变化应用到 list 上。list 原有的内容会被替换。
+         *
+         * @return 用于取消绑定的句柄
+         */
+        public Subscription update(ObservableList<? super R> list) {
+            final DeltaDispatcher dispatcher = new DeltaDispatcher(source.dispatchMode);
+            final ObservableModelList.ListChangeListener<E> listener = change -> {
+                ListChange<R> converted = converter.apply(change);
+                dispatcher.dispatch(() -> converted.applyTo(list));
+            };
+            return bind(source.view, listener, source.observableList::onChange, source.observableList::onChangeWeak);
+        }
+    }
+
+    class MapConverter<K, V> {
+
+        private final ObservableModelMap<K, V> observableMap;
+        private final DispatchMode dispatchMode;
+        private final ViewMixin<?, ?> view;
+
+        public MapConverter(ObservableModelMap<K, V> observableMap, DispatchMode dispatchMode, ViewMixin<?, ?> view) {
+            this.observableMap = observableMap;
+            this.dispatchMode = dispatchMode;
+            this.view = view;
+        }
+
+        /**
+         * @param converter 转换每个新值，在写入模型的线程中执行，而不是在 FX 线程中
+         */
+        public <R> MapUpdater<K, V, R> convertedBy(Function<? super V, ? extends R> converter) {
+            return new MapUpdater<>(this, change -> change.map(converter));
+        }
+
+        public Subscription update(ObservableMap<? super K, ? super V> map) {
+            return new MapUpdater<K, V, V>(this, change -> change).update(map);
+        }
+    }
+
+    class MapUpdater<K, V, R> {
+
+        private final MapConverter<K, V> source;
+        private final Function<MapChange<K, V>, MapChange<K, R>> converter;
+
+        MapUpdater(MapConverter<K, V> source, Function<MapChange<K, V>, MapChange<K, R>> converter) {
+            this.source = source;
+            this.converter = converter;
+        }
+
+        /**
+         * 注册一个观察者，它在 FX 线程中把每个变化应用到 map 上。map 原有的内容会被替换。
+         *
+         * @return 用于取消绑定的句柄
+         */
+        public Subscription update(ObservableMap<? super K, ? super R> map) {
+            final DeltaDispatcher dispatcher = new DeltaDispatcher(source.dispatchMode);
+            final ObservableModelMap.MapChangeListener<K, V> listener = change -> {
+                MapChange<K, R> converted = converter.apply(change);
+                dispatcher.dispatch(() -> converted.applyTo(map));
+            };
+            return bind(source.view, listener, source.observableMap::onChange, source.observableMap::onChangeWeak);
+        }
+    }
+
+    /**
+     * 把增量变化传递到 FX 线程。与值不同，增量变化不能跳过：PULSE 模式下一个脉冲内到达的所有变化按顺序在同一次 runLater 中应用。
+     */
+    class DeltaDispatcher implements Runnable {
+
+        private final DispatchMode dispatchMode;
+        private final List<Runnable> pending = new ArrayList<>();
+
+        DeltaDispatcher(DispatchMode dispatchMode) {
+            this.dispatchMode = dispatchMode;
+        }
+
+        void dispatch(Runnable delta) {
+            if (dispatchMode == DispatchMode.IMMEDIATE) {
+                Platform.runLater(delta);
+                return;
+            }
+            synchronized (this) {
+                pending.add(delta);
+            }
+            PulseDispatcher.fx().dispatch(this, this);
+        }
+
+        @Override
+        public void run() {
+            final List<Runnable> deltas;
+            synchronized (this) {
+                deltas = new ArrayList<>(pending);
+                pending.clear();
+            }
+            deltas.forEach(Runnable::run);
+        }
+    }
+
     default <V> ActionTrigger<V> onChangeOf(Property<V> property) {
         return new ActionTrigger<>(property);
     }
@@ -142,16 +913,63 @@ public interface ViewMixin<M, C extends ControllerBase<M>> extends Projector<M,
         return new ActionTrigger<>(property);
     }
 
+    /**
+     * 把 GUI-Property 的变化转发给控制器。
+     * <p>
+     * 拖动滑块之类的操作每秒会产生数百次变化，用 {@link #debounced}、{@link #throttled} 或 {@link #sampled} 可以限制到达控制器的操作的频率。
+     * 算子可以串联，计时在 FX 线程中进行，不需要额外的线程。
+     */
     class ActionTrigger<V> {
 
+        private final Property<? super V> property;
+
+        // 把 action 包装成实际注册的接收者，没有算子时就是 action 本身
+        private final UnaryOperator<Consumer<V>> operators;
+
         public ActionTrigger(Property<? super V> property) {
+            this(property, UnaryOperator.identity());
+        }
+
+        private ActionTrigger(Property<? super V> property, UnaryOperator<Consumer<V>> operators) {
             this.property = property;
+            this.operators = operators;
         }
 
-        private Property<? super V> property;
+        /**
+         * 只有在 quietPeriod 内没有新的变化时才触发，传递最后一个值。适合输入框之类的只关心最终结果的场景。
+         */
+        public ActionTrigger<V> debounced(Duration quietPeriod) {
+            return with(RateLimiter.Kind.DEBOUNCE, quietPeriod);
+        }
 
-        public void triggerAction(Consumer<V> action) {
-            property.addListener((observableValue, oldValue, newValue) -> action.accept((V) newValue));
+        /**
+         * 立即触发第一个变化，之后每个 period 最多触发一次，最后一个值不会丢失。适合滑块之类的需要及时响应的场景。
+         */
+        public ActionTrigger<V> throttled(Duration period) {
+            return with(RateLimiter.Kind.THROTTLE, period);
+        }
+
+        /**
+         * 每个 period 结束时触发最新的值（如果期间有变化的话）。
+         */
+        public ActionTrigger<V> sampled(Duration period) {
+            return with(RateLimiter.Kind.SAMPLE, period);
+        }
+
+        private ActionTrigger<V> with(RateLimiter.Kind kind, Duration period) {
+            Objects.requireNonNull(period);
+            return new ActionTrigger<>(property, action -> operators.apply(new RateLimiter<>(kind, action, period)));
+        }
+
+        /**
+         * @return 用于取消注册的句柄
+         */
+        @SuppressWarnings("unchecked")
+        public Subscription triggerAction(Consumer<V> action) {
+            final Consumer<V> receiver = operators.apply(action);
+            final ChangeListener<Object> listener = (observableValue, oldValue, newValue) -> receiver.accept((V) newValue);
+            property.addListener(listener);
+            return () -> property.removeListener(listener);
         }
     }
 
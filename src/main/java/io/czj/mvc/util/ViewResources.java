@@ -0,0 +1,214 @@
+package io.czj.mvc.util;
+
+import javafx.scene.text.Font;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 整个进程共用的字体和样式表缓存，供 {@link ViewMixin#loadFonts(String...)} 和 {@link ViewMixin#addStylesheetFiles(String...)} 使用。
+ * <p>
+ * 每个资源只加载一次：字体只注册一次，样式表的 URL 只解析一次，之后的视图直接得到缓存的结果。
+ * JavaFX 按 URL 缓存解析过的样式表，所以每次返回同一个 URL 也让样式表只被解析一次。
+ * <p>
+ * 启动时可以用 {@link #prewarmFonts(Class, String...)} 和 {@link #prewarmStylesheets(Class, String...)} 在后台线程中并行加载，
+ * 这样视图的 initializeSelf 在 FX 线程中只是一次缓存命中。
+ */
+public final class ViewResources {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ViewResources.class);
+
+    private static final ExecutorService LOADER = createLoader();
+
+    private static final Map<Key, CompletableFuture<Font>> FONTS = new ConcurrentHashMap<>();
+    private static final Map<Key, CompletableFuture<String>> STYLESHEETS = new ConcurrentHashMap<>();
+
+    private ViewResources() {
+    }
+
+    /**
+     * 在后台线程中并行加载字体。
+     *
+     * @param anchor 用来查找资源的类，和 {@link Class#getResource(String)} 一样
+     * @return 所有字体都加载完成时完成
+     */
+    public static CompletableFuture<Void> prewarmFonts(Class<?> anchor, String... fonts) {
+        final CompletableFuture<?>[] futures = new CompletableFuture<?>[fonts.length];
+        for (int i = 0; i < fonts.length; i++) {
+            futures[i] = fontFuture(anchor, fonts[i], true);
+        }
+        return CompletableFuture.allOf(futures);
+    }
+
+    /**
+     * 在后台线程中并行解析样式表的 URL。
+     *
+     * @param anchor 用来查找资源的类，和 {@link Class#getResource(String)} 一样
+     * @return 所有样式表都解析完成时完成
+     */
+    public static CompletableFuture<Void> prewarmStylesheets(Class<?> anchor, String... stylesheetFiles) {
+        final CompletableFuture<?>[] futures = new CompletableFuture<?>[stylesheetFiles.length];
+        for (int i = 0; i < stylesheetFiles.length; i++) {
+            futures[i] = stylesheetFuture(anchor, stylesheetFiles[i], true);
+        }
+        return CompletableFuture.allOf(futures);
+    }
+
+    /**
+     * 加载字体，或者等待正在进行的加载。已经加载过的字体直接返回。
+     *
+     * @return 加载的字体，文件不是有效的字体时为 null
+     * @throws IllegalArgumentException 找不到资源
+     */
+    public static Font font(Class<?> anchor, String font) {
+        return join(fontFuture(anchor, font, false));
+    }
+
+    /**
+     * @return 样式表的 URL，可以直接加入 getStylesheets()
+     * @throws IllegalArgumentException 找不到资源
+     */
+    public static String stylesheet(Class<?> anchor, String stylesheetFile) {
+        return join(stylesheetFuture(anchor, stylesheetFile, false));
+    }
+
+    private static CompletableFuture<Font> fontFuture(Class<?> anchor, String font, boolean async) {
+        return load(FONTS, anchor, font, async, key -> {
+            try (InputStream in = open(anchor, key.path)) {
+                final Font loaded = Font.loadFont(in, 0);
+                if (null == loaded) {
+                    LOGGER.warn("{} is not a valid font", key.path);
+                }
+                return loaded;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private static CompletableFuture<String> stylesheetFuture(Class<?> anchor, String stylesheetFile, boolean async) {
+        return load(STYLESHEETS, anchor, stylesheetFile, async, key -> resource(anchor, key.path).toExternalForm());
+    }
+
+    /**
+     * 每个键只执行一次 loader。async 为 false 时，第一个请求者在自己的线程中加载，避免在 FX 线程中等待后台线程。
+     */
+    private static <R> CompletableFuture<R> load(Map<Key, CompletableFuture<R>> cache, Class<?> anchor, String name, boolean async,
+                                                 Function<Key, R> loader) {
+        final Key key = new Key(anchor.getModule(), absolute(anchor, name));
+        final CompletableFuture<R> existing = cache.get(key);
+        if (null != existing) {
+            return existing;
+        }
+        final CompletableFuture<R> future = new CompletableFuture<>();
+        final CompletableFuture<R> raced = cache.putIfAbsent(key, future);
+        if (null != raced) {
+            return raced;
+        }
+        final Runnable task = () -> {
+            try {
+                future.complete(loader.apply(key));
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        };
+        if (async) {
+            LOADER.execute(task);
+        } else {
+            task.run();
+        }
+        return future;
+    }
+
+    private static <R> R join(CompletableFuture<R> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static URL resource(Class<?> anchor, String path) {
+        final URL url = anchor.getResource(path);
+        if (null == url) {
+            throw new IllegalArgumentException("resource not found: " + path);
+        }
+        return url;
+    }
+
+    private static InputStream open(Class<?> anchor, String path) {
+        final InputStream in = anchor.getResourceAsStream(path);
+        if (null == in) {
+            throw new IllegalArgumentException("resource not found: " + path);
+        }
+        return in;
+    }
+
+    /**
+     * 和 Class.getResource 一样，把相对路径解析为相对于 anchor 所在包的绝对路径。
+     */
+    private static String absolute(Class<?> anchor, String name) {
+        Objects.requireNonNull(name);
+        if (name.startsWith("/")) {
+            return name;
+        }
+        final String packageName = anchor.getPackageName();
+        return packageName.isEmpty() ? "/" + name : "/" + packageName.replace('.', '/') + "/" + name;
+    }
+
+    private static ExecutorService createLoader() {
+        final int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        final ThreadPoolExecutor loader = new ThreadPoolExecutor(threads, threads, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "ViewResources-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        loader.allowCoreThreadTimeOut(true);
+        return loader;
+    }
+
+    /**
+     * 同一个路径在不同的模块中可以是不同的资源。
+     */
+    private static final class Key {
+        final Module module;
+        final String path;
+
+        Key(Module module, String path) {
+            this.module = module;
+            this.path = path;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return module == other.module && path.equals(other.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(module) + path.hashCode();
+        }
+    }
+
+}
@@ -0,0 +1,57 @@
+package io.czj.mvc.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 在 JDK 21+ 上提供基于虚拟线程的 ExecutorService。
+ * <p>
+ * 项目以 Java 11 为基线编译，因此通过反射调用 {@code Executors.newVirtualThreadPerTaskExecutor()}。
+ * 在不支持虚拟线程的 JDK 上退回到一个普通的单线程池。
+ * <p>
+ * 在虚拟线程中阻塞（例如 {@link ControllerBase#pauseExecution} 中的 Thread.sleep 或 I/O）不会占用平台线程。
+ */
+public final class VirtualThreads {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(VirtualThreads.class);
+
+    private static final Method NEW_EXECUTOR = findFactory();
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return 当前 JDK 是否支持虚拟线程
+     */
+    public static boolean isAvailable() {
+        return null != NEW_EXECUTOR;
+    }
+
+    /**
+     * @return 为每个任务启动一个新虚拟线程的 ExecutorService，不支持虚拟线程时返回单线程池
+     */
+    public static ExecutorService newExecutor() {
+        if (null != NEW_EXECUTOR) {
+            try {
+                return (ExecutorService) NEW_EXECUTOR.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                LOGGER.warn("Could not create virtual thread executor, falling back to platform thread", e);
+            }
+        }
+        return Executors.newFixedThreadPool(1);
+    }
+
+    private static Method findFactory() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            LOGGER.info("Virtual threads are not available on Java {}, using platform threads", System.getProperty("java.version"));
+            return null;
+        }
+    }
+
+}
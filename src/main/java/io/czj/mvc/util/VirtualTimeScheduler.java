@@ -0,0 +1,248 @@
+package io.czj.mvc.util;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 用于测试的确定性 {@link TaskScheduler}：没有线程，也没有真实的等待。
+ * <p>
+ * 所有 executor 的任务进入同一个先进先出的队列，只有在调用 {@link #runUntilIdle()}、{@link #advanceBy(Duration)} 或者
+ * awaitCompletion 时才在调用线程中执行。时钟是虚拟的，只在 advanceBy、sleep（例如 pauseExecution）和 awaitCompletion 等待时前进，
+ * 前进时按时间顺序执行到期的定时任务，例如 maxToDoTime 的截止时间。同样的测试每次以同样的顺序执行，结果可以重复。
+ * <pre>
+ * VirtualTimeScheduler scheduler = new VirtualTimeScheduler();
+ * controller.setScheduler(scheduler);
+ * controller.pauseExecution(Duration.ofMinutes(10));
+ * controller.awaitCompletion();   // 立即返回，scheduler.now() 前进了 10 分钟
+ * </pre>
+ * 一个 scheduler 可以被多个控制器共用，它们的任务按提交的顺序交替执行。
+ * <p>
+ * 因为只有一个线程，{@link ConcurrentTaskQueue.OverflowPolicy#BLOCK} 策略在队列满时会永远等待，有界队列需要使用其他策略。
+ * 同样的原因，分区操作（{@link ControllerBase#asyncPartitioned(Object, Runnable)}）的各个分区不并行，而是在批次中依次执行。
+ */
+public final class VirtualTimeScheduler implements TaskScheduler {
+
+    private final Queue<Runnable> ready = new ArrayDeque<>();
+    private final PriorityQueue<Timed> timers = new PriorityQueue<>();
+
+    private long now = 0;
+    // 同一时刻到期的定时任务按安排的顺序执行
+    private long sequence = 0;
+
+    @Override
+    public ExecutorService newExecutor(int threads) {
+        return new VirtualExecutor();
+    }
+
+    @Override
+    public boolean isThreaded() {
+        return false;
+    }
+
+    @Override
+    public synchronized long nanoTime() {
+        return now;
+    }
+
+    /**
+     * @return 自创建以来经过的虚拟时间
+     */
+    public synchronized Duration now() {
+        return Duration.ofNanos(now);
+    }
+
+    @Override
+    public synchronized Cancellable schedule(Runnable action, Duration delay) {
+        final Timed timed = new Timed(now + Math.max(0, delay.toNanos()), sequence++, Objects.requireNonNull(action));
+        timers.add(timed);
+        return () -> {
+            synchronized (this) {
+                timers.remove(timed);
+            }
+        };
+    }
+
+    /**
+     * 让时间前进 duration，只执行这段时间内到期的定时任务，不执行等待中的任务。因此在任务中调用时不会重入其他任务，
+     * 但可以触发这个任务自己的截止时间：截止时间中断当前线程时抛出 InterruptedException，和真实的 sleep 一样。
+     */
+    @Override
+    public void sleep(Duration duration) throws InterruptedException {
+        final long target = nanoTime() + duration.toNanos();
+        Timed timed;
+        while (!Thread.currentThread().isInterrupted() && null != (timed = nextTimer(target))) {
+            timed.action.run();
+        }
+        // 被中断时时间停在中断的时刻
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        setNow(target);
+    }
+
+    /**
+     * 执行任务直到 latch 归零。没有可执行的任务时让时间前进到下一个定时任务，最多前进 timeout。
+     */
+    @Override
+    public boolean await(CountDownLatch latch, Duration timeout) {
+        final long deadline = nanoTime() + timeout.toNanos();
+        while (true) {
+            runReady(latch);
+            if (0 == latch.getCount()) {
+                return true;
+            }
+            final Timed timed = nextTimer(deadline);
+            if (null == timed) {
+                setNow(deadline);
+                return false;
+            }
+            timed.action.run();
+        }
+    }
+
+    /**
+     * 执行所有等待中的任务和当前时刻到期的定时任务，包括执行过程中新提交的任务。
+     *
+     * @return 执行的任务数量
+     */
+    public int runUntilIdle() {
+        int count = runReady(null);
+        Timed timed;
+        while (null != (timed = nextTimer(nanoTime()))) {
+            timed.action.run();
+            count += 1 + runReady(null);
+        }
+        return count;
+    }
+
+    /**
+     * 让时间前进 duration，依次执行其间到期的定时任务以及它们引起的所有任务。
+     */
+    public void advanceBy(Duration duration) {
+        final long target = nanoTime() + duration.toNanos();
+        runUntilIdle();
+        Timed timed;
+        while (null != (timed = nextTimer(target))) {
+            timed.action.run();
+            runReady(null);
+        }
+        setNow(target);
+        runUntilIdle();
+    }
+
+    /**
+     * @return 是否还有等待中的任务或定时任务
+     */
+    public synchronized boolean hasPendingWork() {
+        return !ready.isEmpty() || !timers.isEmpty();
+    }
+
+    /**
+     * 执行 ready 中的任务，直到 ready 为空或者 latch 归零。
+     */
+    private int runReady(CountDownLatch latch) {
+        int count = 0;
+        Runnable task;
+        while ((null == latch || latch.getCount() > 0) && null != (task = poll())) {
+            task.run();
+            count++;
+        }
+        return count;
+    }
+
+    private synchronized Runnable poll() {
+        return ready.poll();
+    }
+
+    private synchronized void enqueue(Runnable task) {
+        ready.add(task);
+    }
+
+    /**
+     * 取出在 limit 之前到期的第一个定时任务，并把时钟拨到它的时间。
+     */
+    private synchronized Timed nextTimer(long limit) {
+        final Timed timed = timers.peek();
+        if (null == timed || timed.due > limit) {
+            return null;
+        }
+        timers.poll();
+        now = Math.max(now, timed.due);
+        return timed;
+    }
+
+    private synchronized void setNow(long target) {
+        now = Math.max(now, target);
+    }
+
+    private static final class Timed implements Comparable<Timed> {
+        final long due;
+        final long sequence;
+        final Runnable action;
+
+        Timed(long due, long sequence, Runnable action) {
+            this.due = due;
+            this.sequence = sequence;
+            this.action = action;
+        }
+
+        @Override
+        public int compareTo(Timed other) {
+            final int byDue = Long.compare(due, other.due);
+            return 0 != byDue ? byDue : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * 把任务放入 scheduler 共用的队列。
+     */
+    private final class VirtualExecutor extends AbstractExecutorService {
+
+        private volatile boolean shutdown = false;
+
+        @Override
+        public void execute(Runnable command) {
+            if (shutdown) {
+                throw new RejectedExecutionException("executor has been shut down");
+            }
+            enqueue(Objects.requireNonNull(command));
+        }
+
+        @Override
+        public void shutdown() {
+            shutdown = true;
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            shutdown = true;
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return true;
+        }
+    }
+
+}
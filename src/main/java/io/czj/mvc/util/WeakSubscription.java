@@ -0,0 +1,23 @@
+package io.czj.mvc.util;
+
+/**
+ * 弱注册的句柄：Observable 只弱引用侦听器，这个句柄强引用它。句柄不可达时侦听器也就可以被回收了。
+ */
+final class WeakSubscription implements Subscription {
+
+    // 只是为了让侦听器保持可达
+    @SuppressWarnings({"unused", "FieldCanBeLocal"})
+    private final Object listener;
+    private final Runnable removal;
+
+    WeakSubscription(Object listener, Runnable removal) {
+        this.listener = listener;
+        this.removal = removal;
+    }
+
+    @Override
+    public void dispose() {
+        removal.run();
+    }
+
+}
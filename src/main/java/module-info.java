@@ -1,5 +1,6 @@
 open module template.jfx {
     requires org.slf4j;
+    requires java.management;
     requires javafx.base;
     requires javafx.controls;
 }
\ No newline at end of file
@@ -0,0 +1,111 @@
+package io.czj.mvc.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ActionJournalTest {
+
+    private static class TestModel {
+        final ObservableInt count = new ObservableInt(0);
+        final ObservableValue<String> name = new ObservableValue<>("initial");
+        final transient ObservableValue<String> info = new ObservableValue<>("not recorded");
+    }
+
+    @Test
+    void testRecordAndReplay(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("actions.journal");
+        TestModel model = new TestModel();
+        ActionJournal journal = new ActionJournal(model, file);
+        assertEquals(0, journal.replay());
+        journal.start();
+        ControllerBase<TestModel> controller = new ControllerBase<>(model) {
+        };
+        for (int i = 1; i <= 100; i++) {
+            controller.setValue(model.count, i);
+        }
+        controller.updateModel(controller.set(model.name, "updated"), controller.set(model.info, "changed"));
+        controller.awaitCompletion();
+        journal.sync();
+
+        JournalMetrics metrics = journal.getMetrics();
+        assertEquals(101, metrics.getRecordCount());
+        assertTrue(metrics.getCommitCount() >= 1 && metrics.getCommitCount() <= 101);
+        assertTrue(metrics.getWriteAmplification() > 1);
+        assertEquals(101, journal.entries().size());
+
+        controller.shutdown();
+        journal.close();
+
+        TestModel restored = new TestModel();
+        ActionJournal replay = new ActionJournal(restored, file);
+        assertEquals(2, replay.replay());
+        assertEquals(100, restored.count.getValue());
+        assertEquals("updated", restored.name.getValue());
+        assertEquals("not recorded", restored.info.getValue());
+
+        List<ActionJournal.Entry> entries = replay.entries();
+        assertEquals("count", entries.get(0).getField());
+        assertEquals(1, entries.get(0).getValue());
+        assertEquals("updated", entries.get(100).getValue());
+    }
+
+    @Test
+    void testTornTailIsTruncated(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("actions.journal");
+        TestModel model = new TestModel();
+        ActionJournal journal = new ActionJournal(model, file);
+        journal.start();
+        ControllerBase<TestModel> controller = new ControllerBase<>(model) {
+        };
+        controller.setValue(model.count, 7);
+        controller.awaitCompletion();
+        controller.shutdown();
+        journal.close();
+        long size = Files.size(file);
+        // 一条只写了一半的记录
+        Files.write(file, new byte[]{0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        TestModel restored = new TestModel();
+        ActionJournal replay = new ActionJournal(restored, file);
+        assertEquals(1, replay.replay());
+        assertEquals(7, restored.count.getValue());
+        assertEquals(size, Files.size(file));
+    }
+
+    @Test
+    void testStartTruncatesTornTailWithoutReplay(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("actions.journal");
+        TestModel model = new TestModel();
+        ActionJournal journal = new ActionJournal(model, file);
+        journal.start();
+        ControllerBase<TestModel> controller = new ControllerBase<>(model) {
+        };
+        controller.setValue(model.count, 7);
+        controller.awaitCompletion();
+        journal.close();
+        Files.write(file, new byte[]{0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        // 崩溃之后没有 replay 就直接开始记录：新的记录不能跟在不完整的记录后面
+        ActionJournal restarted = new ActionJournal(model, file);
+        restarted.start();
+        controller.setValue(model.count, 8);
+        controller.awaitCompletion();
+        controller.shutdown();
+        restarted.close();
+
+        TestModel restored = new TestModel();
+        ActionJournal replay = new ActionJournal(restored, file);
+        assertEquals(1, replay.replay());
+        assertEquals(8, restored.count.getValue());
+        assertEquals(2, replay.entries().size());
+    }
+
+}
@@ -0,0 +1,155 @@
+package io.czj.mvc.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ComputedValueTest {
+
+    @Test
+    void testLazyAndMemoized() {
+        ObservableValue<Integer> source = new ObservableValue<>(1);
+        AtomicInteger computations = new AtomicInteger(0);
+        ComputedValue<String> text = source.map(v -> {
+            computations.incrementAndGet();
+            return "#" + v;
+        });
+        // 没有人读取也没有侦听器，不计算
+        source.setValue(2);
+        source.setValue(3);
+        assertEquals(0, computations.get());
+
+        assertEquals("#3", text.getValue());
+        assertEquals("#3", text.getValue());
+        assertEquals(1, computations.get());
+
+        source.setValue(4);
+        assertEquals("#4", text.getValue());
+        assertEquals(2, computations.get());
+    }
+
+    @Test
+    void testDerivedFromPrimitiveObservables() {
+        ObservableInt counter = new ObservableInt(73);
+        ObservableBoolean ledGlows = new ObservableBoolean(false);
+        AtomicInteger computations = new AtomicInteger(0);
+        ComputedValue<String> status = ComputedValue.combine(counter.asObject(), ledGlows.asObject(), (count, glows) -> {
+            computations.incrementAndGet();
+            return count + (glows ? " on" : " off");
+        });
+        assertEquals("73 off", status.getValue());
+        assertEquals("73 off", status.getValue());
+        assertEquals(1, computations.get());
+
+        List<String> log = new ArrayList<>();
+        Subscription subscription = status.onChange((oldValue, newValue) -> log.add(newValue));
+        counter.setValue(74);
+        ledGlows.setValue(true);
+        assertEquals(List.of("73 off", "74 off", "74 on"), log);
+
+        subscription.dispose();
+        counter.setValue(75);
+        assertEquals(List.of("73 off", "74 off", "74 on"), log);
+        assertEquals("75 on", status.getValue());
+    }
+
+    @Test
+    void testDiamondComputesOnce() {
+        ObservableValue<Integer> a = new ObservableValue<>(1);
+        ComputedValue<Integer> b = a.map(v -> v * 2);
+        ComputedValue<Integer> c = a.map(v -> v * 3);
+        AtomicInteger computations = new AtomicInteger(0);
+        ComputedValue<String> d = ComputedValue.combine(b, c, (x, y) -> {
+            computations.incrementAndGet();
+            return x + "+" + y;
+        });
+        List<String> log = new ArrayList<>();
+        d.onChange((oldValue, newValue) -> log.add(oldValue + " -> " + newValue));
+        assertEquals(List.of("2+3 -> 2+3"), log);
+        assertEquals(1, computations.get());
+
+        a.setValue(2);
+        // 没有 "4+3" 这样的中间状态
+        assertEquals(List.of("2+3 -> 2+3", "2+3 -> 4+6"), log);
+        assertEquals(2, computations.get());
+    }
+
+    @Test
+    void testUnchangedResultStopsPropagation() {
+        ObservableValue<Integer> source = new ObservableValue<>(1);
+        ComputedValue<Boolean> even = source.map(v -> v % 2 == 0);
+        AtomicInteger computations = new AtomicInteger(0);
+        ComputedValue<String> label = even.map(v -> {
+            computations.incrementAndGet();
+            return v ? "even" : "odd";
+        });
+        List<String> log = new ArrayList<>();
+        label.onChange((oldValue, newValue) -> log.add(newValue));
+
+        source.setValue(3);
+        source.setValue(4);
+        assertEquals(List.of("odd", "even"), log);
+        assertEquals(2, computations.get());
+    }
+
+    @Test
+    void testFilter() {
+        ObservableValue<Integer> source = new ObservableValue<>(-1);
+        ComputedValue<Integer> positive = source.filter(v -> v > 0);
+        assertNull(positive.getValue());
+        source.setValue(5);
+        assertEquals(5, positive.getValue());
+        source.setValue(-3);
+        assertEquals(5, positive.getValue());
+        source.setValue(7);
+        assertEquals(7, positive.getValue());
+    }
+
+    @Test
+    void testTransactionNotifiesOnce() {
+        ObservableValue<Integer> x = new ObservableValue<>(0);
+        ObservableValue<Integer> y = new ObservableValue<>(0);
+        ComputedValue<Integer> sum = ComputedValue.combine(() -> x.getValue() + y.getValue(), x, y);
+        List<Integer> log = new ArrayList<>();
+        sum.onChange((oldValue, newValue) -> log.add(newValue));
+
+        Transaction.run(() -> {
+            x.setValue(1);
+            y.setValue(2);
+        });
+        assertEquals(List.of(0, 3), log);
+    }
+
+    @Test
+    void testDisposeLastListenerUnsubscribes() throws InterruptedException {
+        ObservableValue<Integer> source = new ObservableValue<>(1);
+        AtomicInteger computations = new AtomicInteger(0);
+        ComputedValue<Integer> doubled = source.map(v -> {
+            computations.incrementAndGet();
+            return v * 2;
+        });
+        Subscription subscription = doubled.onChange((oldValue, newValue) -> {
+        });
+        source.setValue(2);
+        assertEquals(2, computations.get());
+
+        subscription.dispose();
+        // 没有侦听器之后又变回惰性的
+        source.setValue(3);
+        source.setValue(4);
+        assertEquals(2, computations.get());
+
+        // 源不再引用派生值
+        WeakReference<ComputedValue<Integer>> reference = new WeakReference<>(doubled);
+        doubled = null;
+        subscription = null;
+        ObservableValueTest.collectGarbage(reference);
+        assertNull(reference.get());
+    }
+
+}
@@ -0,0 +1,363 @@
+package io.czj.mvc.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @Author: chenzejin
+ * @Date: 2022/1/15
+ */
+class ConcurrentTaskQueueTest {
+
+    @Test
+    void testSequenceGuarantees() throws InterruptedException {
+        // 给定
+        final ConcurrentTaskQueue<Integer> taskQueue = new ConcurrentTaskQueue<>();
+        final ConcurrentLinkedQueue<Integer> collector = new ConcurrentLinkedQueue<>();
+        // 当我们同时生产和消费一些数字时
+        for (int i = 0; i < 10; i++) {
+            int finalI = i;
+            taskQueue.submit(
+                    () -> {
+                        try {
+                            // 强制一些线程切换以使测试更真实
+                            Thread.sleep(10);
+                        } catch (InterruptedException e) {
+                            e.printStackTrace();
+                        }
+                        return finalI;
+                    },
+                    collector::add
+            );
+        }
+        // 测试用例中的特殊情况：等待所有并发任务完成
+        // 这样我们就可以同步断言结果。
+        // 总体思路是向 CTQ 提交最后一个任务，同时设置一个我们可以同步等待。
+        CountDownLatch latch = new CountDownLatch(1);
+        taskQueue.submit(() -> {
+            latch.countDown();
+            return null;
+        });
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        // 那么没有数字丢失并且序列被保留
+        Integer[] expected = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9};
+        assertArrayEquals(expected, collector.toArray());
+    }
+
+    @Test
+    void testSequenceGuaranteesInDrainMode() throws InterruptedException {
+        // 给定
+        final ConcurrentTaskQueue<Integer> taskQueue = new ConcurrentTaskQueue<>(ConcurrentTaskQueue.Mode.DRAIN);
+        final ConcurrentLinkedQueue<Integer> collector = new ConcurrentLinkedQueue<>();
+        final int count = 10_000;
+        // 当我们提交的速度比工作线程处理的速度更快时
+        for (int i = 0; i < count; i++) {
+            int finalI = i;
+            taskQueue.submit(() -> finalI, collector::add);
+            if (i % 1_000 == 0) {
+                // 让工作线程有机会清空队列，这样也会经过重新启动工作循环的路径
+                Thread.sleep(1);
+            }
+        }
+        CountDownLatch latch = new CountDownLatch(1);
+        taskQueue.submit(() -> {
+            latch.countDown();
+            return null;
+        });
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        taskQueue.shutdown();
+        // 那么没有数字丢失并且序列被保留
+        Integer[] expected = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            expected[i] = i;
+        }
+        assertArrayEquals(expected, collector.toArray());
+    }
+
+    @ParameterizedTest
+    @EnumSource(ConcurrentTaskQueue.Mode.class)
+    void testTimeoutSkipsOnDone(ConcurrentTaskQueue.Mode mode) throws InterruptedException {
+        // 给定一个不到一秒的截止时间
+        final ConcurrentTaskQueue<String> taskQueue = new ConcurrentTaskQueue<>(Duration.ofMillis(50), mode);
+        taskQueue.setTimeoutPolicy(ConcurrentTaskQueue.TimeoutPolicy.SKIP_ON_DONE);
+        final ConcurrentLinkedQueue<String> collector = new ConcurrentLinkedQueue<>();
+        // 当一个 todo 运行的时间远远超过截止时间
+        taskQueue.submit(() -> {
+            try {
+                Thread.sleep(10_000);
+                return "not interrupted";
+            } catch (InterruptedException e) {
+                return "interrupted";
+            }
+        }, collector::add);
+        taskQueue.submit(() -> "next", collector::add);
+        CountDownLatch latch = new CountDownLatch(1);
+        taskQueue.submit(() -> {
+            latch.countDown();
+            return null;
+        });
+        // 那么它被中断，它的 onDone 被跳过，下一个任务照常执行
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertArrayEquals(new String[]{"next"}, collector.toArray());
+        assertEquals(1, taskQueue.getTimedOutCount());
+        taskQueue.shutdown();
+    }
+
+    @ParameterizedTest
+    @EnumSource(ConcurrentTaskQueue.Mode.class)
+    void testTimeoutContinue(ConcurrentTaskQueue.Mode mode) throws InterruptedException {
+        final ConcurrentTaskQueue<String> taskQueue = new ConcurrentTaskQueue<>(Duration.ofMillis(20), mode);
+        taskQueue.setTimeoutPolicy(ConcurrentTaskQueue.TimeoutPolicy.CONTINUE);
+        final ConcurrentLinkedQueue<String> collector = new ConcurrentLinkedQueue<>();
+        taskQueue.submit(() -> {
+            try {
+                Thread.sleep(100);
+                return "slow";
+            } catch (InterruptedException e) {
+                return "interrupted";
+            }
+        }, collector::add);
+        taskQueue.submit(() -> "next", collector::add);
+        CountDownLatch latch = new CountDownLatch(1);
+        taskQueue.submit(() -> {
+            latch.countDown();
+            return null;
+        });
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        // 超时只被计数，顺序不变
+        assertArrayEquals(new String[]{"slow", "next"}, collector.toArray());
+        assertEquals(1, taskQueue.getTimedOutCount());
+        taskQueue.shutdown();
+    }
+
+    @Test
+    void testDropOldest() throws InterruptedException {
+        assertArrayEquals(new Integer[]{0, 4, 5}, runOverflow(ConcurrentTaskQueue.OverflowPolicy.DROP_OLDEST, new ConcurrentLinkedQueue<>()));
+    }
+
+    @Test
+    void testDropNewest() throws InterruptedException {
+        assertArrayEquals(new Integer[]{0, 1, 2}, runOverflow(ConcurrentTaskQueue.OverflowPolicy.DROP_NEWEST, new ConcurrentLinkedQueue<>()));
+    }
+
+    @Test
+    void testReject() throws InterruptedException {
+        final ConcurrentLinkedQueue<Integer> rejected = new ConcurrentLinkedQueue<>();
+        assertArrayEquals(new Integer[]{0, 1, 2}, runOverflow(ConcurrentTaskQueue.OverflowPolicy.REJECT, rejected));
+        assertArrayEquals(new Integer[]{3, 4, 5}, rejected.toArray());
+    }
+
+    /**
+     * 第一个任务阻塞工作线程，然后在容量为 2 的队列中再提交 5 个任务。
+     */
+    private Integer[] runOverflow(ConcurrentTaskQueue.OverflowPolicy policy, ConcurrentLinkedQueue<Integer> rejected) throws InterruptedException {
+        final ConcurrentTaskQueue<Integer> taskQueue = new ConcurrentTaskQueue<>();
+        taskQueue.setCapacity(2, policy);
+        taskQueue.setRejectionHandler(todo -> rejected.add(todo.get()));
+        final ConcurrentLinkedQueue<Integer> collector = new ConcurrentLinkedQueue<>();
+        final CountDownLatch blocker = new CountDownLatch(1);
+        taskQueue.submit(() -> {
+            try {
+                blocker.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return 0;
+        }, collector::add);
+        for (int i = 1; i <= 5; i++) {
+            int finalI = i;
+            taskQueue.submit(() -> finalI, collector::add);
+        }
+        assertEquals(2, taskQueue.size());
+        blocker.countDown();
+        CountDownLatch latch = new CountDownLatch(1);
+        taskQueue.forceSubmit(() -> {
+            latch.countDown();
+            return null;
+        }, r -> {
+        });
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(3, taskQueue.getDroppedOldestCount() + taskQueue.getDroppedNewestCount() + taskQueue.getRejectedCount());
+        taskQueue.shutdown();
+        return collector.toArray(new Integer[0]);
+    }
+
+    @Test
+    void testBlock() throws InterruptedException {
+        final ConcurrentTaskQueue<Integer> taskQueue = new ConcurrentTaskQueue<>();
+        taskQueue.setCapacity(1, ConcurrentTaskQueue.OverflowPolicy.BLOCK);
+        final ConcurrentLinkedQueue<Integer> collector = new ConcurrentLinkedQueue<>();
+        final CountDownLatch blocker = new CountDownLatch(1);
+        taskQueue.submit(() -> {
+            try {
+                blocker.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return 0;
+        }, collector::add);
+        taskQueue.submit(() -> 1, collector::add);
+        // 队列已满：在释放工作线程之前，第三个任务的提交会一直阻塞
+        Thread releaser = new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            blocker.countDown();
+        });
+        releaser.start();
+        taskQueue.submit(() -> 2, collector::add);
+        assertEquals(0, blocker.getCount());
+        CountDownLatch latch = new CountDownLatch(1);
+        taskQueue.submit(() -> {
+            latch.countDown();
+            return null;
+        });
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertArrayEquals(new Integer[]{0, 1, 2}, collector.toArray());
+        assertTrue(taskQueue.getBlockedCount() >= 1);
+        taskQueue.shutdown();
+    }
+
+    @Test
+    void testPriorities() {
+        final VirtualTimeScheduler scheduler = new VirtualTimeScheduler();
+        final ConcurrentTaskQueue<String> taskQueue = new ConcurrentTaskQueue<>(Duration.ofSeconds(5), ConcurrentTaskQueue.Mode.DRAIN, scheduler);
+        final QueueMetrics metrics = taskQueue.enableMetrics("testPriorities");
+        final List<String> done = new ArrayList<>();
+        // 一长串后台任务之后提交一个交互任务
+        for (int i = 0; i < 3; i++) {
+            final String name = "B" + i;
+            taskQueue.submit(() -> name, done::add, ConcurrentTaskQueue.Priority.BACKGROUND);
+        }
+        for (int i = 0; i < 3; i++) {
+            final String name = "N" + i;
+            taskQueue.submit(() -> name, done::add);
+        }
+        taskQueue.submit(() -> "I", done::add, ConcurrentTaskQueue.Priority.INTERACTIVE);
+        scheduler.runUntilIdle();
+
+        // 高优先级先执行，同一优先级内保持提交的顺序
+        assertEquals(List.of("I", "N0", "N1", "N2", "B0", "B1", "B2"), done);
+        assertEquals(0, taskQueue.getAgedCount());
+        assertEquals(1, metrics.getLatencyHistogram(ConcurrentTaskQueue.Priority.INTERACTIVE).getCount());
+        assertEquals(3, metrics.getLatencyHistogram(ConcurrentTaskQueue.Priority.BACKGROUND).getCount());
+        taskQueue.shutdown();
+    }
+
+    @Test
+    void testLatencyOfTasksQueuedBeforeMetrics() {
+        final VirtualTimeScheduler scheduler = new VirtualTimeScheduler();
+        scheduler.advanceBy(Duration.ofHours(1));
+        final ConcurrentTaskQueue<String> taskQueue = new ConcurrentTaskQueue<>(Duration.ofSeconds(5), ConcurrentTaskQueue.Mode.DRAIN, scheduler);
+        taskQueue.submit(() -> "N", result -> { });
+        final QueueMetrics metrics = taskQueue.enableMetrics("testLatencyOfTasksQueuedBeforeMetrics");
+        scheduler.advanceBy(Duration.ofMillis(10));
+        scheduler.runUntilIdle();
+
+        // 提交时还没有启用指标，延迟仍然从提交的时间算起，而不是从时钟的零点
+        final LatencyHistogram latency = metrics.getLatencyHistogram(ConcurrentTaskQueue.Priority.NORMAL);
+        assertEquals(1, latency.getCount());
+        assertTrue(latency.getMaxNanos() < Duration.ofSeconds(1).toNanos());
+        taskQueue.shutdown();
+    }
+
+    @Test
+    void testAgingPreventsStarvation() {
+        final VirtualTimeScheduler scheduler = new VirtualTimeScheduler();
+        final ConcurrentTaskQueue<String> taskQueue = new ConcurrentTaskQueue<>(Duration.ofSeconds(5), ConcurrentTaskQueue.Mode.DRAIN, scheduler);
+        taskQueue.setAging(ConcurrentTaskQueue.Priority.BACKGROUND, Duration.ofMillis(300));
+        final List<String> done = new ArrayList<>();
+        taskQueue.submit(() -> "B", done::add, ConcurrentTaskQueue.Priority.BACKGROUND);
+        for (int i = 0; i < 6; i++) {
+            final String name = "N" + i;
+            taskQueue.submit(() -> {
+                try {
+                    scheduler.sleep(Duration.ofMillis(100));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return name;
+            }, done::add);
+        }
+        scheduler.runUntilIdle();
+
+        // 后台任务等待 300 毫秒之后被提升，不用等所有 NORMAL 任务完成
+        assertEquals(List.of("N0", "N1", "N2", "B", "N3", "N4", "N5"), done);
+        assertEquals(1, taskQueue.getAgedCount());
+        taskQueue.shutdown();
+    }
+
+    @Test
+    void testAgedTasksDoNotBlockHigherPriorities() {
+        final VirtualTimeScheduler scheduler = new VirtualTimeScheduler();
+        final ConcurrentTaskQueue<String> taskQueue = new ConcurrentTaskQueue<>(Duration.ofSeconds(5), ConcurrentTaskQueue.Mode.DRAIN, scheduler);
+        taskQueue.setAging(ConcurrentTaskQueue.Priority.BACKGROUND, Duration.ZERO);
+        final List<String> done = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            final String name = "B" + i;
+            taskQueue.submit(() -> name, done::add, ConcurrentTaskQueue.Priority.BACKGROUND);
+        }
+        for (int i = 0; i < 3; i++) {
+            final String name = "I" + i;
+            taskQueue.submit(() -> name, done::add, ConcurrentTaskQueue.Priority.INTERACTIVE);
+        }
+        scheduler.runUntilIdle();
+
+        // 所有后台任务都已超过老化时间，但两次提升之间总有一个按优先级选出的任务
+        assertEquals(List.of("B0", "I0", "B1", "I1", "B2", "I2"), done);
+        taskQueue.shutdown();
+    }
+
+    @Test
+    void testDropOldestDropsLowestPriorityFirst() {
+        final VirtualTimeScheduler scheduler = new VirtualTimeScheduler();
+        final ConcurrentTaskQueue<String> taskQueue = new ConcurrentTaskQueue<>(Duration.ofSeconds(5), ConcurrentTaskQueue.Mode.DRAIN, scheduler);
+        taskQueue.setCapacity(2, ConcurrentTaskQueue.OverflowPolicy.DROP_OLDEST);
+        final List<String> done = new ArrayList<>();
+        taskQueue.submit(() -> "I", done::add, ConcurrentTaskQueue.Priority.INTERACTIVE);
+        taskQueue.submit(() -> "B", done::add, ConcurrentTaskQueue.Priority.BACKGROUND);
+        taskQueue.submit(() -> "N", done::add);
+        scheduler.runUntilIdle();
+
+        assertEquals(List.of("I", "N"), done);
+        assertEquals(1, taskQueue.getDroppedOldestCount());
+        taskQueue.shutdown();
+    }
+
+
+    @Test
+    void testDropOldestKeepsForcedTasksAndPauses() {
+        final VirtualTimeScheduler scheduler = new VirtualTimeScheduler();
+        final ConcurrentTaskQueue<String> taskQueue = new ConcurrentTaskQueue<>(Duration.ofSeconds(5), ConcurrentTaskQueue.Mode.DRAIN, scheduler);
+        taskQueue.setCapacity(2, ConcurrentTaskQueue.OverflowPolicy.DROP_OLDEST);
+        final List<String> done = new ArrayList<>();
+        taskQueue.forceSubmit(() -> "marker", done::add);
+        taskQueue.pause(Duration.ofSeconds(1));
+        taskQueue.submit(() -> "A", done::add);
+        taskQueue.submit(() -> "B", done::add);
+        taskQueue.submit(() -> "C", done::add);
+        scheduler.advanceBy(Duration.ofSeconds(1));
+
+        // 标记和暂停占着容量但不会被丢弃，丢弃的只有普通任务
+        assertEquals(List.of("marker", "C"), done);
+        assertEquals(2, taskQueue.getDroppedOldestCount());
+        assertEquals(Duration.ofSeconds(1), scheduler.now());
+        assertFalse(scheduler.hasPendingWork());
+        taskQueue.shutdown();
+    }
+}
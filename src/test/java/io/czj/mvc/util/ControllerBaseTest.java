@@ -0,0 +1,375 @@
+package io.czj.mvc.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @Author: chenzejin
+ * @Date: 2022/1/15
+ */
+public class ControllerBaseTest {
+
+    private TestModel model;
+    private ControllerBase<TestModel> controller;
+
+    @BeforeEach
+    void setup() {
+        model = new TestModel();
+        controller = new ControllerBase<>(model) {
+        };
+    }
+
+    @Test
+    void testInitialization() {
+        assertSame(model, controller.getModel());
+    }
+
+    @Test
+    void testSetValue() {
+        int newInt = 42;
+        boolean newBool = true;
+        controller.setValue(model.someInt, newInt);
+        controller.setValue(model.someBoolean, newBool);
+        controller.awaitCompletion();
+        assertEquals(newInt, model.someInt.getValue());
+        assertEquals(newBool, model.someBoolean.getValue());
+    }
+
+    @Test
+    void testToggle() {
+        model.someBoolean.setValue(true);
+        controller.toggle(model.someBoolean);
+        controller.awaitCompletion();
+        assertFalse(model.someBoolean.getValue());
+        controller.toggle(model.someBoolean);
+        controller.awaitCompletion();
+        assertTrue(model.someBoolean.getValue());
+    }
+
+    @Test
+    void testCoalescing() {
+        ControllerBase<TestModel> coalescingController = new ControllerBase<>(model) {
+            {
+                setCoalescing(true);
+            }
+        };
+        List<Integer> seen = Collections.synchronizedList(new ArrayList<>());
+        model.someInt.onChange((oldValue, newValue) -> seen.add(newValue));
+        seen.clear();
+
+        // 阻塞工作线程，这样后面的写操作都在等待中
+        CountDownLatch blocker = new CountDownLatch(1);
+        coalescingController.async(() -> {
+            try {
+                blocker.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        for (int i = 0; i < 1000; i++) {
+            coalescingController.setValue(model.someInt, i);
+        }
+        blocker.countDown();
+        coalescingController.awaitCompletion();
+
+        assertEquals(999, model.someInt.getValue());
+        assertEquals(List.of(999), seen);
+        assertEquals(999, coalescingController.getCoalescedWriteCount());
+        coalescingController.shutdown();
+    }
+
+    @Test
+    void testCoalescingKeepsOrderAndIncrements() {
+        ControllerBase<TestModel> coalescingController = new ControllerBase<>(model) {
+            {
+                setCoalescing(true);
+            }
+        };
+        List<String> seen = Collections.synchronizedList(new ArrayList<>());
+        model.someInt.onChange((oldValue, newValue) -> seen.add("int " + newValue));
+        model.someBoolean.onChange((oldValue, newValue) -> seen.add("bool " + newValue));
+        seen.clear();
+
+        CountDownLatch blocker = new CountDownLatch(1);
+        coalescingController.async(() -> {
+            try {
+                blocker.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        for (int i = 0; i < 10; i++) {
+            coalescingController.increase(model.someInt);
+        }
+        coalescingController.decrease(model.someInt);
+        coalescingController.toggle(model.someBoolean);
+        coalescingController.toggle(model.someBoolean);
+        coalescingController.toggle(model.someBoolean);
+        coalescingController.increase(model.someInt);
+        blocker.countDown();
+        coalescingController.awaitCompletion();
+
+        // 73 + 10 - 1 在一次写操作中，然后是切换，然后才是最后一次 increase
+        assertEquals(List.of("int 82", "bool true", "int 83"), seen);
+        assertEquals(12, coalescingController.getCoalescedWriteCount());
+        coalescingController.shutdown();
+    }
+
+    @Test
+    void testPrimitiveObservables() {
+        controller.increase(model.someCount);
+        controller.increase(model.someCount);
+        controller.decrease(model.someCount);
+        controller.setValue(model.someDouble, 2.5);
+        controller.toggle(model.someFlag);
+        controller.awaitCompletion();
+        assertEquals(1, model.someCount.getValue());
+        assertEquals(2.5, model.someDouble.getValue());
+        assertTrue(model.someFlag.getValue());
+    }
+
+    @Test
+    void testCoalescingPrimitiveObservables() {
+        ControllerBase<TestModel> coalescingController = new ControllerBase<>(model) {
+            {
+                setCoalescing(true);
+            }
+        };
+        CountDownLatch blocker = new CountDownLatch(1);
+        coalescingController.async(() -> {
+            try {
+                blocker.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        for (int i = 0; i < 100; i++) {
+            coalescingController.increase(model.someCount);
+        }
+        for (int i = 0; i < 100; i++) {
+            coalescingController.setValue(model.someDouble, i / 2.0);
+        }
+        blocker.countDown();
+        coalescingController.awaitCompletion();
+
+        assertEquals(100, model.someCount.getValue());
+        assertEquals(49.5, model.someDouble.getValue());
+        assertEquals(198, coalescingController.getCoalescedWriteCount());
+        coalescingController.shutdown();
+    }
+
+    @Test
+    void testVirtualThreads() {
+        // 在 JDK 21 之前会退回到平台线程，行为保持不变
+        ControllerBase<TestModel> virtualController = new ControllerBase<>(model) {
+            {
+                setVirtualThreads(true);
+            }
+        };
+        virtualController.pauseExecution(Duration.ofMillis(10));
+        virtualController.setValue(model.someInt, 42);
+        virtualController.increase(model.someCount);
+        virtualController.awaitCompletion();
+        assertEquals(42, model.someInt.getValue());
+        assertEquals(1, model.someCount.getValue());
+        virtualController.shutdown();
+    }
+
+    @Test
+    void testPartitionedActions() {
+        ControllerBase<TestModel> partitionedController = new ControllerBase<>(model) {
+            {
+                setPartitionParallelism(2);
+            }
+        };
+        List<String> log = Collections.synchronizedList(new ArrayList<>());
+        List<String> laneA = Collections.synchronizedList(new ArrayList<>());
+        List<String> laneB = Collections.synchronizedList(new ArrayList<>());
+        // 只有两个分区同时运行时才能通过这个屏障
+        CyclicBarrier bothRunning = new CyclicBarrier(2);
+        Runnable awaitOtherLane = () -> {
+            try {
+                bothRunning.await(5, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                log.add("not parallel");
+            }
+        };
+
+        partitionedController.asyncPartitioned("a", awaitOtherLane);
+        partitionedController.asyncPartitioned("b", awaitOtherLane);
+        for (int i = 0; i < 100; i++) {
+            String value = String.valueOf(i);
+            partitionedController.asyncPartitioned("a", () -> laneA.add(value));
+            partitionedController.asyncPartitioned("b", () -> laneB.add(value));
+        }
+        partitionedController.runLater(m -> log.add("barrier " + laneA.size() + " " + laneB.size()));
+        partitionedController.asyncPartitioned("a", () -> log.add("after barrier"));
+        partitionedController.awaitCompletion();
+
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            expected.add(String.valueOf(i));
+        }
+        assertEquals(expected, laneA);
+        assertEquals(expected, laneB);
+        assertEquals(List.of("barrier 100 100", "after barrier"), log);
+        partitionedController.shutdown();
+    }
+
+    @Test
+    void testMetrics() throws Exception {
+        MvcMetrics.setEnabled(true);
+        try {
+            ControllerBase<TestModel> measuredController = new ControllerBase<>(model) {
+            };
+            for (int i = 0; i < 10; i++) {
+                measuredController.setValue(model.someInt, i);
+            }
+            measuredController.awaitCompletion();
+
+            QueueMetrics queueMetrics = measuredController.getQueueMetrics();
+            assertEquals(11, queueMetrics.getSubmittedCount());
+            assertEquals(11, queueMetrics.getTodoHistogram().getCount());
+            assertEquals(0, queueMetrics.getFailedCount());
+            // someInt 从 73 变为 0..9，每次都通知侦听器
+            ObservableMetrics observableMetrics = model.someInt.enableMetrics("ignored");
+            assertEquals("TestModel.someInt", observableMetrics.getName());
+            assertEquals(10, observableMetrics.getDispatchCount());
+
+            ObjectName name = new ObjectName("io.czj.mvc:type=ConcurrentTaskQueue,name=" + ObjectName.quote(queueMetrics.getName()));
+            assertEquals(11L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "SubmittedCount"));
+
+            measuredController.shutdown();
+            assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+        } finally {
+            MvcMetrics.setEnabled(false);
+        }
+    }
+
+    @Test
+    void testBackpressureReject() throws InterruptedException {
+        final TestModel model = new TestModel();
+        final List<Object> rejected = Collections.synchronizedList(new ArrayList<>());
+        final ControllerBase<TestModel> boundedController = new ControllerBase<>(model) {
+            {
+                setBackpressure(1, ConcurrentTaskQueue.OverflowPolicy.REJECT);
+            }
+
+            @Override
+            protected void onActionRejected(Supplier<TestModel> action) {
+                rejected.add(action);
+            }
+        };
+        final CountDownLatch blocker = new CountDownLatch(1);
+        boundedController.async(() -> {
+            try {
+                blocker.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        boundedController.setValue(model.someCount, 1);
+        // 队列已满，后续写入被拒绝，也不会合并到已排队的写入中
+        boundedController.setValue(model.someCount, 2);
+        boundedController.increase(model.someCount);
+        blocker.countDown();
+        boundedController.awaitCompletion();
+
+        assertEquals(1, boundedController.get(model.someCount));
+        assertEquals(2, rejected.size());
+        assertEquals(2, boundedController.getActionQueue().getRejectedCount());
+        boundedController.shutdown();
+    }
+
+    @Test
+    void testUpdateModelIsTransactional() {
+        final TestModel model = new TestModel();
+        final ControllerBase<TestModel> transactionalController = new ControllerBase<>(model) {
+        };
+        final List<String> seen = Collections.synchronizedList(new ArrayList<>());
+        // 侦听器只看到完整的状态
+        model.someCount.onChange((oldValue, newValue) -> seen.add("count " + oldValue + "->" + newValue + " flag " + model.someFlag.getValue()));
+        final Runnable render = Transaction.batched(() -> seen.add("render " + model.someCount.getValue() + " " + model.someInt.getValue()));
+        model.someCount.onChange((oldValue, newValue) -> render.run());
+        model.someInt.onChange((oldValue, newValue) -> render.run());
+        seen.clear();
+
+        transactionalController.updateModel(
+                transactionalController.set(model.someCount, 5),
+                transactionalController.set(model.someInt, 42),
+                transactionalController.set(model.someCount, 7),
+                transactionalController.set(model.someFlag, true),
+                // 改了又改回原值，不通知
+                transactionalController.set(model.someDouble, 1.0),
+                transactionalController.set(model.someDouble, 0.0));
+        transactionalController.awaitCompletion();
+
+        assertEquals(List.of("count 0->7 flag true", "render 7 42"), seen);
+        transactionalController.shutdown();
+    }
+
+    @Test
+    void testCollections() {
+        final TestModel model = new TestModel();
+        final ControllerBase<TestModel> collectionController = new ControllerBase<>(model) {
+        };
+        final List<String> mirror = new ArrayList<>();
+        model.someList.onChange(change -> change.applyTo(mirror));
+
+        collectionController.addAll(model.someList, List.of("a", "b", "c"));
+        collectionController.replace(model.someList, 1, "B");
+        collectionController.remove(model.someList, 0);
+        collectionController.put(model.someMap, "size", 2);
+        collectionController.awaitCompletion();
+
+        assertEquals(List.of("B", "c"), model.someList.snapshot());
+        assertEquals(model.someList.snapshot(), mirror);
+        assertEquals(2, model.someMap.get("size"));
+        collectionController.shutdown();
+    }
+
+    @Test
+    void testInteractiveActionOvertakesBackgroundUpdates() {
+        final TestModel model = new TestModel();
+        final VirtualTimeScheduler scheduler = new VirtualTimeScheduler();
+        final ControllerBase<TestModel> priorityController = new ControllerBase<>(model) {
+        };
+        priorityController.setScheduler(scheduler);
+        final List<Integer> seenByClick = new ArrayList<>();
+
+        for (int i = 1; i <= 100; i++) {
+            priorityController.updateModel(ConcurrentTaskQueue.Priority.BACKGROUND, priorityController.set(model.someCount, i));
+        }
+        priorityController.async(ConcurrentTaskQueue.Priority.INTERACTIVE, () -> seenByClick.add(model.someCount.getValue()));
+        priorityController.awaitCompletion();
+
+        // 点击没有排在后台更新之后（只有提交时已经交给 executor 的第一个更新在它之前），awaitCompletion 仍然等待所有优先级的操作
+        assertEquals(List.of(1), seenByClick);
+        assertEquals(100, model.someCount.getValue());
+        priorityController.shutdown();
+    }
+
+    private static class TestModel {
+        final ObservableInt someCount = new ObservableInt(0);
+        final ObservableDouble someDouble = new ObservableDouble(0);
+        final ObservableBoolean someFlag = new ObservableBoolean(false);
+        final ObservableValue<Integer> someInt = new ObservableValue<>(73);
+        final ObservableValue<Boolean> someBoolean = new ObservableValue<>(false);
+        final ObservableModelList<String> someList = new ObservableModelList<>();
+        final ObservableModelMap<String, Integer> someMap = new ObservableModelMap<>();
+    }
+
+}
@@ -0,0 +1,94 @@
+package io.czj.mvc.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConversionCacheTest {
+
+    @Test
+    void testConvertsOnceAndEvictsLeastRecentlyShown() {
+        AtomicInteger conversions = new AtomicInteger(0);
+        List<Runnable> background = new ArrayList<>();
+        List<String> converted = new ArrayList<>();
+        ConversionCache<Integer, String> cache = new ConversionCache<>(i -> {
+            conversions.incrementAndGet();
+            return "#" + i;
+        }, 3, background::add, Runnable::run, (element, result) -> converted.add(result));
+
+        cache.request(1);
+        cache.request(1);
+        assertNull(cache.get(1));
+        // 转换在后台进行，重复的请求只转换一次
+        assertEquals(1, background.size());
+        background.remove(0).run();
+        assertEquals("#1", cache.get(1));
+        assertEquals(List.of("#1"), converted);
+
+        for (int i = 2; i <= 4; i++) {
+            cache.request(i);
+        }
+        background.forEach(Runnable::run);
+        assertEquals(3, cache.size());
+        assertFalse(cache.contains(1));
+        assertEquals(4, conversions.get());
+
+        // 视口变小时缓存立即缩小，保留最近显示的元素
+        cache.get(2);
+        cache.setCapacity(1);
+        assertEquals(1, cache.size());
+        assertTrue(cache.contains(2));
+    }
+
+    @Test
+    void testFailedConversionCanBeRequestedAgain() {
+        AtomicInteger conversions = new AtomicInteger(0);
+        List<Runnable> background = new ArrayList<>();
+        List<String> converted = new ArrayList<>();
+        ConversionCache<Integer, String> cache = new ConversionCache<>(i -> {
+            if (conversions.incrementAndGet() == 1) {
+                throw new IllegalStateException("first conversion fails");
+            }
+            return "#" + i;
+        }, 3, background::add, Runnable::run, (element, result) -> converted.add(result));
+
+        cache.request(1);
+        background.remove(0).run();
+        assertFalse(cache.contains(1));
+        assertTrue(converted.isEmpty());
+
+        // 失败的元素不再留在 inFlight 中，所以可以重新请求
+        cache.request(1);
+        assertEquals(1, background.size());
+        background.remove(0).run();
+        assertEquals("#1", cache.get(1));
+        assertEquals(List.of("#1"), converted);
+    }
+
+    @Test
+    void testEqualElementsShareOneConversion() {
+        List<Runnable> background = new ArrayList<>();
+        List<String> converted = new ArrayList<>();
+        ConversionCache<String, String> cache = new ConversionCache<>(String::toUpperCase, 3, background::add, Runnable::run,
+                (element, result) -> converted.add(element));
+        String first = new String("a");
+        String second = new String("a");
+
+        cache.request(first);
+        cache.request(second);
+        assertEquals(1, background.size());
+        background.remove(0).run();
+
+        // 完成的转换可能属于相等的另一个实例，单元格必须按 equals 匹配
+        assertTrue(cache.contains(second));
+        assertEquals("A", cache.get(second));
+        assertEquals(1, converted.size());
+        assertNotSame(second, converted.get(0));
+        assertEquals(second, converted.get(0));
+    }
+
+}
@@ -0,0 +1,57 @@
+package io.czj.mvc.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MemoizingConverterTest {
+
+    @Test
+    void testLru() {
+        List<Integer> converted = new ArrayList<>();
+        MemoizingConverter<Integer, String> converter = MemoizingConverter.lru(value -> {
+            converted.add(value);
+            return "#" + value;
+        }, 2);
+
+        assertEquals("#1", converter.apply(1));
+        assertEquals("#2", converter.apply(2));
+        assertEquals("#1", converter.apply(1));
+        // 2 是最久没有使用的
+        assertEquals("#3", converter.apply(3));
+        assertEquals("#1", converter.apply(1));
+        assertEquals("#2", converter.apply(2));
+
+        assertEquals(List.of(1, 2, 3, 2), converted);
+        assertEquals(2, converter.getHitCount());
+        assertEquals(4, converter.getMissCount());
+        assertEquals(2, converter.getEvictionCount());
+        assertEquals(2, converter.size());
+        assertEquals(1.0 / 3, converter.getHitRate(), 1e-9);
+    }
+
+    @Test
+    void testLfu() {
+        List<Boolean> converted = new ArrayList<>();
+        MemoizingConverter<Boolean, String> converter = MemoizingConverter.lfu(value -> {
+            converted.add(value);
+            return Boolean.TRUE.equals(value) ? "on" : "off";
+        }, 2);
+
+        converter.apply(true);
+        converter.apply(true);
+        converter.apply(false);
+        // false 使用次数最少
+        converter.apply(null);
+        converter.apply(true);
+        converter.apply(null);
+
+        assertEquals(3, converted.size());
+        assertEquals(3, converter.getHitCount());
+        assertEquals(1, converter.getEvictionCount());
+    }
+
+}
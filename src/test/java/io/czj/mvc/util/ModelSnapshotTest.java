@@ -0,0 +1,184 @@
+package io.czj.mvc.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ModelSnapshotTest {
+
+    private static class TestModel {
+        final ObservableInt count = new ObservableInt(0);
+        final ObservableDouble level = new ObservableDouble(0.5);
+        final ObservableBoolean flag = new ObservableBoolean(false);
+        final ObservableValue<String> name = new ObservableValue<>("initial");
+        final ObservableValue<LocalDate> date = new ObservableValue<>(LocalDate.of(2022, 1, 15));
+        final transient ObservableValue<String> info = new ObservableValue<>("not saved");
+    }
+
+    private static final SnapshotCodec<LocalDate> DATE = new SnapshotCodec<>() {
+        @Override
+        public byte[] encode(LocalDate value) {
+            return SnapshotCodec.LONG.encode(value.toEpochDay());
+        }
+
+        @Override
+        public LocalDate decode(byte[] bytes) {
+            return LocalDate.ofEpochDay(SnapshotCodec.LONG.decode(bytes));
+        }
+    };
+
+    @Test
+    void testSaveAndRestore(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("model.snapshot");
+        TestModel model = new TestModel();
+        try (ModelSnapshot snapshot = new ModelSnapshot(model, file).withCodec(LocalDate.class, DATE)) {
+            assertEquals(0, snapshot.restore());
+            model.count.setValue(42);
+            model.level.setValue(0.75);
+            model.flag.setValue(true);
+            model.name.setValue("saved");
+            model.date.setValue(LocalDate.of(2023, 3, 1));
+            model.info.setValue("changed");
+        }
+
+        TestModel restored = new TestModel();
+        try (ModelSnapshot snapshot = new ModelSnapshot(restored, file).withCodec(LocalDate.class, DATE)) {
+            assertEquals(5, snapshot.restore());
+        }
+        assertEquals(42, restored.count.getValue());
+        assertEquals(0.75, restored.level.getValue());
+        assertTrue(restored.flag.getValue());
+        assertEquals("saved", restored.name.getValue());
+        assertEquals(LocalDate.of(2023, 3, 1), restored.date.getValue());
+        assertEquals("not saved", restored.info.getValue());
+    }
+
+    @Test
+    void testFlushRewritesOnlyDirtyFields(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("model.snapshot");
+        TestModel model = new TestModel();
+        try (ModelSnapshot snapshot = new ModelSnapshot(model, file)) {
+            snapshot.save();
+            long size = Files.size(file);
+            assertEquals(0, snapshot.flush());
+
+            model.count.setValue(1);
+            model.name.setValue("longer");
+            assertEquals(2, snapshot.flush());
+            // 值放得下，文件没有重写
+            assertEquals(size, Files.size(file));
+
+            model.name.setValue("a value that no longer fits into its slot");
+            snapshot.flush();
+            assertTrue(Files.size(file) > size);
+        }
+
+        TestModel restored = new TestModel();
+        try (ModelSnapshot snapshot = new ModelSnapshot(restored, file)) {
+            // 没有编码的 LocalDate 字段被忽略
+            assertEquals(4, snapshot.restore());
+        }
+        assertEquals(1, restored.count.getValue());
+        assertEquals("a value that no longer fits into its slot", restored.name.getValue());
+    }
+
+    @Test
+    void testPeriodicFlushWithoutClose(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("model.snapshot");
+        TestModel model = new TestModel();
+        ModelSnapshot snapshot = new ModelSnapshot(model, file).startFlushing(Duration.ofMillis(10));
+        model.count.setValue(3);
+        model.name.setValue("a value that no longer fits into its slot");
+        // 不调用 close，模拟崩溃前的状态：定期写入已经把变化保存下来
+        TestModel restored = new TestModel();
+        for (int i = 0; i < 200 && restored.count.getValue() != 3; i++) {
+            Thread.sleep(10);
+            try (ModelSnapshot reader = new ModelSnapshot(restored, file)) {
+                reader.restore();
+            }
+        }
+        assertEquals(3, restored.count.getValue());
+        assertEquals("a value that no longer fits into its slot", restored.name.getValue());
+        // 重写整个文件时使用的临时文件已经替换了原文件
+        assertFalse(Files.exists(dir.resolve("model.snapshot.tmp")));
+        snapshot.close();
+    }
+
+    @Test
+    void testCorruptFileIsIgnored(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("model.snapshot");
+        Files.write(file, new byte[]{1, 2, 3});
+        TestModel model = new TestModel();
+        try (ModelSnapshot snapshot = new ModelSnapshot(model, file)) {
+            assertEquals(0, snapshot.restore());
+            model.count.setValue(7);
+        }
+        TestModel restored = new TestModel();
+        try (ModelSnapshot snapshot = new ModelSnapshot(restored, file)) {
+            snapshot.restore();
+        }
+        assertEquals(7, restored.count.getValue());
+    }
+
+    @Test
+    void testTornSlotIsSkipped(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("model.snapshot");
+        TestModel model = new TestModel();
+        model.count.setValue(5);
+        model.name.setValue("saved");
+        try (ModelSnapshot snapshot = new ModelSnapshot(model, file)) {
+            snapshot.save();
+        }
+        // 模拟就地重写时崩溃：name 的槽中只写了一部分新值
+        byte[] bytes = Files.readAllBytes(file);
+        int value = indexOf(bytes, "saved".getBytes());
+        bytes[value] = 'X';
+        Files.write(file, bytes);
+
+        TestModel restored = new TestModel();
+        try (ModelSnapshot snapshot = new ModelSnapshot(restored, file)) {
+            assertEquals(3, snapshot.restore());
+        }
+        assertEquals(5, restored.count.getValue());
+        assertEquals("initial", restored.name.getValue());
+    }
+
+    @Test
+    void testTruncatedFileRestoresNothing(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("model.snapshot");
+        TestModel model = new TestModel();
+        model.count.setValue(5);
+        model.name.setValue("saved");
+        try (ModelSnapshot snapshot = new ModelSnapshot(model, file)) {
+            snapshot.save();
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, indexOf(bytes, "saved".getBytes())));
+
+        // 前面的字段完整，但文件不完整，所以一个字段也不恢复
+        TestModel restored = new TestModel();
+        try (ModelSnapshot snapshot = new ModelSnapshot(restored, file)) {
+            assertEquals(0, snapshot.restore());
+        }
+        assertEquals(0, restored.count.getValue());
+        assertEquals("initial", restored.name.getValue());
+    }
+
+    private static int indexOf(byte[] bytes, byte[] part) {
+        for (int i = 0; i + part.length <= bytes.length; i++) {
+            if (Arrays.equals(bytes, i, i + part.length, part, 0, part.length)) {
+                return i;
+            }
+        }
+        throw new AssertionError("not found");
+    }
+
+}
@@ -0,0 +1,116 @@
+package io.czj.mvc.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ObservableModelListTest {
+
+    @Test
+    void testIncrementalChanges() {
+        ObservableModelList<String> list = new ObservableModelList<>(List.of("a", "b"));
+        List<ListChange<String>> changes = new ArrayList<>();
+        List<String> mirror = new ArrayList<>(List.of("stale"));
+        list.onChange(change -> {
+            changes.add(change);
+            change.applyTo(mirror);
+        });
+        assertTrue(changes.get(0).isReset());
+        assertEquals(List.of("a", "b"), mirror);
+
+        list.add("c");
+        list.set(0, "A");
+        list.add(1, "x");
+        list.removeRange(2, 4);
+        assertEquals(List.of("A", "x"), list.snapshot());
+        assertEquals(list.snapshot(), mirror);
+
+        ListChange.Range<String> replace = changes.get(2).getRanges().get(0);
+        assertEquals(ListChange.Range.Type.REPLACE, replace.getType());
+        assertEquals(List.of("a"), replace.getRemoved());
+        ListChange.Range<String> remove = changes.get(4).getRanges().get(0);
+        assertEquals(ListChange.Range.Type.REMOVE, remove.getType());
+        assertEquals(List.of("b", "c"), remove.getRemoved());
+    }
+
+    @Test
+    void testTransactionMergesAppends() {
+        ObservableModelList<Integer> list = new ObservableModelList<>();
+        List<ListChange<Integer>> changes = new ArrayList<>();
+        List<String> mirror = new ArrayList<>();
+        list.onChange(changes::add);
+        list.onChange(change -> change.map(i -> "#" + i).applyTo(mirror));
+        changes.clear();
+
+        Transaction.run(() -> {
+            for (int i = 0; i < 1000; i++) {
+                list.add(i);
+            }
+            list.remove(0);
+        });
+        assertEquals(1, changes.size());
+        // 1000 次 add 合并为一个区间
+        assertEquals(2, changes.get(0).getRanges().size());
+        assertEquals(1000, changes.get(0).getRanges().get(0).getAdded().size());
+        assertEquals(999, mirror.size());
+        assertEquals("#1", mirror.get(0));
+    }
+
+    @Test
+    void testMapChanges() {
+        ObservableModelMap<String, Integer> map = new ObservableModelMap<>();
+        map.put("a", 1);
+        List<MapChange<String, Integer>> changes = new ArrayList<>();
+        Map<String, Integer> mirror = new HashMap<>();
+        map.onChange(change -> {
+            changes.add(change);
+            change.applyTo(mirror);
+        });
+        changes.clear();
+
+        map.put("b", 2);
+        map.put("b", 2);
+        assertEquals(1, changes.size());
+
+        Transaction.run(() -> {
+            map.put("c", 3);
+            map.remove("c");
+            map.put("a", 10);
+            map.remove("b");
+        });
+        assertEquals(2, changes.size());
+        // c 在事务中加入又删除，没有净变化
+        assertEquals(List.of("a", "b"), new ArrayList<>(changes.get(1).getEntries().keySet()));
+        assertEquals(map.snapshot(), mirror);
+    }
+
+    @Test
+    void testRegistrationDuringConcurrentChanges() throws InterruptedException {
+        ObservableModelList<Integer> list = new ObservableModelList<>();
+        ObservableModelMap<Integer, Integer> map = new ObservableModelMap<>();
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 20_000; i++) {
+                list.add(i);
+                map.put(i % 100, i);
+            }
+        });
+        writer.start();
+        // 在写入的同时注册：reset 之后的每个变化必须恰好收到一次，镜像才会与原件一致
+        List<Integer> listMirror = new ArrayList<>();
+        Map<Integer, Integer> mapMirror = new HashMap<>();
+        while (list.size() < 1000) {
+            Thread.onSpinWait();
+        }
+        list.onChange(change -> change.applyTo(listMirror));
+        map.onChange(change -> change.applyTo(mapMirror));
+        writer.join();
+        assertEquals(list.snapshot(), listMirror);
+        assertEquals(map.snapshot(), mapMirror);
+    }
+
+}
@@ -0,0 +1,209 @@
+package io.czj.mvc.util;
+
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @Author: chenzejin
+ * @Date: 2022/1/15
+ */
+class ObservableValueTest {
+
+    @Test
+    void testInitialization() {
+        ObservableValue<Boolean> v = new ObservableValue<>(false);
+        assertFalse(v.getValue());
+        v = new ObservableValue<>(true);
+        assertTrue(v.getValue());
+    }
+
+    @Test
+    void testSetValue() {
+        ObservableValue<Boolean> observableValue = new ObservableValue<>(false);
+        observableValue.setValue(true);
+        assertTrue(observableValue.getValue());
+        observableValue.setValue(false);
+        assertFalse(observableValue.getValue());
+    }
+
+    @Test
+    void testSetListener() {
+        String initialValue = "initial Value";
+        String firstValue = "first value";
+        ObservableValue<String> observableValue = new ObservableValue<>(initialValue);
+        AtomicInteger counter = new AtomicInteger(0);
+        AtomicReference<String> foundOld = new AtomicReference<>();
+        AtomicReference<String> foundNew = new AtomicReference<>();
+        observableValue.onChange((oldValue, newValue) -> {
+            counter.getAndIncrement();
+            foundOld.set(oldValue);
+            foundNew.set(newValue);
+        });
+        // 注册时调用监听器
+        assertEquals(1, counter.get());
+        // oldValue 的初始值是当前值
+        assertEquals(initialValue, foundOld.get());
+        // 当前值
+        assertEquals(initialValue, foundNew.get());
+        observableValue.setValue(initialValue);
+        // 值保持不变,未调用侦听器
+        assertEquals(1, counter.get());
+        observableValue.setValue(firstValue);
+        // 值发生了变化；监听器被调用
+        assertEquals(2, counter.get());
+        assertEquals(initialValue, foundOld.get());
+        assertEquals(firstValue, foundNew.get());
+    }
+
+    @Test
+    void testListenerOrderAndRegistrationDuringDispatch() {
+        ObservableValue<Integer> observableValue = new ObservableValue<>(0);
+        List<String> log = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            int finalI = i;
+            observableValue.onChange((oldValue, newValue) -> log.add(finalI + ":" + newValue));
+        }
+        // 在通知期间注册的侦听器不会收到当前变化，但会立即以当前值被调用
+        observableValue.onChange((oldValue, newValue) -> {
+            if (newValue == 1) {
+                observableValue.onChange((o, n) -> log.add("late:" + n));
+            }
+        });
+        log.clear();
+
+        observableValue.setValue(1);
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            expected.add(i + ":1");
+        }
+        expected.add("late:1");
+        assertEquals(expected, log);
+
+        log.clear();
+        observableValue.setValue(2);
+        expected.clear();
+        for (int i = 0; i < 20; i++) {
+            expected.add(i + ":2");
+        }
+        expected.add("late:2");
+        assertEquals(expected, log);
+    }
+
+    @Test
+    void testDispose() {
+        ObservableValue<Integer> observableValue = new ObservableValue<>(0);
+        List<Integer> log = new ArrayList<>();
+        Subscription subscription = observableValue.onChange((oldValue, newValue) -> log.add(newValue));
+        observableValue.setValue(1);
+        subscription.dispose();
+        subscription.dispose();
+        observableValue.setValue(2);
+        assertEquals(List.of(0, 1), log);
+    }
+
+    @Test
+    void testDisposeSharedListener() {
+        ObservableValue<Integer> observableValue = new ObservableValue<>(0);
+        List<Integer> log = new ArrayList<>();
+        ObservableValue.ValueChangeListener<Integer> listener = (oldValue, newValue) -> log.add(newValue);
+        Subscription first = observableValue.onChange(listener);
+        Subscription second = observableValue.onChange(listener);
+        log.clear();
+
+        // 同一个侦听器只通知一次，取消其中一个注册不影响另一个
+        observableValue.setValue(1);
+        first.dispose();
+        first.dispose();
+        observableValue.setValue(2);
+        assertEquals(List.of(1, 2), log);
+
+        second.dispose();
+        observableValue.setValue(3);
+        assertEquals(List.of(1, 2), log);
+    }
+
+    @Test
+    void testStrongAndWeakRegistrationsAreIndependent() {
+        ObservableValue<Integer> observableValue = new ObservableValue<>(0);
+        List<Integer> log = new ArrayList<>();
+        ObservableValue.ValueChangeListener<Integer> listener = (oldValue, newValue) -> log.add(newValue);
+        Subscription weak = observableValue.onChangeWeak(listener);
+        Subscription strong = observableValue.onChange(listener);
+        log.clear();
+
+        // 弱注册不参与去重，两个注册各通知一次
+        observableValue.setValue(1);
+        assertEquals(List.of(1, 1), log);
+
+        weak.dispose();
+        observableValue.setValue(2);
+        assertEquals(List.of(1, 1, 2), log);
+
+        strong.dispose();
+        observableValue.setValue(3);
+        assertEquals(List.of(1, 1, 2), log);
+    }
+
+    @Test
+    void testWeakListenerIsCollected() throws InterruptedException {
+        ObservableValue<Integer> observableValue = new ObservableValue<>(0);
+        List<Integer> log = new ArrayList<>();
+        ObservableValue.ValueChangeListener<Integer> listener = (oldValue, newValue) -> log.add(newValue);
+        WeakReference<ObservableValue.ValueChangeListener<Integer>> reference = new WeakReference<>(listener);
+        Subscription subscription = observableValue.onChangeWeak(listener);
+        listener = null;
+        // 持有句柄期间侦听器不会被回收
+        collectGarbage(reference);
+        observableValue.setValue(1);
+        assertEquals(List.of(0, 1), log);
+
+        subscription = null;
+        collectGarbage(reference);
+        assertNull(reference.get());
+        observableValue.setValue(2);
+        assertEquals(List.of(0, 1), log);
+    }
+
+    static void collectGarbage(WeakReference<?> reference) throws InterruptedException {
+        for (int i = 0; i < 10 && null != reference.get(); i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+    }
+
+    @Disabled("This test sometimes fails, most probably because testcase is wrong, not implementation")
+    @Test
+    void testEdgeCase() {
+        ObservableValue<String> observableValue = new ObservableValue<>("start");
+        List<String> log1 = new ArrayList<>();
+        List<String> log2 = new ArrayList<>();
+        observableValue.onChange((oldValue, newValue) -> {
+            log1.add(oldValue);
+            log1.add(newValue);
+            if (newValue.equals("second")) {
+                observableValue.setValue("third");
+            }
+        });
+        observableValue.onChange((oldValue, newValue) -> {
+            log2.add(oldValue);
+            log2.add(newValue);
+        });
+        assertArrayEquals(new String[]{"start", "start"}, log1.toArray(new String[0]));
+        assertArrayEquals(new String[]{"start", "start"}, log2.toArray(new String[0]));
+        observableValue.setValue("second");
+        // 第一个观察者已经看到了所有的价值变化
+        assertArrayEquals(new String[]{"start", "start", "start", "second", "second", "third"}, log1.toArray(new String[0]));
+
+        // 第二个观察者可能_没有_看到所有值的变化，但他至少看到了最后一次正确的值变化！！！
+        assertArrayEquals(new String[]{"start", "start", "second", "third"}, log2.toArray(new String[0]));
+    }
+
+}
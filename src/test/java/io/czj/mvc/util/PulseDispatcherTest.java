@@ -0,0 +1,43 @@
+package io.czj.mvc.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PulseDispatcherTest {
+
+    @Test
+    void testLatestUpdatePerTargetInOneFlush() {
+        // 给定一个手动执行的 "FX 线程"
+        List<Runnable> fxQueue = new ArrayList<>();
+        PulseDispatcher dispatcher = new PulseDispatcher(fxQueue::add);
+        List<String> applied = new ArrayList<>();
+        Object first = new Object();
+        Object second = new Object();
+
+        // 当同一个目标在 FX 线程处理之前多次变化时
+        for (int i = 0; i < 100; i++) {
+            int finalI = i;
+            dispatcher.dispatch(first, () -> applied.add("first " + finalI));
+        }
+        dispatcher.dispatch(second, () -> applied.add("second"));
+
+        // 那么只安排了一次 runLater，并且每个目标只执行最新的值
+        assertEquals(1, fxQueue.size());
+        fxQueue.remove(0).run();
+        assertEquals(List.of("first 99", "second"), applied);
+        assertEquals(101, dispatcher.getDispatchedCount());
+        assertEquals(99, dispatcher.getSkippedCount());
+        assertEquals(1, dispatcher.getFlushCount());
+
+        // 在 flush 之后的变化会安排新的 runLater
+        dispatcher.dispatch(first, () -> applied.add("first again"));
+        assertEquals(1, fxQueue.size());
+        fxQueue.remove(0).run();
+        assertEquals(List.of("first 99", "second", "first again"), applied);
+    }
+
+}
@@ -0,0 +1,100 @@
+package io.czj.mvc.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimiterTest {
+
+    /**
+     * 由测试手动结束的计时器，代替 FX 的 PauseTransition。
+     */
+    private static class ManualTimer implements RateLimiter.Timer {
+        private Runnable onFinished;
+        private boolean running = false;
+        private int restarts = 0;
+
+        @Override
+        public void restart() {
+            running = true;
+            restarts++;
+        }
+
+        @Override
+        public boolean isRunning() {
+            return running;
+        }
+
+        void finish() {
+            assertTrue(running);
+            running = false;
+            onFinished.run();
+        }
+    }
+
+    private final List<Integer> received = new ArrayList<>();
+    private final ManualTimer timer = new ManualTimer();
+
+    private RateLimiter<Integer> limiter(RateLimiter.Kind kind) {
+        return new RateLimiter<>(kind, received::add, onFinished -> {
+            timer.onFinished = onFinished;
+            return timer;
+        });
+    }
+
+    @Test
+    void testDebounce() {
+        RateLimiter<Integer> debounce = limiter(RateLimiter.Kind.DEBOUNCE);
+        for (int i = 0; i < 100; i++) {
+            debounce.accept(i);
+        }
+        assertEquals(List.of(), received);
+        assertEquals(100, timer.restarts);
+        timer.finish();
+        assertEquals(List.of(99), received);
+        assertFalse(timer.isRunning());
+    }
+
+    @Test
+    void testThrottle() {
+        RateLimiter<Integer> throttle = limiter(RateLimiter.Kind.THROTTLE);
+        for (int i = 0; i < 100; i++) {
+            throttle.accept(i);
+        }
+        // 第一个值立即传递
+        assertEquals(List.of(0), received);
+        timer.finish();
+        // 周期结束时传递最后一个值并开始新的周期
+        assertEquals(List.of(0, 99), received);
+        assertTrue(timer.isRunning());
+        throttle.accept(100);
+        timer.finish();
+        assertEquals(List.of(0, 99, 100), received);
+        // 安静的周期结束后不再计时，下一个值又立即传递
+        timer.finish();
+        assertFalse(timer.isRunning());
+        throttle.accept(101);
+        assertEquals(List.of(0, 99, 100, 101), received);
+    }
+
+    @Test
+    void testSample() {
+        RateLimiter<Integer> sample = limiter(RateLimiter.Kind.SAMPLE);
+        for (int i = 0; i < 100; i++) {
+            sample.accept(i);
+        }
+        assertEquals(List.of(), received);
+        assertEquals(1, timer.restarts);
+        timer.finish();
+        assertEquals(List.of(99), received);
+        assertFalse(timer.isRunning());
+        sample.accept(100);
+        sample.accept(101);
+        timer.finish();
+        assertEquals(List.of(99, 101), received);
+    }
+
+}
@@ -0,0 +1,74 @@
+package io.czj.mvc.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RemoteProjectorTest {
+
+    private static class TestModel {
+        final ObservableInt counter = new ObservableInt(0);
+        final ObservableValue<String> name = new ObservableValue<>("initial");
+    }
+
+    @Test
+    void testSnapshotDeltasAndActions() throws Exception {
+        TestModel model = new TestModel();
+        ControllerBase<TestModel> controller = new ControllerBase<>(model) {
+        };
+        controller.setValue(model.name, "before");
+        controller.awaitCompletion();
+
+        RemoteProjector<TestModel, ControllerBase<TestModel>> projector = new RemoteProjector<>(controller,
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), Duration.ofMillis(10), Runnable::run)
+                .onAction("increase", c -> c.increase(model.counter))
+                .onAction("rename", SnapshotCodec.STRING, (c, name) -> c.setValue(model.name, name));
+        TestModel firstModel = new TestModel();
+        RemoteModelMirror first = new RemoteModelMirror(firstModel).connect(projector.getPort());
+        try {
+            assertTrue(first.awaitSnapshot(Duration.ofSeconds(5)));
+            assertEquals("before", firstModel.name.getValue());
+
+            for (int i = 1; i <= 100; i++) {
+                controller.setValue(model.counter, i);
+            }
+            controller.awaitCompletion();
+            await(() -> firstModel.counter.getValue() == 100);
+            // 一个刷新周期内的变化合并为一帧
+            assertTrue(projector.getDeltaCount() < 100);
+
+            // 后来的客户端先得到当前的状态
+            TestModel lateModel = new TestModel();
+            try (RemoteModelMirror late = new RemoteModelMirror(lateModel).connect(projector.getPort())) {
+                assertTrue(late.awaitSnapshot(Duration.ofSeconds(5)));
+                assertEquals(100, lateModel.counter.getValue());
+                assertEquals("before", lateModel.name.getValue());
+
+                late.sendAction("increase");
+                first.sendAction("rename", SnapshotCodec.STRING, "remote");
+                await(() -> model.counter.getValue() == 101 && "remote".equals(model.name.getValue()));
+                await(() -> lateModel.counter.getValue() == 101 && "remote".equals(firstModel.name.getValue()));
+                assertEquals(2, projector.getClientCount());
+            }
+            await(() -> projector.getClientCount() == 1);
+        } finally {
+            first.close();
+            projector.close();
+            controller.shutdown();
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "condition not reached in time");
+            Thread.sleep(5);
+        }
+    }
+
+}
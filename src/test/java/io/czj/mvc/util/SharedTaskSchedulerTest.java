@@ -0,0 +1,158 @@
+package io.czj.mvc.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SharedTaskSchedulerTest {
+
+    private static class TestModel {
+        final ObservableInt someInt = new ObservableInt(0);
+    }
+
+    @Test
+    void testManyControllersShareBoundedPool() {
+        SharedTaskScheduler scheduler = new SharedTaskScheduler(TaskScheduler.SYSTEM, 2);
+        List<TestModel> models = new ArrayList<>();
+        List<ControllerBase<TestModel>> controllers = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            TestModel model = new TestModel();
+            ControllerBase<TestModel> controller = new ControllerBase<>(model) {
+            };
+            controller.setScheduler(scheduler);
+            models.add(model);
+            controllers.add(controller);
+        }
+        for (int step = 1; step <= 20; step++) {
+            for (int i = 0; i < 200; i++) {
+                controllers.get(i).increase(models.get(i).someInt);
+            }
+        }
+        for (ControllerBase<TestModel> controller : controllers) {
+            controller.awaitCompletion();
+        }
+        for (TestModel model : models) {
+            assertEquals(20, model.someInt.getValue());
+        }
+        assertTrue(scheduler.getPoolSize() <= 2);
+    }
+
+    @Test
+    void testBusyLaneYields() throws InterruptedException {
+        SharedTaskScheduler scheduler = new SharedTaskScheduler(TaskScheduler.SYSTEM, 1);
+        ConcurrentTaskQueue<String> blocker = new ConcurrentTaskQueue<>(Duration.ofSeconds(5), ConcurrentTaskQueue.Mode.DRAIN, scheduler);
+        ConcurrentTaskQueue<String> busy = new ConcurrentTaskQueue<>(Duration.ofSeconds(5), ConcurrentTaskQueue.Mode.DRAIN, scheduler);
+        ConcurrentTaskQueue<String> other = new ConcurrentTaskQueue<>(Duration.ofSeconds(5), ConcurrentTaskQueue.Mode.DRAIN, scheduler);
+        List<String> log = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(2);
+
+        // 占住唯一的线程，直到两个队列都提交完
+        blocker.submit(() -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        });
+        for (int i = 0; i < 100; i++) {
+            busy.submit(() -> "busy", log::add);
+        }
+        busy.submit(() -> null, r -> done.countDown());
+        other.submit(() -> "other", log::add);
+        other.submit(() -> null, r -> done.countDown());
+        release.countDown();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(scheduler.drainQuantum(), log.indexOf("other"));
+    }
+
+    @Test
+    void testPauseDoesNotBlockOtherControllers() throws InterruptedException {
+        Duration pause = Duration.ofMinutes(1);
+        List<Runnable> resumes = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch pausesStarted = new CountDownLatch(2);
+        // 暂停的恢复不交给定时器，而是由测试决定什么时候执行，其余的交给系统时钟
+        TaskScheduler clock = new TaskScheduler() {
+            @Override
+            public ExecutorService newExecutor(int threads) {
+                return SYSTEM.newExecutor(threads);
+            }
+
+            @Override
+            public long nanoTime() {
+                return SYSTEM.nanoTime();
+            }
+
+            @Override
+            public Cancellable schedule(Runnable action, Duration delay) {
+                if (!pause.equals(delay)) {
+                    return SYSTEM.schedule(action, delay);
+                }
+                resumes.add(action);
+                pausesStarted.countDown();
+                return () -> {
+                };
+            }
+
+            @Override
+            public void sleep(Duration duration) throws InterruptedException {
+                SYSTEM.sleep(duration);
+            }
+
+            @Override
+            public boolean await(CountDownLatch latch, Duration timeout) throws InterruptedException {
+                return SYSTEM.await(latch, timeout);
+            }
+        };
+        SharedTaskScheduler scheduler = new SharedTaskScheduler(clock, 2);
+        List<ControllerBase<TestModel>> paused = new ArrayList<>();
+        List<TestModel> pausedModels = new ArrayList<>();
+        // 和线程池的线程一样多的控制器同时暂停
+        for (int i = 0; i < 2; i++) {
+            TestModel model = new TestModel();
+            ControllerBase<TestModel> controller = new ControllerBase<>(model) {
+            };
+            controller.setScheduler(scheduler);
+            controller.pauseExecution(pause);
+            controller.increase(model.someInt);
+            paused.add(controller);
+            pausedModels.add(model);
+        }
+        assertTrue(pausesStarted.await(5, TimeUnit.SECONDS));
+
+        TestModel model = new TestModel();
+        ControllerBase<TestModel> other = new ControllerBase<>(model) {
+        };
+        other.setScheduler(scheduler);
+        CountDownLatch otherDone = new CountDownLatch(1);
+        model.someInt.onChange((oldValue, newValue) -> {
+            if (1 == newValue) {
+                otherDone.countDown();
+            }
+        });
+        other.increase(model.someInt);
+
+        // 两个暂停都还没有结束，而暂停不占用线程，所以其他控制器照常执行
+        assertTrue(otherDone.await(5, TimeUnit.SECONDS));
+        for (TestModel pausedModel : pausedModels) {
+            assertEquals(0, pausedModel.someInt.getValue());
+        }
+
+        resumes.forEach(Runnable::run);
+        for (int i = 0; i < 2; i++) {
+            paused.get(i).awaitCompletion();
+            assertEquals(1, pausedModels.get(i).someInt.getValue());
+        }
+    }
+
+}
@@ -0,0 +1,27 @@
+package io.czj.mvc.util;
+
+import io.czj.mvc.templateapp.view.SomeGUI;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ViewResourcesTest {
+
+    @Test
+    void testStylesheetIsResolvedOnce() throws Exception {
+        ViewResources.prewarmStylesheets(SomeGUI.class, SomeGUI.STYLESHEETS).get(5, TimeUnit.SECONDS);
+        String stylesheet = ViewResources.stylesheet(SomeGUI.class, SomeGUI.STYLESHEETS[0]);
+        assertTrue(stylesheet.endsWith("/mvc/templateapp/style.css"));
+        assertSame(stylesheet, ViewResources.stylesheet(ViewResourcesTest.class, SomeGUI.STYLESHEETS[0]));
+    }
+
+    @Test
+    void testMissingResource() {
+        assertThrows(IllegalArgumentException.class, () -> ViewResources.stylesheet(ViewResourcesTest.class, "/does/not/exist.css"));
+        // 失败的结果也被缓存
+        assertThrows(IllegalArgumentException.class, () -> ViewResources.stylesheet(ViewResourcesTest.class, "/does/not/exist.css"));
+    }
+
+}
@@ -0,0 +1,99 @@
+package io.czj.mvc.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VirtualTimeSchedulerTest {
+
+    private static class TestModel {
+        final ObservableInt someInt = new ObservableInt(0);
+    }
+
+    @Test
+    void testPauseExecutionAdvancesVirtualTime() {
+        VirtualTimeScheduler scheduler = new VirtualTimeScheduler();
+        TestModel model = new TestModel();
+        ControllerBase<TestModel> controller = new ControllerBase<>(model) {
+        };
+        controller.setScheduler(scheduler);
+
+        long start = System.nanoTime();
+        controller.setValue(model.someInt, 1);
+        controller.pauseExecution(Duration.ofSeconds(3));
+        controller.setValue(model.someInt, 2);
+        // 在调用线程中执行，之前什么都不会发生
+        assertEquals(0, model.someInt.getValue());
+        controller.awaitCompletion();
+
+        assertEquals(2, model.someInt.getValue());
+        assertEquals(Duration.ofSeconds(3), scheduler.now());
+        assertTrue(System.nanoTime() - start < Duration.ofSeconds(1).toNanos());
+        assertFalse(scheduler.hasPendingWork());
+    }
+
+    @Test
+    void testMaxToDoTime() {
+        VirtualTimeScheduler scheduler = new VirtualTimeScheduler();
+        ConcurrentTaskQueue<String> queue = new ConcurrentTaskQueue<>(Duration.ofSeconds(1), ConcurrentTaskQueue.Mode.HANDOFF, scheduler);
+        List<String> done = new ArrayList<>();
+
+        queue.submit(() -> {
+            try {
+                scheduler.sleep(Duration.ofSeconds(2));
+            } catch (InterruptedException e) {
+                return "interrupted";
+            }
+            return "slow";
+        }, done::add);
+        queue.submit(() -> "fast", done::add);
+        scheduler.runUntilIdle();
+
+        assertEquals(List.of("fast"), done);
+        assertEquals(1, queue.getTimedOutCount());
+        assertEquals(Duration.ofSeconds(1), scheduler.now());
+        assertFalse(Thread.currentThread().isInterrupted());
+    }
+
+    @Test
+    void testSharedSchedulerIsDeterministic() {
+        for (int run = 0; run < 20; run++) {
+            VirtualTimeScheduler scheduler = new VirtualTimeScheduler();
+            List<String> order = new ArrayList<>();
+            ConcurrentTaskQueue<String> a = new ConcurrentTaskQueue<>(Duration.ofSeconds(1), ConcurrentTaskQueue.Mode.DRAIN, scheduler);
+            ConcurrentTaskQueue<String> b = new ConcurrentTaskQueue<>(Duration.ofSeconds(1), ConcurrentTaskQueue.Mode.HANDOFF, scheduler);
+            for (int i = 0; i < 3; i++) {
+                a.submit(() -> "a", order::add);
+                b.submit(() -> "b", order::add);
+            }
+            scheduler.schedule(() -> order.add("timer"), Duration.ofMillis(10));
+            scheduler.advanceBy(Duration.ofMillis(10));
+            assertEquals(List.of("a", "a", "a", "b", "b", "b", "timer"), order);
+        }
+    }
+
+    @Test
+    void testPartitionedActionsRunInline() {
+        VirtualTimeScheduler scheduler = new VirtualTimeScheduler();
+        TestModel model = new TestModel();
+        ObservableInt other = new ObservableInt(0);
+        ControllerBase<TestModel> controller = new ControllerBase<>(model) {
+        };
+        controller.setScheduler(scheduler);
+
+        // 批次不能在唯一的线程中等待它的分区，分区在批次中依次执行
+        controller.asyncPartitioned(model.someInt, () -> model.someInt.setValue(1));
+        controller.asyncPartitioned(other, () -> other.setValue(2));
+        controller.awaitCompletion();
+
+        assertEquals(1, model.someInt.getValue());
+        assertEquals(2, other.getValue());
+        assertFalse(scheduler.hasPendingWork());
+        controller.shutdown();
+    }
+
+}